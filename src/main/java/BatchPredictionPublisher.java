@@ -0,0 +1,269 @@
+import utils.LogObj;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Streams the predictions of a CSV file (or any RowSource), one result per data row, in row order.
+ *
+ * Rows are read only when the subscriber has demand for them, and at most `concurrency`
+ * of them are in flight or waiting to be delivered, so memory stays constant whatever the file size.
+ * A malformed row or failed request becomes an error PredictionResult for that row;
+ * only an I/O error on the file itself ends the stream with onError.
+ *
+ * cancel() stops reading rows and closes them, but does not abort the requests already sent:
+ * up to `concurrency` of them run to completion in the background and their results are dropped.
+ *
+ * Single use: one subscriber. Signals come from the requesting thread or an HTTP client
+ * thread, never concurrently.
+ */
+public class BatchPredictionPublisher implements Flow.Publisher<PredictionResult> {
+    private final ModelServerClient client;
+    private final String serverUrl;
+    private final RowOpener opener;
+    private final String name;
+    private final int concurrency;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    // Logger
+    private static final LogObj log = new LogObj("BatchPredictionPublisher");
+
+    /**
+     * Rows to predict, read one at a time by the drain loop (never concurrently with the subscriber's signals)
+     */
+    public interface RowSource extends Closeable {
+        /**
+         * @return The feature map of the next row, or null at the end
+         * @throws IOException If the rows cannot be read any more
+         * @throws IllegalArgumentException If the row is malformed; it is consumed, the next call moves on
+         */
+        Map<String, Object> next() throws IOException, IllegalArgumentException;
+    }
+
+    /**
+     * Opens the rows on the first demand
+     */
+    @FunctionalInterface
+    public interface RowOpener {
+        RowSource open() throws IOException, IllegalArgumentException;
+    }
+
+    /**
+     * @param client Client used to send each row
+     * @param serverUrl The URL of the Python Model Server
+     * @param csvFile The CSV file containing test data
+     * @param concurrency Maximum number of rows in flight or awaiting delivery
+     */
+    public BatchPredictionPublisher(ModelServerClient client, String serverUrl, File csvFile, int concurrency) {
+        this(client, serverUrl, () -> FeatureMapper.openCsvFile(csvFile), csvFile.toString(), concurrency);
+    }
+
+    /**
+     * @param client Client used to send each row
+     * @param serverUrl The URL of the Python Model Server
+     * @param opener Opens the rows when the subscriber first requests some
+     * @param name Name of the rows for log messages, e.g. the file
+     * @param concurrency Maximum number of rows in flight or awaiting delivery
+     */
+    public BatchPredictionPublisher(ModelServerClient client, String serverUrl, RowOpener opener, String name,
+                                    int concurrency) {
+        this.client = client;
+        this.serverUrl = serverUrl;
+        this.opener = opener;
+        this.name = name;
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super PredictionResult> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) { }
+
+                @Override
+                public void cancel() { }
+            });
+            subscriber.onError(new IllegalStateException("BatchPredictionPublisher supports a single subscriber"));
+            return;
+        }
+
+        RowSubscription subscription = new RowSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+    }
+
+    /**
+     * Drain loop: whichever thread bumps wip to 1 runs it, the others just leave work for it
+     */
+    private final class RowSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super PredictionResult> subscriber;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        // Finished rows, slot = row % concurrency
+        private final AtomicReferenceArray<PredictionResult> ready = new AtomicReferenceArray<>(concurrency);
+
+        private volatile boolean cancelled;
+        private volatile Throwable badRequest;
+
+        // Owned by the drain loop
+        private RowSource reader;
+        private boolean readerDone;
+        private Throwable failure;
+        private long rowsRead;
+        private long emitted;
+        private boolean terminated;
+
+        RowSubscription(Flow.Subscriber<? super PredictionResult> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                badRequest = new IllegalArgumentException("request(" + n + "): demand must be positive");
+            } else {
+                requested.getAndAccumulate(n, (current, add) -> {
+                    long sum = current + add;
+                    return sum < 0 ? Long.MAX_VALUE : sum;
+                });
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                if (!terminated) {
+                    drainOnce();
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drainOnce() {
+            if (cancelled) {
+                terminate();
+                return;
+            }
+            if (badRequest != null) {
+                terminate();
+                subscriber.onError(badRequest);
+                return;
+            }
+
+            boolean rowReady;
+            do {
+                // Deliver finished rows in order
+                long demand = requested.get();
+                while (emitted < demand) {
+                    int slot = (int) (emitted % concurrency);
+                    PredictionResult result = ready.get(slot);
+                    if (result == null) {
+                        break;
+                    }
+                    ready.set(slot, null);
+                    emitted++;
+                    subscriber.onNext(result);
+                    if (cancelled) {
+                        terminate();
+                        return;
+                    }
+                    demand = requested.get();
+                }
+
+                // Read and send new rows while there is demand for them and room in the window
+                rowReady = false;
+                while (!readerDone && rowsRead - emitted < concurrency && rowsRead < demand) {
+                    rowReady |= sendNextRow();
+                }
+            } while (rowReady);
+
+            if (readerDone && emitted == rowsRead) {
+                terminate();
+                if (failure != null) {
+                    subscriber.onError(failure);
+                } else {
+                    subscriber.onComplete();
+                }
+            }
+        }
+
+        /**
+         * @return true if the row's result is already available (malformed row)
+         */
+        private boolean sendNextRow() {
+            Map<String, Object> features;
+            int slot = (int) (rowsRead % concurrency);
+            if (reader == null) {
+                try {
+                    reader = opener.open();
+                } catch (IOException | IllegalArgumentException e) {
+                    failure = e;
+                    readerDone = true;
+                    return false;
+                }
+            }
+            try {
+                features = reader.next();
+            } catch (IllegalArgumentException e) {
+                // Bad row: isolated to its own result
+                rowsRead++;
+                ready.set(slot, new PredictionResult("CSV format error: " + e.getMessage()));
+                return true;
+            } catch (IOException e) {
+                failure = e;
+                readerDone = true;
+                return false;
+            }
+
+            if (features == null) {
+                readerDone = true;
+                return false;
+            }
+
+            rowsRead++;
+            client.sendPredictionRequestAsync(serverUrl, features).whenComplete((result, error) -> {
+                ready.set(slot, result != null ? result : client.errorResult(serverUrl,
+                        error instanceof CompletionException && error.getCause() != null ? error.getCause() : error));
+                drain();
+            });
+            return false;
+        }
+
+        private void terminate() {
+            terminated = true;
+            readerDone = true;
+            for (int i = 0; i < concurrency; i++) {
+                ready.set(i, null);
+            }
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    log.error("Error closing {}: {}", name, e.getMessage());
+                }
+                reader = null;
+            }
+        }
+    }
+}
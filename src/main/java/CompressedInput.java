@@ -0,0 +1,179 @@
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Opens batch input files whether or not they are gzip-compressed.
+ *
+ * gzip is recognized by its magic bytes (1f 8b), not by the file name. A compressed file is
+ * inflated on its own thread into a small queue of chunks, so decompression and parsing
+ * run on different cores instead of taking turns on the reading thread.
+ */
+public class CompressedInput {
+    private static final int GZIP_MAGIC_1 = 0x1f;
+    private static final int GZIP_MAGIC_2 = 0x8b;
+
+    // Decompressed chunk size and how many chunks may wait for the reader
+    private static final int CHUNK = 1 << 20;
+    private static final int DEPTH = 4;
+
+    private CompressedInput() {
+    }
+
+    /**
+     * @return true if the file starts with the gzip magic bytes
+     * @throws IOException If the file cannot be read
+     */
+    public static boolean isGzip(File file) throws IOException {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            return in.read() == GZIP_MAGIC_1 && in.read() == GZIP_MAGIC_2;
+        }
+    }
+
+    /**
+     * Size of the file's content once decompressed. For gzip this is the ISIZE trailer,
+     * i.e. modulo 4GB and of the last member only: good enough for estimates, not for allocation.
+     *
+     * @return Uncompressed size in bytes
+     * @throws IOException If the file cannot be read
+     */
+    public static long uncompressedSize(File file) throws IOException {
+        if (!isGzip(file)) {
+            return file.length();
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() < 4) {
+                return 0;
+            }
+            raf.seek(raf.length() - 4);
+            byte[] trailer = new byte[4];
+            raf.readFully(trailer);
+            return (trailer[0] & 0xffL) | (trailer[1] & 0xffL) << 8 | (trailer[2] & 0xffL) << 16 | (trailer[3] & 0xffL) << 24;
+        }
+    }
+
+    /**
+     * Opens a file for reading its (decompressed) content
+     *
+     * @param file A plain or gzip-compressed file
+     * @return Stream of the file's content; closing it stops the decompression thread
+     * @throws IOException If the file cannot be opened or its gzip header is invalid
+     */
+    public static InputStream open(File file) throws IOException {
+        if (!isGzip(file)) {
+            return new BufferedInputStream(Files.newInputStream(file.toPath()), 1 << 16);
+        }
+        InputStream source = Files.newInputStream(file.toPath());
+        try {
+            return new PipelinedInputStream(new GZIPInputStream(source, 1 << 16), file.getName());
+        } catch (IOException | RuntimeException e) {
+            source.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the source on a daemon thread, handing over full chunks through a bounded queue
+     */
+    private static final class PipelinedInputStream extends InputStream {
+        // End of input marker (compared by identity)
+        private static final byte[] END = new byte[0];
+
+        private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(DEPTH);
+        private final InputStream source;
+        private final Thread producer;
+        private volatile IOException failure;
+
+        // Owned by the reading thread
+        private byte[] current = new byte[0];
+        private int offset;
+
+        PipelinedInputStream(InputStream source, String name) {
+            this.source = source;
+            this.producer = new Thread(this::pump, "decompress-" + name);
+            producer.setDaemon(true);
+            producer.start();
+        }
+
+        private void pump() {
+            try {
+                try {
+                    int read;
+                    do {
+                        byte[] chunk = new byte[CHUNK];
+                        read = source.readNBytes(chunk, 0, CHUNK);
+                        if (read > 0) {
+                            chunks.put(read == CHUNK ? chunk : Arrays.copyOf(chunk, read));
+                        }
+                    } while (read == CHUNK);
+                } catch (IOException e) {
+                    failure = e;
+                } catch (RuntimeException e) {
+                    failure = new IOException("Decompression failed", e);
+                }
+                chunks.put(END);
+            } catch (InterruptedException e) {
+                // Closed by the reader
+            } finally {
+                try {
+                    source.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        @Override
+        public int read(byte[] buffer, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (offset == current.length) {
+                if (current == END) {
+                    return endOfInput();
+                }
+                try {
+                    current = chunks.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for decompressed data");
+                }
+                offset = 0;
+                if (current == END) {
+                    return endOfInput();
+                }
+            }
+            int count = Math.min(len, current.length - offset);
+            System.arraycopy(current, offset, buffer, off, count);
+            offset += count;
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        private int endOfInput() throws IOException {
+            if (failure != null) {
+                throw failure;
+            }
+            return -1;
+        }
+
+        @Override
+        public void close() {
+            // The producer closes the source itself, it may be inside a read right now
+            producer.interrupt();
+            chunks.clear();
+        }
+    }
+}
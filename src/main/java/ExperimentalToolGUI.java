@@ -6,9 +6,14 @@ import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Main GUI for the Network Attack Detection Experimental Tool.
@@ -77,6 +82,11 @@ public class ExperimentalToolGUI extends JFrame {
     private JTextArea batchInputTextArea;
     private JRadioButton keyValueRadioButton;
     private JRadioButton csvRadioButton;
+    // File the batch text was loaded from, predicted directly (and from its cache) while the text is unchanged
+    private File batchSourceFile;
+    // Batch being processed, cancelled when a new one starts
+    private SwingWorker<?, ?> batchWorker;
+    private String batchSourceText;
 
     // Menu items
     private JMenuItem importMenuItem;
@@ -100,6 +110,15 @@ public class ExperimentalToolGUI extends JFrame {
     private NetworkTrafficAnalyzer analyzer;
     private Thread captureThread;
 
+    // Results requested ahead from a streamed CSV batch
+    private static final int STREAM_WINDOW = 64;
+    // Streamed results kept for the table and export; later rows are only counted
+    private static final int MAX_RESULT_ROWS = Integer.getInteger("ids.gui.max-results", 100_000);
+
+    // Compressed or larger batch files are only previewed in the text area, processing reads the file
+    private static final long PREVIEW_THRESHOLD = 16L << 20;
+    private static final int PREVIEW_LINES = 500;
+
     // Logger
     private static final LogObj log = new LogObj("ExperimentalToolGUI");
 
@@ -962,10 +981,11 @@ public class ExperimentalToolGUI extends JFrame {
 
         // Set up file filters based on selected format
         if (csvRadioButton.isSelected()) {
-            FileNameExtensionFilter csvFilter = new FileNameExtensionFilter("CSV Files (*.csv)", "csv");
+            FileNameExtensionFilter csvFilter = new FileNameExtensionFilter(
+                    "CSV / NSL-KDD Files (*.csv, *.txt, *.arff, *.gz)", "csv", "txt", "arff", "gz");
             fileChooser.setFileFilter(csvFilter);
         } else {
-            FileNameExtensionFilter txtFilter = new FileNameExtensionFilter("Text Files (*.txt)", "txt");
+            FileNameExtensionFilter txtFilter = new FileNameExtensionFilter("Text Files (*.txt, *.txt.gz)", "txt", "gz");
             fileChooser.setFileFilter(txtFilter);
         }
 
@@ -974,15 +994,30 @@ public class ExperimentalToolGUI extends JFrame {
         if (result == JFileChooser.APPROVE_OPTION) {
             File selectedFile = fileChooser.getSelectedFile();
             try {
-                String content = Files.readString(selectedFile.toPath());
+                boolean preview = CompressedInput.isGzip(selectedFile) || selectedFile.length() > PREVIEW_THRESHOLD;
+                String content = preview
+                        ? readPreview(selectedFile, PREVIEW_LINES)
+                        : Files.readString(selectedFile.toPath());
                 batchInputTextArea.setText(content);
+                batchSourceFile = selectedFile;
+                batchSourceText = content.trim();
 
                 // Auto-select the appropriate format based on file extension
-                if (selectedFile.getName().toLowerCase().endsWith(".csv")) {
+                String name = selectedFile.getName().toLowerCase();
+                if (name.endsWith(".csv") || name.endsWith(".csv.gz")) {
+                    csvRadioButton.setSelected(true);
+                    warmBatchCache(selectedFile);
+                } else if (NslKddReader.isDataset(selectedFile)) {
+                    // KDDTrain+/KDDTest+ .txt or .arff: read natively, labels are scored
                     csvRadioButton.setSelected(true);
                 }
 
-                updateStatus("File loaded successfully: " + selectedFile.getName());
+                if (preview) {
+                    updateStatus("Showing the first " + PREVIEW_LINES + " lines of " + selectedFile.getName()
+                            + ", processing reads the whole file");
+                } else {
+                    updateStatus("File loaded successfully: " + selectedFile.getName());
+                }
             } catch (IOException e) {
                 showError("Error loading file", "Error loading file: " + e.getMessage());
                 updateStatus("Error loading file: " + e.getMessage());
@@ -990,6 +1025,91 @@ public class ExperimentalToolGUI extends JFrame {
         }
     }
 
+    /**
+     * First lines of a plain or gzip-compressed text file
+     */
+    private static String readPreview(File file, int maxLines) throws IOException {
+        StringBuilder preview = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(CompressedInput.open(file), StandardCharsets.UTF_8))) {
+            String line;
+            for (int i = 0; i < maxLines && (line = reader.readLine()) != null; i++) {
+                preview.append(line).append('\n');
+            }
+        }
+        return preview.toString();
+    }
+
+    /**
+     * Estimated number of data rows of a file, for the progress ETA: average line length
+     * of the first megabyte, extrapolated to the (uncompressed) file size
+     *
+     * @param dataStart Offset of the first record in the uncompressed text (e.g. after an ARFF preamble),
+     *                  or -1 for a CSV file whose first line is the header
+     * @return The estimate, or -1 if it cannot be made
+     */
+    private static long estimateRows(File file, long dataStart) {
+        try (InputStream in = CompressedInput.open(file)) {
+            byte[] sample = new byte[1 << 20];
+            int read = in.readNBytes(sample, 0, sample.length);
+            // A known preamble is left out of the sample; a CSV header line is counted and taken off
+            int from = (int) Math.min(Math.max(dataStart, 0), read);
+            int headerLines = dataStart < 0 ? 1 : 0;
+            long lines = 0;
+            for (int i = from; i < read; i++) {
+                if (sample[i] == '\n') {
+                    lines++;
+                }
+            }
+            if (read > from && sample[read - 1] != '\n') {
+                lines++;
+            }
+            if (read < sample.length) {
+                // Whole file sampled: exact
+                return Math.max(0, lines - headerLines);
+            }
+            long size = CompressedInput.uncompressedSize(file);
+            int sampled = read - from;
+            return size > 0 && lines > 0 && sampled > 0
+                    ? Math.max(0, (size - from) * lines / sampled - headerLines) : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * All non-blank lines of a plain or gzip-compressed text file
+     */
+    private static List<String> readLines(File file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(CompressedInput.open(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    lines.add(line);
+                }
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Builds the columnar cache of a CSV file in the background, so processing it starts from the snapshot
+     */
+    private void warmBatchCache(File csvFile) {
+        ForkJoinPool.commonPool().execute(() -> {
+            try {
+                if (FeatureBatchCache.open(csvFile) == null) {
+                    FeatureBatchCache.load(csvFile, ForkJoinPool.commonPool());
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                // Processing reports the error for the rows themselves
+                log.warn("Could not cache {}: {}", csvFile.getName(), e.getMessage());
+            }
+        });
+    }
+
     /**
      * Processes a batch of inputs
      */
@@ -1009,47 +1129,176 @@ public class ExperimentalToolGUI extends JFrame {
             return;
         }
 
+        // A batch still running would keep adding rows to the cleared table: cancel it (ends its stream)
+        if (batchWorker != null && !batchWorker.isDone()) {
+            batchWorker.cancel(true);
+        }
+
         // Clear previous results
         clearResults();
         updateStatus("Starting batch processing...");
 
         // Use a SwingWorker to perform batch processing in the background
         SwingWorker<List<PredictionResult>, PredictionResult> worker = new SwingWorker<>() {
+            // Accuracy summary when an NSL-KDD dataset was processed
+            private String evaluation;
+            // Rows streamed, including those beyond MAX_RESULT_ROWS
+            private long streamedRows;
+
             @Override
             protected List<PredictionResult> doInBackground() throws Exception {
-                List<PredictionResult> results = new ArrayList<>();
-
                 if (csvRadioButton.isSelected()) {
+                    // Unchanged loaded file: stream it as is, its snapshot is picked up if cached
+                    if (batchSourceFile != null && inputData.equals(batchSourceText)) {
+                        if (NslKddReader.isDataset(batchSourceFile)) {
+                            return evaluateDataset(batchSourceFile);
+                        }
+                        return streamBatch(client.streamPredictFromCsv(serverUrl, batchSourceFile), batchSourceFile, null);
+                    }
+
                     // For CSV, create a temporary file and process it
                     File tempFile = File.createTempFile("batch_", ".csv");
                     try {
                         Files.writeString(tempFile.toPath(), inputData);
-                        results = client.batchPredictFromCsv(serverUrl, tempFile);
-
-                        // Publish results as they come in
-                        for (PredictionResult result : results) {
-                            publish(result);
-                        }
+                        // Rows are shown as they finish instead of after the whole file
+                        return streamBatch(client.streamPredictFromCsv(serverUrl, tempFile), tempFile, null);
                     } finally {
-                        tempFile.delete();
+                        // A parser mapping may still hold the file (Windows): remove it on exit then
+                        if (!tempFile.delete()) {
+                            tempFile.deleteOnExit();
+                        }
                     }
+                }
+
+                // For key-value format, split by lines and process each line
+                List<String> lines;
+                if (batchSourceFile != null && inputData.equals(batchSourceText)) {
+                    lines = readLines(batchSourceFile);
                 } else {
-                    // For key-value format, split by lines and process each line
-                    String[] lines = inputData.split("\n");
-                    for (String line : lines) {
+                    lines = new ArrayList<>();
+                    for (String line : inputData.split("\n")) {
                         if (!line.trim().isEmpty()) {
-                            PredictionResult result = client.predict(serverUrl, line);
-                            results.add(result);
-                            publish(result);
+                            lines.add(line);
                         }
                     }
                 }
+                List<PredictionResult> results = client.batchPredict(serverUrl, lines, batchProgress());
+
+                // Publish results in input order
+                for (PredictionResult result : results) {
+                    publish(result);
+                }
+
+                return results;
+            }
+
+            private ModelServerClient.BatchProgressListener batchProgress() {
+                return (completed, total, rowsPerSecond, etaMillis) -> {
+                    // Throttle EDT updates on large batches
+                    if (completed == total || completed % 50 == 0) {
+                        SwingUtilities.invokeLater(() -> updateStatus(
+                                formatBatchProgress(completed, total, rowsPerSecond, etaMillis)));
+                    }
+                };
+            }
 
+            /**
+             * Streams the records of an NSL-KDD dataset and scores each prediction against its label as it arrives
+             */
+            private List<PredictionResult> evaluateDataset(File file) throws Exception {
+                List<PredictionResult> results;
+                NslKddReader.Records records = NslKddReader.open(file);
+                try {
+                    results = streamBatch(client.streamPredictRows(serverUrl, records, file.getName()), file, records);
+                } finally {
+                    // Already closed by the stream unless it was cancelled before reading
+                    records.close();
+                }
+                if (records.isLabelled()) {
+                    evaluation = records.getScore();
+                    log.info("Evaluation of {}: {}", file.getName(), evaluation);
+                }
                 return results;
             }
 
+            /**
+             * Subscribes to the stream with a bounded demand window and waits for it to end.
+             * Only the first MAX_RESULT_ROWS results are kept (and shown), so memory does not grow with the file.
+             *
+             * @param records Labelled records being streamed, scored as results arrive (null = plain CSV)
+             */
+            private List<PredictionResult> streamBatch(Flow.Publisher<PredictionResult> stream, File source,
+                                                       NslKddReader.Records records) throws Exception {
+                long estimatedRows = estimateRows(source, records != null ? records.getDataStart() : -1);
+                List<PredictionResult> kept = new ArrayList<>();
+                CountDownLatch finished = new CountDownLatch(1);
+                AtomicReference<Throwable> streamError = new AtomicReference<>();
+                AtomicReference<Flow.Subscription> subscriptionRef = new AtomicReference<>();
+                long startNanos = System.nanoTime();
+
+                stream.subscribe(new Flow.Subscriber<>() {
+                    @Override
+                    public void onSubscribe(Flow.Subscription subscription) {
+                        subscriptionRef.set(subscription);
+                        subscription.request(STREAM_WINDOW);
+                    }
+
+                    @Override
+                    public void onNext(PredictionResult result) {
+                        if (kept.size() < MAX_RESULT_ROWS) {
+                            kept.add(result);
+                            publish(result);
+                        }
+                        long done = ++streamedRows;
+                        if (records != null) {
+                            records.score(result);
+                        }
+                        if (done % 50 == 0) {
+                            double rowsPerSecond = done / ((System.nanoTime() - startNanos) / 1e9);
+                            long total = Math.max(estimatedRows, done);
+                            long etaMillis = estimatedRows < 0 ? -1 : (long) ((total - done) / rowsPerSecond * 1000);
+                            String progress = formatBatchProgress(done, total, rowsPerSecond, etaMillis)
+                                    + (records != null && records.isLabelled() ? " | " + records.getScore() : "");
+                            SwingUtilities.invokeLater(() -> updateStatus(progress));
+                        }
+                        if (isCancelled()) {
+                            subscriptionRef.get().cancel();
+                            finished.countDown();
+                        } else {
+                            subscriptionRef.get().request(1);
+                        }
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                        streamError.set(throwable);
+                        finished.countDown();
+                    }
+
+                    @Override
+                    public void onComplete() {
+                        finished.countDown();
+                    }
+                });
+
+                try {
+                    finished.await();
+                } finally {
+                    if (finished.getCount() > 0) {
+                        subscriptionRef.get().cancel();
+                    }
+                }
+                if (streamError.get() != null) {
+                    throw new IOException(streamError.get().getMessage(), streamError.get());
+                }
+                return kept;
+            }
+
             @Override
             protected void process(List<PredictionResult> chunks) {
+                if (isCancelled()) {
+                    return;
+                }
                 // Display results as they come in
                 for (PredictionResult result : chunks) {
                     displayResult(result);
@@ -1058,9 +1307,17 @@ public class ExperimentalToolGUI extends JFrame {
 
             @Override
             protected void done() {
+                if (isCancelled()) {
+                    // Superseded by a new batch, which owns the table and status now
+                    return;
+                }
                 try {
                     currentResults = get();
-                    updateStatus("Batch processing completed. Processed " + currentResults.size() + " items.");
+                    long processed = Math.max(streamedRows, currentResults.size());
+                    updateStatus("Batch processing completed. Processed " + processed + " items."
+                            + (processed > currentResults.size()
+                                    ? " First " + currentResults.size() + " kept for the table and export." : "")
+                            + (evaluation != null ? " " + evaluation : ""));
                     exportMenuItem.setEnabled(!currentResults.isEmpty());
                 } catch (Exception e) {
                     showError("Error", "Error during batch processing: " + e.getMessage());
@@ -1069,9 +1326,18 @@ public class ExperimentalToolGUI extends JFrame {
             }
         };
 
+        batchWorker = worker;
         worker.execute();
     }
 
+    /**
+     * Status line for a running batch: rows done, rate and ETA
+     */
+    private static String formatBatchProgress(long completed, long total, double rowsPerSecond, long etaMillis) {
+        String eta = etaMillis < 0 ? "--:--" : String.format("%d:%02d", etaMillis / 60000, (etaMillis / 1000) % 60);
+        return String.format("Processing batch: %d/%d rows (%.1f rows/s, ETA %s)", completed, total, rowsPerSecond, eta);
+    }
+
     /**
      * Predicts a single input from the form
      */
@@ -1165,7 +1431,7 @@ public class ExperimentalToolGUI extends JFrame {
      */
     private void updateDashboard(PredictionResult result) {
 
-        log.info("Updating dashboard with prediction result");
+        log.debug("Updating dashboard with prediction result");
 
         if ("error".equals(result.getStatus())) {
             resultLabel.setText("ERROR");
@@ -1203,7 +1469,7 @@ public class ExperimentalToolGUI extends JFrame {
      */
     private void updateProbabilityBar(double normalProb, double attackProb) {
 
-        log.info("Updating probability bar");
+        log.debug("Updating probability bar");
 
         final double normalRatio = normalProb;
 
@@ -1337,7 +1603,7 @@ public class ExperimentalToolGUI extends JFrame {
      */
     private void displayResult(PredictionResult result) {
 
-        log.info("Displaying prediction result in table");
+        log.debug("Displaying prediction result in table");
 
         // Add to table
         if ("error".equals(result.getStatus())) {
@@ -0,0 +1,522 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Struct-of-arrays feature table: one primitive array per column instead of one HashMap per row.
+ *
+ * INT columns are int[], DOUBLE columns double[], STRING columns int[] codes into a
+ * per-column dictionary, so a repeated service/flag value costs 4 bytes per row.
+ * A column is widened in place when a value no longer fits its type
+ * (an int column that meets 0.5 becomes double, a numeric column that meets text becomes string);
+ * the types belong to the batch, so batches sharing a schema widen independently.
+ * Int cells of a double column stay marked as ints and numeric cells of a string column stay
+ * marked as ints or doubles, so every cell keeps the type and text it was parsed with whatever
+ * order the widening happened in.
+ */
+public class FeatureBatch {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final FeatureSchema schema;
+    // FeatureSchema.INT, DOUBLE or STRING per column
+    private final int[] types;
+    private final int[][] ints;
+    private final double[][] doubles;
+    // Per DOUBLE or STRING column: cells that hold an int value (null = none)
+    private final BitSet[] intCells;
+    // Per STRING column: cells that hold a double value (null = none)
+    private final BitSet[] doubleCells;
+    private final int[][] codes;
+    private final Dictionary[] dictionaries;
+    private int capacity;
+    private int size;
+
+    /**
+     * String values of one column, each stored once. Code 0 is "", so a zeroed cell is an empty string.
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        Dictionary() {
+            encode("");
+        }
+
+        int encode(String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+            return code;
+        }
+
+        String decode(int code) {
+            return values.get(code);
+        }
+    }
+
+    public FeatureBatch(FeatureSchema schema) {
+        this(schema, INITIAL_CAPACITY);
+    }
+
+    public FeatureBatch(FeatureSchema schema, int initialCapacity) {
+        this(schema, new int[schema.size()], initialCapacity);
+    }
+
+    /**
+     * Batch whose columns start with known types (e.g. a fixed dataset layout) instead of INT
+     *
+     * @param types FeatureSchema.INT, DOUBLE or STRING per column
+     */
+    public FeatureBatch(FeatureSchema schema, int[] types, int initialCapacity) {
+        int columns = schema.size();
+        if (types.length != columns) {
+            throw new IllegalArgumentException(types.length + " column types for " + schema);
+        }
+        this.schema = schema;
+        this.types = types.clone();
+        this.capacity = Math.max(1, initialCapacity);
+        this.ints = new int[columns][];
+        this.doubles = new double[columns][];
+        this.intCells = new BitSet[columns];
+        this.doubleCells = new BitSet[columns];
+        this.codes = new int[columns][];
+        this.dictionaries = new Dictionary[columns];
+
+        for (int column = 0; column < columns; column++) {
+            switch (types[column]) {
+                case FeatureSchema.INT:
+                    ints[column] = new int[capacity];
+                    break;
+                case FeatureSchema.DOUBLE:
+                    doubles[column] = new double[capacity];
+                    break;
+                default:
+                    codes[column] = new int[capacity];
+                    dictionaries[column] = new Dictionary();
+            }
+        }
+    }
+
+    public FeatureSchema getSchema() {
+        return schema;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return FeatureSchema.INT, DOUBLE or STRING: the widest value the column has met so far
+     */
+    public int getType(int column) {
+        return types[column];
+    }
+
+    /**
+     * Appends an empty row and returns its index
+     */
+    public int addRow() {
+        if (size == capacity) {
+            grow();
+        }
+        // Cells start zeroed: 0 for numbers, "" for strings
+        return size++;
+    }
+
+    /**
+     * Appends a row from a feature map; names the schema does not have are ignored
+     *
+     * @return Index of the new row
+     */
+    public int addRow(Map<String, Object> features) {
+        int row = addRow();
+        for (Map.Entry<String, Object> entry : features.entrySet()) {
+            int column = schema.indexOf(entry.getKey());
+            if (column < 0) {
+                continue;
+            }
+            Object value = entry.getValue();
+            if (value instanceof Integer) {
+                setInt(row, column, (Integer) value);
+            } else if (value instanceof Number) {
+                setDouble(row, column, ((Number) value).doubleValue());
+            } else {
+                setString(row, column, String.valueOf(value));
+            }
+        }
+        return row;
+    }
+
+    public void setInt(int row, int column, int value) {
+        switch (types[column]) {
+            case FeatureSchema.INT:
+                ints[column][row] = value;
+                break;
+            case FeatureSchema.DOUBLE:
+                doubles[column][row] = value;
+                markInt(column, row);
+                break;
+            default:
+                codes[column][row] = dictionaries[column].encode(Integer.toString(value));
+                clearDouble(column, row);
+                markInt(column, row);
+        }
+    }
+
+    public void setDouble(int row, int column, double value) {
+        if (types[column] == FeatureSchema.INT) {
+            widenToDouble(column);
+        }
+        if (types[column] == FeatureSchema.DOUBLE) {
+            doubles[column][row] = value;
+            clearInt(column, row);
+        } else {
+            codes[column][row] = dictionaries[column].encode(Double.toString(value));
+            clearInt(column, row);
+            markDouble(column, row);
+        }
+    }
+
+    public void setString(int row, int column, String value) {
+        if (types[column] != FeatureSchema.STRING) {
+            widenToString(column);
+        }
+        codes[column][row] = dictionaries[column].encode(value);
+        clearInt(column, row);
+        clearDouble(column, row);
+    }
+
+    public int getInt(int row, int column) {
+        switch (types[column]) {
+            case FeatureSchema.INT:
+                return ints[column][row];
+            case FeatureSchema.DOUBLE:
+                return (int) doubles[column][row];
+            default:
+                if (isIntCell(row, column)) {
+                    return Integer.parseInt(dictionaries[column].decode(codes[column][row]));
+                } else if (isDoubleCell(row, column)) {
+                    return (int) Double.parseDouble(dictionaries[column].decode(codes[column][row]));
+                }
+                throw new IllegalStateException("Column " + schema.getName(column) + " is not numeric");
+        }
+    }
+
+    public double getDouble(int row, int column) {
+        switch (types[column]) {
+            case FeatureSchema.INT:
+                return ints[column][row];
+            case FeatureSchema.DOUBLE:
+                return doubles[column][row];
+            default:
+                if (isIntCell(row, column) || isDoubleCell(row, column)) {
+                    return Double.parseDouble(dictionaries[column].decode(codes[column][row]));
+                }
+                throw new IllegalStateException("Column " + schema.getName(column) + " is not numeric");
+        }
+    }
+
+    public String getString(int row, int column) {
+        switch (types[column]) {
+            case FeatureSchema.INT:
+                return Integer.toString(ints[column][row]);
+            case FeatureSchema.DOUBLE:
+                return isIntCell(row, column)
+                        ? Integer.toString((int) doubles[column][row])
+                        : Double.toString(doubles[column][row]);
+            default:
+                return dictionaries[column].decode(codes[column][row]);
+        }
+    }
+
+    /**
+     * Type of one cell: a DOUBLE column can still hold cells that were ints,
+     * a STRING column cells that were ints or doubles
+     *
+     * @return FeatureSchema.INT, DOUBLE or STRING
+     */
+    public int getCellType(int row, int column) {
+        int type = types[column];
+        if (type != FeatureSchema.INT && isIntCell(row, column)) {
+            return FeatureSchema.INT;
+        }
+        return type == FeatureSchema.STRING && isDoubleCell(row, column) ? FeatureSchema.DOUBLE : type;
+    }
+
+    private boolean isIntCell(int row, int column) {
+        BitSet cells = intCells[column];
+        return cells != null && cells.get(row);
+    }
+
+    private boolean isDoubleCell(int row, int column) {
+        BitSet cells = doubleCells[column];
+        return cells != null && cells.get(row);
+    }
+
+    private void markInt(int column, int row) {
+        if (intCells[column] == null) {
+            intCells[column] = new BitSet();
+        }
+        intCells[column].set(row);
+    }
+
+    private void markDouble(int column, int row) {
+        if (doubleCells[column] == null) {
+            doubleCells[column] = new BitSet();
+        }
+        doubleCells[column].set(row);
+    }
+
+    private void clearInt(int column, int row) {
+        if (intCells[column] != null) {
+            intCells[column].clear(row);
+        }
+    }
+
+    private void clearDouble(int column, int row) {
+        if (doubleCells[column] != null) {
+            doubleCells[column].clear(row);
+        }
+    }
+
+    /**
+     * Dictionary code of a STRING cell; equal codes mean equal strings within the column
+     */
+    public int getCode(int row, int column) {
+        if (types[column] != FeatureSchema.STRING) {
+            throw new IllegalStateException("Column " + schema.getName(column) + " is not a string column");
+        }
+        return codes[column][row];
+    }
+
+    /**
+     * Row as a feature map (Integer / Double / String values), for code that still works on maps
+     */
+    public Map<String, Object> toMap(int row) {
+        Map<String, Object> features = new HashMap<>(schema.size() * 4 / 3 + 1);
+        for (int column = 0; column < schema.size(); column++) {
+            Object value;
+            switch (types[column]) {
+                case FeatureSchema.INT:
+                    value = ints[column][row];
+                    break;
+                case FeatureSchema.DOUBLE:
+                    if (isIntCell(row, column)) {
+                        value = (int) doubles[column][row];
+                    } else {
+                        value = doubles[column][row];
+                    }
+                    break;
+                default:
+                    String text = dictionaries[column].decode(codes[column][row]);
+                    if (isIntCell(row, column)) {
+                        value = Integer.parseInt(text);
+                    } else if (isDoubleCell(row, column)) {
+                        value = Double.parseDouble(text);
+                    } else {
+                        value = text;
+                    }
+            }
+            features.put(schema.getName(column), value);
+        }
+        return features;
+    }
+
+    /**
+     * Appends all rows of another batch with the same columns, after this batch's rows.
+     * Column types are unified the same way sequential widening would (INT -> DOUBLE -> STRING)
+     * and string codes are re-mapped into this batch's dictionaries.
+     *
+     * @throws IllegalArgumentException If the column names differ
+     */
+    public void append(FeatureBatch other) throws IllegalArgumentException {
+        FeatureSchema otherSchema = other.schema;
+        if (otherSchema != schema && !Arrays.equals(schema.getNames(), otherSchema.getNames())) {
+            throw new IllegalArgumentException("Cannot append " + otherSchema + " to " + schema);
+        }
+
+        int rows = other.size;
+        while (capacity < size + rows) {
+            grow();
+        }
+
+        for (int column = 0; column < schema.size(); column++) {
+            int type = Math.max(types[column], other.types[column]);
+            if (type == FeatureSchema.DOUBLE && types[column] == FeatureSchema.INT) {
+                widenToDouble(column);
+            } else if (type == FeatureSchema.STRING && types[column] != FeatureSchema.STRING) {
+                widenToString(column);
+            }
+
+            switch (type) {
+                case FeatureSchema.INT:
+                    System.arraycopy(other.ints[column], 0, ints[column], size, rows);
+                    break;
+                case FeatureSchema.DOUBLE:
+                    for (int row = 0; row < rows; row++) {
+                        doubles[column][size + row] = other.getDouble(row, column);
+                        if (other.getCellType(row, column) == FeatureSchema.INT) {
+                            markInt(column, size + row);
+                        }
+                    }
+                    break;
+                default:
+                    if (other.types[column] == FeatureSchema.STRING) {
+                        Dictionary source = other.dictionaries[column];
+                        int[] remap = new int[source.values.size()];
+                        for (int code = 0; code < remap.length; code++) {
+                            remap[code] = dictionaries[column].encode(source.decode(code));
+                        }
+                        for (int row = 0; row < rows; row++) {
+                            codes[column][size + row] = remap[other.codes[column][row]];
+                        }
+                    } else {
+                        for (int row = 0; row < rows; row++) {
+                            codes[column][size + row] = dictionaries[column].encode(other.getString(row, column));
+                        }
+                    }
+                    for (int row = 0; row < rows; row++) {
+                        int cellType = other.getCellType(row, column);
+                        if (cellType == FeatureSchema.INT) {
+                            markInt(column, size + row);
+                        } else if (cellType == FeatureSchema.DOUBLE) {
+                            markDouble(column, size + row);
+                        }
+                    }
+            }
+        }
+        size += rows;
+    }
+
+    // Raw column access for FeatureBatchCache; arrays are live and may be longer than size()
+
+    int[] intColumn(int column) {
+        return ints[column];
+    }
+
+    double[] doubleColumn(int column) {
+        return doubles[column];
+    }
+
+    BitSet intCells(int column) {
+        return intCells[column];
+    }
+
+    BitSet doubleCells(int column) {
+        return doubleCells[column];
+    }
+
+    int[] codeColumn(int column) {
+        return codes[column];
+    }
+
+    /**
+     * @return Dictionary values of a STRING column, index = code
+     */
+    List<String> dictionaryValues(int column) {
+        return dictionaries[column].values;
+    }
+
+    /**
+     * Rebuilds a batch from stored columns; the types say which array each column uses
+     *
+     * @param size Number of rows
+     * @param intCells Per DOUBLE or STRING column, the cells that hold an int value (may be null)
+     * @param doubleCells Per STRING column, the cells that hold a double value (may be null)
+     * @param dictionaryValues Per STRING column, values in code order (values[0] must be "")
+     */
+    static FeatureBatch ofColumns(FeatureSchema schema, int[] types, int size, int[][] ints, double[][] doubles,
+                                  BitSet[] intCells, BitSet[] doubleCells, int[][] codes,
+                                  String[][] dictionaryValues) {
+        FeatureBatch batch = new FeatureBatch(schema, types, 1);
+        batch.capacity = Math.max(1, size);
+        batch.size = size;
+        for (int column = 0; column < schema.size(); column++) {
+            batch.ints[column] = null;
+            batch.doubles[column] = null;
+            batch.codes[column] = null;
+            batch.dictionaries[column] = null;
+            switch (types[column]) {
+                case FeatureSchema.INT:
+                    batch.ints[column] = ints[column];
+                    break;
+                case FeatureSchema.DOUBLE:
+                    batch.doubles[column] = doubles[column];
+                    batch.intCells[column] = intCells[column];
+                    break;
+                default:
+                    Dictionary dictionary = new Dictionary();
+                    for (String value : dictionaryValues[column]) {
+                        dictionary.encode(value);
+                    }
+                    batch.codes[column] = codes[column];
+                    batch.dictionaries[column] = dictionary;
+                    batch.intCells[column] = intCells[column];
+                    batch.doubleCells[column] = doubleCells[column];
+            }
+        }
+        return batch;
+    }
+
+    private void grow() {
+        capacity *= 2;
+        for (int column = 0; column < schema.size(); column++) {
+            if (ints[column] != null) {
+                ints[column] = Arrays.copyOf(ints[column], capacity);
+            }
+            if (doubles[column] != null) {
+                doubles[column] = Arrays.copyOf(doubles[column], capacity);
+            }
+            if (codes[column] != null) {
+                codes[column] = Arrays.copyOf(codes[column], capacity);
+            }
+        }
+    }
+
+    private void widenToDouble(int column) {
+        int[] old = ints[column];
+        double[] widened = new double[capacity];
+        for (int row = 0; row < size; row++) {
+            widened[row] = old[row];
+        }
+        doubles[column] = widened;
+        ints[column] = null;
+        if (size > 0) {
+            markInt(column, 0);
+            intCells[column].set(0, size);
+        }
+        types[column] = FeatureSchema.DOUBLE;
+    }
+
+    private void widenToString(int column) {
+        Dictionary dictionary = new Dictionary();
+        int[] widened = new int[capacity];
+        for (int row = 0; row < size; row++) {
+            widened[row] = dictionary.encode(getString(row, column));
+        }
+        // Every existing cell is a number: an int column's are ints, a double column's keep their marks
+        if (types[column] == FeatureSchema.INT) {
+            if (size > 0) {
+                markInt(column, 0);
+                intCells[column].set(0, size);
+            }
+        } else if (size > 0) {
+            markDouble(column, 0);
+            doubleCells[column].set(0, size);
+            if (intCells[column] != null) {
+                doubleCells[column].andNot(intCells[column]);
+            }
+        }
+        codes[column] = widened;
+        dictionaries[column] = dictionary;
+        ints[column] = null;
+        doubles[column] = null;
+        types[column] = FeatureSchema.STRING;
+    }
+}
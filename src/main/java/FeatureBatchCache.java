@@ -0,0 +1,502 @@
+import utils.LogObj;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * On-disk columnar snapshot of parsed CSV files, so reopening the same dataset skips text parsing.
+ *
+ * One cache file per source path, stamped with the source's path, size and mtime; if any of them
+ * changes the snapshot is stale and the next load parses the CSV again and rewrites it.
+ * Columns are stored as in FeatureBatch: int[] / double[] arrays and dictionary-coded strings.
+ * Loads memory-map each column's value array on its own, at a long file offset, so snapshots may
+ * exceed 2GB as long as a single column does not: Snapshot reads rows straight from the mappings,
+ * toBatch() bulk-copies the columns into a FeatureBatch.
+ *
+ * Layout (big-endian):
+ *   magic, version, source path, source size, source mtime, rows, columns,
+ *   per column: name, type
+ *   per column data: INT = int[rows]; DOUBLE = int-cell bitset words + double[rows];
+ *                    STRING = int-cell and double-cell bitset words + dictionary values + int[rows] codes
+ */
+public class FeatureBatchCache {
+    private static final int MAGIC = 0x49444642; // "IDFB"
+    private static final int VERSION = 2;
+
+    // -Dids.gui.cache-dir=off disables the cache
+    private static final String DIRECTORY = System.getProperty("ids.gui.cache-dir", "cache");
+
+    // Logger
+    private static final LogObj log = new LogObj("FeatureBatchCache");
+
+    private FeatureBatchCache() {
+    }
+
+    /**
+     * Returns the parsed batch of a CSV file, from the cache when it is up to date.
+     * Otherwise the file is parsed on the pool and the snapshot is (re)written.
+     *
+     * @param csvFile The CSV file to load
+     * @param pool Pool used to parse the file on a cache miss
+     * @return One batch row per data line, in file order
+     * @throws IOException If the CSV file cannot be read
+     * @throws IllegalArgumentException If the CSV format is invalid
+     */
+    public static FeatureBatch load(File csvFile, ForkJoinPool pool) throws IOException, IllegalArgumentException {
+        Snapshot snapshot = open(csvFile);
+        if (snapshot != null) {
+            return snapshot.toBatch();
+        }
+
+        long length = csvFile.length();
+        long modified = csvFile.lastModified();
+        FeatureBatch batch = FeatureMapper.parseCsvBatch(csvFile, pool);
+        // A file rewritten while it was parsed would be stamped with the new size and mtime
+        if (csvFile.length() == length && csvFile.lastModified() == modified) {
+            store(csvFile, batch);
+        }
+        return batch;
+    }
+
+    /**
+     * Maps the snapshot of a CSV file if there is one for its current path, size and mtime
+     *
+     * @param csvFile The CSV source file
+     * @return The snapshot, or null if the cache is disabled, missing or stale
+     */
+    public static Snapshot open(File csvFile) {
+        File cacheFile = cacheFileOf(csvFile);
+        if (cacheFile == null || !cacheFile.isFile()) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+            ChannelReader reader = new ChannelReader(channel);
+            if (reader.getInt() != MAGIC || reader.getInt() != VERSION
+                    || !reader.getString().equals(sourcePath(csvFile))
+                    || reader.getLong() != csvFile.length()
+                    || reader.getLong() != csvFile.lastModified()) {
+                log.info("Stale cache for {}, parsing again", csvFile.getName());
+                return null;
+            }
+            // Mappings stay valid once the channel is closed
+            Snapshot snapshot = new Snapshot(channel, reader);
+            log.info("Loaded {} rows of {} from {}", snapshot.size(), csvFile.getName(), cacheFile);
+            return snapshot;
+        } catch (IOException | RuntimeException e) {
+            // Truncated or corrupt file: treat as a miss, the next store replaces it
+            log.warn("Unreadable cache {}: {}", cacheFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the snapshot of a parsed CSV file. The file is written next to its final name and
+     * then moved over it, so a reader never sees a half-written snapshot.
+     * Failures are only logged: the cache is an optimization.
+     *
+     * @param csvFile The CSV source file the batch was parsed from
+     * @param batch The parsed batch
+     */
+    public static void store(File csvFile, FeatureBatch batch) {
+        File cacheFile = cacheFileOf(csvFile);
+        if (cacheFile == null) {
+            return;
+        }
+        // Each column is mapped as one buffer on load: a larger one could not be read back
+        if ((long) batch.size() * Double.BYTES > Integer.MAX_VALUE) {
+            log.info("{} has too many rows ({}) to cache", csvFile.getName(), batch.size());
+            return;
+        }
+
+        Path temp = null;
+        try {
+            Files.createDirectories(cacheFile.getParentFile().toPath());
+            temp = Files.createTempFile(cacheFile.getParentFile().toPath(), cacheFile.getName(), ".tmp");
+            try (OutputStream file = Files.newOutputStream(temp);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+                write(out, csvFile, batch);
+            }
+            Files.move(temp, cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Cached {} rows of {} in {}", batch.size(), csvFile.getName(), cacheFile);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not write cache {}: {}", cacheFile, e);
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Cache file of the source, or null if the cache is disabled
+     */
+    private static File cacheFileOf(File csvFile) {
+        if (DIRECTORY.isEmpty() || DIRECTORY.equalsIgnoreCase("off")) {
+            return null;
+        }
+        String path = sourcePath(csvFile);
+        return new File(DIRECTORY, csvFile.getName() + "-" + Integer.toHexString(path.hashCode()) + ".fbc");
+    }
+
+    private static String sourcePath(File csvFile) {
+        return csvFile.getAbsoluteFile().toPath().normalize().toString();
+    }
+
+    private static void write(DataOutputStream out, File csvFile, FeatureBatch batch) throws IOException {
+        FeatureSchema schema = batch.getSchema();
+        int rows = batch.size();
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeString(out, sourcePath(csvFile));
+        out.writeLong(csvFile.length());
+        out.writeLong(csvFile.lastModified());
+        out.writeInt(rows);
+        out.writeInt(schema.size());
+        for (int column = 0; column < schema.size(); column++) {
+            writeString(out, schema.getName(column));
+            out.writeByte(batch.getType(column));
+        }
+
+        for (int column = 0; column < schema.size(); column++) {
+            switch (batch.getType(column)) {
+                case FeatureSchema.INT:
+                    int[] ints = batch.intColumn(column);
+                    for (int row = 0; row < rows; row++) {
+                        out.writeInt(ints[row]);
+                    }
+                    break;
+                case FeatureSchema.DOUBLE:
+                    writeBits(out, batch.intCells(column));
+                    double[] doubles = batch.doubleColumn(column);
+                    for (int row = 0; row < rows; row++) {
+                        out.writeDouble(doubles[row]);
+                    }
+                    break;
+                default:
+                    writeBits(out, batch.intCells(column));
+                    writeBits(out, batch.doubleCells(column));
+                    List<String> values = batch.dictionaryValues(column);
+                    out.writeInt(values.size());
+                    for (String value : values) {
+                        writeString(out, value);
+                    }
+                    int[] codes = batch.codeColumn(column);
+                    for (int row = 0; row < rows; row++) {
+                        out.writeInt(codes[row]);
+                    }
+            }
+        }
+    }
+
+    private static void writeBits(DataOutputStream out, BitSet bits) throws IOException {
+        long[] words = bits != null ? bits.toLongArray() : new long[0];
+        out.writeInt(words.length);
+        for (long word : words) {
+            out.writeLong(word);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Sequential big-endian reads through a small buffer, at a long file position
+     */
+    private static final class ChannelReader {
+        private final FileChannel channel;
+        private final long size;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        // File offset of the buffer's next byte
+        private long position;
+
+        ChannelReader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            buffer.limit(0);
+        }
+
+        long position() {
+            return position;
+        }
+
+        /**
+         * Moves past bytes that are mapped rather than read
+         */
+        void skip(long bytes) throws IOException {
+            if (bytes < 0 || bytes > size - position) {
+                throw new EOFException("Cache file truncated");
+            }
+            if (bytes <= buffer.remaining()) {
+                buffer.position(buffer.position() + (int) bytes);
+            } else {
+                buffer.limit(0);
+            }
+            position += bytes;
+        }
+
+        private void require(int bytes) throws IOException {
+            if (bytes > size - position) {
+                throw new EOFException("Cache file truncated");
+            }
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            buffer.clear();
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new EOFException("Cache file truncated");
+                }
+            }
+            buffer.flip();
+        }
+
+        byte get() throws IOException {
+            require(Byte.BYTES);
+            position += Byte.BYTES;
+            return buffer.get();
+        }
+
+        int getInt() throws IOException {
+            require(Integer.BYTES);
+            position += Integer.BYTES;
+            return buffer.getInt();
+        }
+
+        long getLong() throws IOException {
+            require(Long.BYTES);
+            position += Long.BYTES;
+            return buffer.getLong();
+        }
+
+        BitSet getBits() throws IOException {
+            int wordCount = getInt();
+            if (wordCount < 0) {
+                throw new IllegalStateException("Negative bitset length");
+            }
+            long[] words = new long[wordCount];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = getLong();
+            }
+            return BitSet.valueOf(words);
+        }
+
+        String getString() throws IOException {
+            int length = getInt();
+            if (length < 0 || length > size - position) {
+                throw new EOFException("Cache file truncated");
+            }
+            byte[] bytes = new byte[length];
+            for (int done = 0; done < length; ) {
+                int chunk = Math.min(length - done, buffer.capacity());
+                require(chunk);
+                buffer.get(bytes, done, chunk);
+                position += chunk;
+                done += chunk;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * A mapped cache file. Rows are read in place; only dictionaries and int-cell marks are on the heap.
+     */
+    public static final class Snapshot {
+        private final String[] names;
+        private final int[] types;
+        private final int rows;
+        // Mapping of each column's value array
+        private final ByteBuffer[] data;
+        private final BitSet[] intCells;
+        // STRING columns: cells that hold a double value
+        private final BitSet[] doubleCells;
+        private final String[][] dictionaries;
+        // STRING columns: dictionary values as numbers, for the cells marked int or double
+        private final Object[][] cellValues;
+
+        /**
+         * @param reader Reader of the channel positioned after the source stamp
+         */
+        private Snapshot(FileChannel channel, ChannelReader reader) throws IOException {
+            this.rows = reader.getInt();
+            int columns = reader.getInt();
+            if (rows < 0 || columns < 0) {
+                throw new IllegalStateException("Negative row or column count");
+            }
+            this.names = new String[columns];
+            this.types = new int[columns];
+            this.data = new ByteBuffer[columns];
+            this.intCells = new BitSet[columns];
+            this.doubleCells = new BitSet[columns];
+            this.dictionaries = new String[columns][];
+            this.cellValues = new Object[columns][];
+
+            for (int column = 0; column < columns; column++) {
+                names[column] = reader.getString();
+                types[column] = reader.get();
+            }
+            for (int column = 0; column < columns; column++) {
+                switch (types[column]) {
+                    case FeatureSchema.INT:
+                        data[column] = map(channel, reader, Integer.BYTES);
+                        break;
+                    case FeatureSchema.DOUBLE:
+                        intCells[column] = reader.getBits();
+                        data[column] = map(channel, reader, Double.BYTES);
+                        break;
+                    case FeatureSchema.STRING:
+                        intCells[column] = reader.getBits();
+                        doubleCells[column] = reader.getBits();
+                        int valueCount = reader.getInt();
+                        if (valueCount < 0) {
+                            throw new IllegalStateException("Negative dictionary size");
+                        }
+                        String[] values = new String[valueCount];
+                        for (int i = 0; i < values.length; i++) {
+                            values[i] = reader.getString();
+                        }
+                        dictionaries[column] = values;
+                        cellValues[column] = new Object[values.length];
+                        for (int i = 0; i < values.length; i++) {
+                            cellValues[column][i] = cellValue(values[i]);
+                        }
+                        data[column] = map(channel, reader, Integer.BYTES);
+                        break;
+                    default:
+                        throw new IllegalStateException("Unknown column type " + types[column]);
+                }
+            }
+        }
+
+        /**
+         * Maps the array of rows values at the reader's position and moves past it
+         */
+        private ByteBuffer map(FileChannel channel, ChannelReader reader, int width) throws IOException {
+            long bytes = (long) rows * width;
+            if (bytes > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Column too large to map: " + bytes + " bytes");
+            }
+            long start = reader.position();
+            reader.skip(bytes);
+            return channel.map(FileChannel.MapMode.READ_ONLY, start, bytes);
+        }
+
+        public int size() {
+            return rows;
+        }
+
+        public String[] getColumns() {
+            return names.clone();
+        }
+
+        /**
+         * Number a dictionary value stands for when a cell is marked numeric: FeatureBatch wrote it
+         * with Integer.toString or Double.toString
+         *
+         * @return Integer, Double, or null if the value is only text
+         */
+        private static Object cellValue(String text) {
+            try {
+                return Integer.parseInt(text);
+            } catch (NumberFormatException e) {
+                try {
+                    return Double.parseDouble(text);
+                } catch (NumberFormatException e2) {
+                    return null;
+                }
+            }
+        }
+
+        /**
+         * Row as a feature map, with the value types FeatureMapper.parseCsvFile gives the same line
+         */
+        public Map<String, Object> toMap(int row) {
+            Map<String, Object> features = new HashMap<>(names.length * 4 / 3 + 1);
+            for (int column = 0; column < names.length; column++) {
+                Object value;
+                switch (types[column]) {
+                    case FeatureSchema.INT:
+                        value = data[column].getInt(row * Integer.BYTES);
+                        break;
+                    case FeatureSchema.DOUBLE:
+                        double number = data[column].getDouble(row * Double.BYTES);
+                        if (intCells[column].get(row)) {
+                            value = (int) number;
+                        } else {
+                            value = number;
+                        }
+                        break;
+                    default:
+                        int code = data[column].getInt(row * Integer.BYTES);
+                        value = cellValues[column][code];
+                        if (value == null || !intCells[column].get(row) && !doubleCells[column].get(row)) {
+                            value = dictionaries[column][code];
+                        }
+                }
+                features.put(names[column], value);
+            }
+            return features;
+        }
+
+        /**
+         * Copies the mapped columns into a FeatureBatch
+         */
+        public FeatureBatch toBatch() {
+            int columns = names.length;
+            FeatureSchema schema = new FeatureSchema(names);
+            int[][] ints = new int[columns][];
+            double[][] doubles = new double[columns][];
+            int[][] codes = new int[columns][];
+            // FeatureBatch needs room for at least one row
+            int length = Math.max(1, rows);
+
+            for (int column = 0; column < columns; column++) {
+                ByteBuffer values = data[column].duplicate();
+                switch (types[column]) {
+                    case FeatureSchema.INT:
+                        ints[column] = new int[length];
+                        values.asIntBuffer().get(ints[column], 0, rows);
+                        break;
+                    case FeatureSchema.DOUBLE:
+                        doubles[column] = new double[length];
+                        values.asDoubleBuffer().get(doubles[column], 0, rows);
+                        break;
+                    default:
+                        codes[column] = new int[length];
+                        values.asIntBuffer().get(codes[column], 0, rows);
+                }
+            }
+
+            BitSet[] intCellCopies = new BitSet[columns];
+            BitSet[] doubleCellCopies = new BitSet[columns];
+            for (int column = 0; column < columns; column++) {
+                intCellCopies[column] = intCells[column] != null ? (BitSet) intCells[column].clone() : null;
+                doubleCellCopies[column] = doubleCells[column] != null ? (BitSet) doubleCells[column].clone() : null;
+            }
+            return FeatureBatch.ofColumns(schema, types, rows, ints, doubles, intCellCopies, doubleCellCopies, codes,
+                    dictionaries);
+        }
+    }
+}
@@ -2,6 +2,7 @@ import utils.LogObj;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Class to handle mapping of input data to feature dictionaries.
@@ -22,7 +23,7 @@ public class FeatureMapper {
      */
     public static Map<String, Object> parseKeyValueString(String input) throws IllegalArgumentException {
 
-        log.info("Parsing key-value string: " + input);
+        log.debug("Parsing key-value string: {}", input);
 
         Map<String, Object> features = new HashMap<>();
         
@@ -78,7 +79,7 @@ public class FeatureMapper {
      * @throws IllegalArgumentException If the CSV format is invalid
      */
     public static Map<String, Object> parseCsvLine(String headerLine, String dataLine) throws IllegalArgumentException {
-        log.info("Parsing CSV line: " + dataLine);
+        log.debug("Parsing CSV line: {}", dataLine);
 
         Map<String, Object> features = new HashMap<>();
         
@@ -118,26 +119,152 @@ public class FeatureMapper {
      * @throws IllegalArgumentException If the CSV format is invalid
      */
     public static List<Map<String, Object>> parseCsvFile(File csvFile) throws IOException, IllegalArgumentException {
-        log.info("Parsing CSV file: " + csvFile.getAbsolutePath());
+        log.info("Parsing CSV file: {}", csvFile.getAbsolutePath());
 
         List<Map<String, Object>> featuresList = new ArrayList<>();
         
-        try (BufferedReader reader = new BufferedReader(new FileReader(csvFile))) {
-            String headerLine = reader.readLine();
-            if (headerLine == null) {
-                throw new IllegalArgumentException("CSV file is empty");
-            }
-            
-            String dataLine;
-            while ((dataLine = reader.readLine()) != null) {
-                if (!dataLine.trim().isEmpty()) {
-                    featuresList.add(parseCsvLine(headerLine, dataLine));
-                }
+        try (MappedCsvParser parser = MappedCsvParser.open(csvFile)) {
+            String[] columns = parser.getColumns();
+            while (parser.nextRecord()) {
+                featuresList.add(toFeatureMap(parser, columns));
             }
         }
         
         return featuresList;
     }
+
+    /**
+     * Parses a CSV file into a columnar batch: the header becomes the schema and each
+     * cell goes straight into its column's primitive array, without per-row maps or boxing.
+     * 
+     * @param csvFile The CSV file to parse
+     * @return One batch row per data line in the CSV
+     * @throws IOException If an I/O error occurs
+     * @throws IllegalArgumentException If the CSV format is invalid
+     */
+    public static FeatureBatch parseCsvBatch(File csvFile) throws IOException, IllegalArgumentException {
+        log.info("Parsing CSV file into batch: {}", csvFile.getAbsolutePath());
+
+        try (MappedCsvParser parser = MappedCsvParser.open(csvFile)) {
+            FeatureBatch batch = new FeatureBatch(new FeatureSchema(parser.getColumns()));
+            fillBatch(parser, batch);
+            return batch;
+        }
+    }
+
+    /**
+     * Parses a CSV file into a columnar batch on several threads: the file is split into
+     * line-aligned byte ranges that are parsed in parallel and merged back in row order.
+     * Small files are parsed sequentially.
+     * 
+     * @param csvFile The CSV file to parse
+     * @param pool Pool the chunks are parsed on
+     * @return One batch row per data line in the CSV
+     * @throws IOException If an I/O error occurs
+     * @throws IllegalArgumentException If the CSV format is invalid
+     */
+    public static FeatureBatch parseCsvBatch(File csvFile, ForkJoinPool pool) throws IOException, IllegalArgumentException {
+        log.info("Parsing CSV file into batch in parallel: {}", csvFile.getAbsolutePath());
+
+        return ParallelCsvReader.parse(csvFile, pool);
+    }
+
+    /**
+     * Appends every remaining record of the parser to the batch
+     */
+    static void fillBatch(MappedCsvParser parser, FeatureBatch batch) throws IOException {
+        int columns = parser.getColumnCount();
+        while (parser.nextRecord()) {
+            int row = batch.addRow();
+            for (int column = 0; column < columns; column++) {
+                switch (parser.type(column)) {
+                    case MappedCsvParser.TYPE_INT:
+                        batch.setInt(row, column, parser.intValue(column));
+                        break;
+                    case MappedCsvParser.TYPE_DOUBLE:
+                        batch.setDouble(row, column, parser.doubleValue(column));
+                        break;
+                    default:
+                        batch.setString(row, column, parser.stringValue(column));
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the feature map of the parser's current record
+     */
+    private static Map<String, Object> toFeatureMap(MappedCsvParser parser, String[] columns) {
+        Map<String, Object> features = new HashMap<>(columns.length * 4 / 3 + 1);
+        for (int i = 0; i < columns.length; i++) {
+            features.put(columns[i], parser.value(i));
+        }
+        return features;
+    }
+    
+    /**
+     * Opens a CSV file for row-by-row reading, so only the current line is held in memory.
+     * If FeatureBatchCache has an up-to-date snapshot of the file, rows come from it instead of the text.
+     * 
+     * @param csvFile The CSV file to read
+     * @return A reader positioned after the header line
+     * @throws IOException If an I/O error occurs
+     * @throws IllegalArgumentException If the CSV file is empty
+     */
+    public static CsvRowReader openCsvFile(File csvFile) throws IOException, IllegalArgumentException {
+        log.info("Opening CSV file: {}", csvFile.getAbsolutePath());
+
+        FeatureBatchCache.Snapshot snapshot = FeatureBatchCache.open(csvFile);
+        if (snapshot != null) {
+            return new CsvRowReader(snapshot);
+        }
+        return new CsvRowReader(MappedCsvParser.open(csvFile));
+    }
+
+    /**
+     * Lazy CSV reader: one feature map per data line, blank lines skipped
+     */
+    public static class CsvRowReader implements BatchPredictionPublisher.RowSource {
+        private final MappedCsvParser parser;
+        private final FeatureBatchCache.Snapshot snapshot;
+        private final String[] columns;
+        private int row;
+
+        private CsvRowReader(MappedCsvParser parser) {
+            this.parser = parser;
+            this.snapshot = null;
+            this.columns = parser.getColumns();
+        }
+
+        private CsvRowReader(FeatureBatchCache.Snapshot snapshot) {
+            this.parser = null;
+            this.snapshot = snapshot;
+            this.columns = snapshot.getColumns();
+        }
+
+        /**
+         * Reads the next data line.
+         * A malformed line throws, but is consumed: the following call moves on to the next line.
+         * 
+         * @return The feature map of the next line, or null at end of file
+         * @throws IOException If an I/O error occurs
+         * @throws IllegalArgumentException If the line does not match the header
+         */
+        @Override
+        public Map<String, Object> next() throws IOException, IllegalArgumentException {
+            if (snapshot != null) {
+                return row < snapshot.size() ? snapshot.toMap(row++) : null;
+            }
+            return parser.nextRecord() ? toFeatureMap(parser, columns) : null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (parser != null) {
+                parser.close();
+            }
+        }
+    }
     
     /**
      * Validates that all required features are present in the feature map.
@@ -147,7 +274,7 @@ public class FeatureMapper {
      * @throws IllegalArgumentException If any required feature is missing
      */
     public static void validateFeatures(Map<String, Object> features, List<String> requiredFeatures) throws IllegalArgumentException {
-        log.info("Validating features: " + features);
+        log.debug("Validating features: {}", features);
 
         for (String feature : requiredFeatures) {
             if (!features.containsKey(feature)) {
@@ -156,6 +283,20 @@ public class FeatureMapper {
         }
     }
     
+    /**
+     * Validates that all required features are columns of the batch.
+     * Checked once against the schema rather than once per row.
+     * 
+     * @param batch The feature batch to validate
+     * @param requiredFeatures The list of required feature names
+     * @throws IllegalArgumentException If any required feature is missing
+     */
+    public static void validateFeatures(FeatureBatch batch, List<String> requiredFeatures) throws IllegalArgumentException {
+        log.info("Validating features: {}", batch.getSchema());
+
+        batch.getSchema().validate(requiredFeatures);
+    }
+    
     /**
      * Attempts to parse a string value into a numeric type if possible.
      * 
@@ -163,7 +304,7 @@ public class FeatureMapper {
      * @return The parsed value (Integer, Double, or String)
      */
     private static Object parseValue(String value) {
-        log.info("Parsing value: " + value);
+        log.debug("Parsing value: {}", value);
 
         // Try to parse as integer
         try {
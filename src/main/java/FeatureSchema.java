@@ -0,0 +1,112 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled column layout of a feature table: name -> column index.
+ *
+ * Built once per header, so rows are addressed by index instead of by name.
+ * Immutable, so batches may share one; column types (INT, DOUBLE, STRING) belong to each
+ * FeatureBatch, which widens them as its values arrive.
+ */
+public class FeatureSchema {
+    public static final int INT = 0;
+    public static final int DOUBLE = 1;
+    public static final int STRING = 2;
+
+    private final String[] names;
+    private final Map<String, Integer> indexes;
+    private final String[] jsonKeys;
+
+    /**
+     * @param names Column names, in column order (e.g. a CSV header)
+     * @throws IllegalArgumentException If a name is repeated
+     */
+    public FeatureSchema(String[] names) throws IllegalArgumentException {
+        this.names = names.clone();
+        this.indexes = new HashMap<>(names.length * 4 / 3 + 1);
+        this.jsonKeys = new String[names.length];
+
+        for (int i = 0; i < names.length; i++) {
+            if (indexes.put(names[i], i) != null) {
+                throw new IllegalArgumentException("Duplicate column: " + names[i]);
+            }
+            jsonKeys[i] = "\"" + escapeJson(names[i]) + "\":";
+        }
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String getName(int column) {
+        return names[column];
+    }
+
+    public String[] getNames() {
+        return names.clone();
+    }
+
+    /**
+     * @return Column index of the name, or -1 if there is no such column
+     */
+    public int indexOf(String name) {
+        Integer index = indexes.get(name);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * Pre-encoded JSON member prefix of the column: "name":
+     */
+    public String getJsonKey(int column) {
+        return jsonKeys[column];
+    }
+
+    /**
+     * Checks the required features once for the whole table
+     *
+     * @throws IllegalArgumentException If any required feature is missing
+     */
+    public void validate(List<String> requiredFeatures) throws IllegalArgumentException {
+        for (String feature : requiredFeatures) {
+            if (!indexes.containsKey(feature)) {
+                throw new IllegalArgumentException("Missing required feature: " + feature);
+            }
+        }
+    }
+
+    /**
+     * Escapes special characters in a string for JSON
+     */
+    static String escapeJson(String input) {
+        StringBuilder out = null;
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            String replacement;
+            switch (c) {
+                case '\\': replacement = "\\\\"; break;
+                case '"': replacement = "\\\""; break;
+                case '\n': replacement = "\\n"; break;
+                case '\r': replacement = "\\r"; break;
+                case '\t': replacement = "\\t"; break;
+                default:
+                    replacement = c < 0x20 ? String.format("\\u%04x", (int) c) : null;
+            }
+            if (replacement != null) {
+                if (out == null) {
+                    out = new StringBuilder(input.length() + 8).append(input, 0, i);
+                }
+                out.append(replacement);
+            } else if (out != null) {
+                out.append(c);
+            }
+        }
+        return out != null ? out.toString() : input;
+    }
+
+    @Override
+    public String toString() {
+        return "FeatureSchema" + Arrays.toString(names);
+    }
+}
@@ -0,0 +1,767 @@
+import utils.LogObj;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Byte-level CSV reader over a memory-mapped file (UTF-8).
+ *
+ * The header is parsed once into the column names; each data record is then scanned in place
+ * and its fields classified as int, double or string without going through exceptions.
+ * Fields may be quoted ("a,b", "say ""hi"""), unquoted fields are trimmed, blank lines are skipped.
+ * Large files are mapped in windows, so any size works with bounded address space.
+ * A gzip-compressed file cannot be mapped: it is read through CompressedInput into a heap window instead.
+ * Small files are read the same way: mapping them saves nothing, and a mapping outlives close()
+ * until it is garbage collected, which keeps the file from being deleted on Windows.
+ */
+public class MappedCsvParser implements Closeable {
+    public static final int TYPE_INT = 0;
+    public static final int TYPE_DOUBLE = 1;
+    public static final int TYPE_STRING = 2;
+
+    private static final int WINDOW = 1 << 28;
+    // Initial heap window for compressed input, doubled up to WINDOW for longer records
+    private static final int STREAM_WINDOW = 1 << 20;
+    // Plain files below this size are read into a heap window rather than mapped
+    private static final long MIN_MAPPED_BYTES = 4L << 20;
+    private static final int STRING_CACHE = 256;
+
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // Scan outcome of one record
+    private static final int EOF = 0;
+    private static final int RECORD = 1;
+    private static final int OVERFLOW = 2;
+
+    private final File csvFile;
+    // Exactly one of channel (mapped) and input (compressed or small file) is set
+    private final FileChannel channel;
+    private final InputStream input;
+    private final long size;
+    private final String[] columns;
+    // File offset of the first data record (right after the header)
+    private final long dataStart;
+
+    private ByteBuffer window;
+    private long windowStart;
+    private int pos;
+    private boolean inputDone;
+
+    // Fields of the current record: byte range in the window, quoted / has "" escapes
+    private int fieldCount;
+    private int[] starts = new int[64];
+    private int[] ends = new int[64];
+    private boolean[] quoted = new boolean[64];
+    private boolean[] escaped = new boolean[64];
+
+    // Classification of the last field looked at (-1 = none in this record)
+    private int lastField = -1;
+    private int lastType;
+    private int lastInt;
+    private double lastDouble;
+
+    private byte[] scratch = new byte[256];
+    private byte[][][] cachedBytes;
+    private String[][] cachedStrings;
+
+    // Logger
+    private static final LogObj log = new LogObj("MappedCsvParser");
+
+    private MappedCsvParser(File csvFile, FileChannel channel, InputStream input) throws IOException {
+        this.csvFile = csvFile;
+        this.channel = channel;
+        this.input = input;
+        if (input != null) {
+            this.size = -1;
+            window = ByteBuffer.wrap(new byte[STREAM_WINDOW], 0, 0);
+            fill(0);
+        } else {
+            this.size = channel.size();
+            map(0);
+        }
+
+        // UTF-8 byte order mark
+        if (window.limit() >= 3 && window.get(0) == (byte) 0xEF && window.get(1) == (byte) 0xBB && window.get(2) == (byte) 0xBF) {
+            pos = 3;
+        }
+
+        if (!nextNonBlank()) {
+            throw new IllegalArgumentException("CSV file is empty");
+        }
+        columns = new String[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            columns[i] = decode(i, -1);
+        }
+        dataStart = windowStart + pos;
+        cachedBytes = new byte[columns.length][][];
+        cachedStrings = new String[columns.length][];
+    }
+
+    /**
+     * Parser limited to the records in [start, end) of the file, under an already known header
+     */
+    private MappedCsvParser(File csvFile, FileChannel channel, String[] columns, long start, long end) throws IOException {
+        this.csvFile = csvFile;
+        this.channel = channel;
+        this.input = null;
+        this.size = Math.min(end, channel.size());
+        this.columns = columns.clone();
+        this.dataStart = start;
+        map(start);
+        cachedBytes = new byte[columns.length][][];
+        cachedStrings = new String[columns.length][];
+    }
+
+    /**
+     * Parser over a compressed file's records from dataStart (decompressed offset) on, under known column names
+     */
+    private MappedCsvParser(File csvFile, InputStream input, String[] columns, long dataStart) throws IOException {
+        this.csvFile = csvFile;
+        this.channel = null;
+        this.input = input;
+        this.size = -1;
+        this.columns = columns.clone();
+        this.dataStart = dataStart;
+        windowStart = dataStart;
+        window = ByteBuffer.wrap(new byte[STREAM_WINDOW], 0, 0);
+        fill(0);
+        cachedBytes = new byte[columns.length][][];
+        cachedStrings = new String[columns.length][];
+    }
+
+    /**
+     * Maps the file (or starts decompressing it, if it is gzip) and reads its header line
+     *
+     * @param csvFile The CSV file to read, plain or gzip-compressed
+     * @return A parser positioned on the first data record
+     * @throws IOException If the file cannot be opened or mapped
+     * @throws IllegalArgumentException If the CSV file is empty
+     */
+    public static MappedCsvParser open(File csvFile) throws IOException, IllegalArgumentException {
+        boolean gzip = CompressedInput.isGzip(csvFile);
+        if (gzip || csvFile.length() < MIN_MAPPED_BYTES) {
+            log.info("{} CSV file: {}", gzip ? "Decompressing" : "Reading", csvFile.getAbsolutePath());
+
+            InputStream input = gzip ? CompressedInput.open(csvFile) : Files.newInputStream(csvFile.toPath());
+            try {
+                return new MappedCsvParser(csvFile, null, input);
+            } catch (IOException | RuntimeException e) {
+                input.close();
+                throw e;
+            }
+        }
+
+        log.info("Mapping CSV file: {}", csvFile.getAbsolutePath());
+
+        FileChannel channel = FileChannel.open(csvFile.toPath(), StandardOpenOption.READ);
+        try {
+            return new MappedCsvParser(csvFile, channel, null);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Maps only the byte range [start, end) of a file whose header is already known.
+     * start must be the first byte of a record and end the byte after a record's line break
+     * (or the file size), e.g. offsets returned by findRecordStart.
+     *
+     * @param csvFile The CSV file to read
+     * @param columns Column names of the file's header
+     * @param start First byte of the range
+     * @param end End of the range (exclusive)
+     * @return A parser over the data records of the range
+     * @throws IOException If the file cannot be opened or mapped
+     */
+    public static MappedCsvParser openRange(File csvFile, String[] columns, long start, long end) throws IOException {
+        FileChannel channel = FileChannel.open(csvFile.toPath(), StandardOpenOption.READ);
+        try {
+            return new MappedCsvParser(csvFile, channel, columns, start, end);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the records of a file that has no CSV header, under the given column names.
+     * The first dataStart bytes are skipped (e.g. an ARFF preamble); for a gzip file they are
+     * counted in decompressed bytes.
+     *
+     * @param csvFile The file to read, plain or gzip-compressed
+     * @param columns Column names of the records
+     * @param dataStart Offset of the first record
+     * @return A parser positioned before the first record
+     * @throws IOException If the file cannot be opened or mapped
+     */
+    public static MappedCsvParser openData(File csvFile, String[] columns, long dataStart) throws IOException {
+        if (!CompressedInput.isGzip(csvFile)) {
+            return openRange(csvFile, columns, dataStart, csvFile.length());
+        }
+
+        InputStream input = CompressedInput.open(csvFile);
+        try {
+            skipFully(input, dataStart);
+            return new MappedCsvParser(csvFile, input, columns, dataStart);
+        } catch (IOException | RuntimeException e) {
+            input.close();
+            throw e;
+        }
+    }
+
+    private static void skipFully(InputStream input, long bytes) throws IOException {
+        while (bytes > 0) {
+            long skipped = input.skip(bytes);
+            if (skipped <= 0) {
+                // skip() may stop early without being at the end: read one byte to tell
+                if (input.read() < 0) {
+                    throw new EOFException("Unexpected end of input");
+                }
+                skipped = 1;
+            }
+            bytes -= skipped;
+        }
+    }
+
+    /**
+     * @return File offset of the first data record, just after the header
+     */
+    public long getDataStart() {
+        return dataStart;
+    }
+
+    /**
+     * @return Size of the file (or end of the range) in bytes, -1 if the file is read as a stream
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return true if the file is read as a stream (gzip, or too small to map); such a file has no byte ranges to split
+     */
+    public boolean isStreamed() {
+        return input != null;
+    }
+
+    /**
+     * Finds the first line start at or after offset. Assumes line breaks only end records,
+     * i.e. no quoted field spans that position.
+     *
+     * @return Offset just after the next '\n', or the file size if there is none
+     */
+    public long findRecordStart(long offset) throws IOException {
+        if (input != null) {
+            throw new IllegalStateException("Streamed CSV file cannot be split: " + csvFile);
+        }
+        if (offset <= dataStart) {
+            return dataStart;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long position = offset - 1;
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return Math.min(position + i + 1, size);
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * @return Column names from the header, trimmed
+     */
+    public String[] getColumns() {
+        return columns.clone();
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    /**
+     * Moves to the next data record.
+     * A record with the wrong number of fields throws, but is consumed: the next call moves on.
+     *
+     * @return false at end of file
+     * @throws IOException If the next window cannot be mapped
+     * @throws IllegalArgumentException If the record does not match the header
+     */
+    public boolean nextRecord() throws IOException, IllegalArgumentException {
+        if (!nextNonBlank()) {
+            return false;
+        }
+        if (fieldCount != columns.length) {
+            throw new IllegalArgumentException(
+                    "Number of headers (" + columns.length + ") does not match number of values (" + fieldCount + ")");
+        }
+        return true;
+    }
+
+    /**
+     * Classifies a field of the current record
+     *
+     * @return TYPE_INT, TYPE_DOUBLE or TYPE_STRING
+     */
+    public int type(int column) {
+        classify(column);
+        return lastType;
+    }
+
+    /**
+     * Numeric value of a field (TYPE_INT or TYPE_DOUBLE); NaN for a string field
+     */
+    public double doubleValue(int column) {
+        classify(column);
+        switch (lastType) {
+            case TYPE_INT:
+                return lastInt;
+            case TYPE_DOUBLE:
+                return lastDouble;
+            default:
+                return Double.NaN;
+        }
+    }
+
+    /**
+     * Value of a TYPE_INT field; a double is truncated, a string field gives 0
+     */
+    public int intValue(int column) {
+        classify(column);
+        switch (lastType) {
+            case TYPE_INT:
+                return lastInt;
+            case TYPE_DOUBLE:
+                return (int) lastDouble;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Field text, unquoted and unescaped. Repeated values of a column share one String instance.
+     */
+    public String stringValue(int column) {
+        return decode(column, column);
+    }
+
+    /**
+     * Field as Integer, Double or String, the same types FeatureMapper.parseValue returns
+     */
+    public Object value(int column) {
+        classify(column);
+        switch (lastType) {
+            case TYPE_INT:
+                return lastInt;
+            case TYPE_DOUBLE:
+                return lastDouble;
+            default:
+                return stringValue(column);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // The mapping itself is released when the buffer is collected
+        window = null;
+        if (channel != null) {
+            channel.close();
+        }
+        if (input != null) {
+            input.close();
+        }
+    }
+
+    private void map(long offset) throws IOException {
+        windowStart = offset;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(WINDOW, size - offset));
+        pos = 0;
+    }
+
+    /**
+     * Moves the heap window to start at keepFrom and reads more input after what is kept.
+     * A record that fills the whole window doubles it.
+     */
+    private void fill(int keepFrom) throws IOException {
+        byte[] bytes = window.array();
+        int kept = window.limit() - keepFrom;
+        if (keepFrom == 0 && kept == bytes.length) {
+            if (bytes.length >= WINDOW) {
+                throw new IOException("CSV record longer than " + WINDOW + " bytes in " + csvFile);
+            }
+            bytes = Arrays.copyOf(bytes, Math.min(WINDOW, bytes.length * 2));
+        } else {
+            System.arraycopy(bytes, keepFrom, bytes, 0, kept);
+        }
+
+        int filled = kept;
+        while (filled < bytes.length) {
+            int read = input.read(bytes, filled, bytes.length - filled);
+            if (read < 0) {
+                inputDone = true;
+                break;
+            }
+            filled += read;
+        }
+        windowStart += keepFrom;
+        window = ByteBuffer.wrap(bytes, 0, filled);
+        pos = 0;
+    }
+
+    /**
+     * Scans records until one is not blank; remaps (or refills) when a record crosses the end of the window
+     */
+    private boolean nextNonBlank() throws IOException {
+        while (true) {
+            int recordStart = pos;
+            int outcome = scanRecord();
+            if (outcome == EOF) {
+                return false;
+            }
+            if (outcome == OVERFLOW) {
+                if (input != null) {
+                    fill(recordStart);
+                    continue;
+                }
+                if (recordStart == 0) {
+                    throw new IOException("CSV record longer than " + WINDOW + " bytes in " + csvFile);
+                }
+                map(windowStart + recordStart);
+                continue;
+            }
+            if (fieldCount == 1 && !quoted[0] && trimmedStart(0) == trimmedEnd(0)) {
+                continue;
+            }
+            return true;
+        }
+    }
+
+    private int scanRecord() {
+        int limit = window.limit();
+        boolean lastWindow = input != null ? inputDone : windowStart + limit >= size;
+        int p = pos;
+        if (p >= limit) {
+            return lastWindow ? EOF : OVERFLOW;
+        }
+
+        fieldCount = 0;
+        lastField = -1;
+        while (true) {
+            if (fieldCount == starts.length) {
+                growFields();
+            }
+
+            if (p < limit && window.get(p) == '"') {
+                int start = ++p;
+                boolean hasEscapes = false;
+                while (true) {
+                    if (p >= limit) {
+                        if (lastWindow) {
+                            throw new IllegalArgumentException("Unterminated quoted field in " + csvFile);
+                        }
+                        return OVERFLOW;
+                    }
+                    if (window.get(p) == '"') {
+                        if (p + 1 >= limit && !lastWindow) {
+                            return OVERFLOW;
+                        }
+                        if (p + 1 < limit && window.get(p + 1) == '"') {
+                            hasEscapes = true;
+                            p += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    p++;
+                }
+                starts[fieldCount] = start;
+                ends[fieldCount] = p;
+                quoted[fieldCount] = true;
+                escaped[fieldCount] = hasEscapes;
+                p++;
+                // Anything between the closing quote and the delimiter is dropped
+                while (p < limit && !isDelimiter(window.get(p))) {
+                    p++;
+                }
+            } else {
+                int start = p;
+                while (p < limit && !isDelimiter(window.get(p))) {
+                    p++;
+                }
+                starts[fieldCount] = start;
+                ends[fieldCount] = p;
+                quoted[fieldCount] = false;
+                escaped[fieldCount] = false;
+            }
+            fieldCount++;
+
+            if (p >= limit) {
+                if (!lastWindow) {
+                    return OVERFLOW;
+                }
+                pos = p;
+                return RECORD;
+            }
+            byte b = window.get(p++);
+            if (b == ',') {
+                continue;
+            }
+            if (b == '\r') {
+                if (p >= limit && !lastWindow) {
+                    return OVERFLOW;
+                }
+                if (p < limit && window.get(p) == '\n') {
+                    p++;
+                }
+            }
+            pos = p;
+            return RECORD;
+        }
+    }
+
+    private static boolean isDelimiter(byte b) {
+        return b == ',' || b == '\n' || b == '\r';
+    }
+
+    private void growFields() {
+        int length = starts.length * 2;
+        starts = Arrays.copyOf(starts, length);
+        ends = Arrays.copyOf(ends, length);
+        quoted = Arrays.copyOf(quoted, length);
+        escaped = Arrays.copyOf(escaped, length);
+    }
+
+    private int trimmedStart(int field) {
+        int s = starts[field];
+        if (!quoted[field]) {
+            int e = ends[field];
+            while (s < e && isBlank(window.get(s))) {
+                s++;
+            }
+        }
+        return s;
+    }
+
+    private int trimmedEnd(int field) {
+        int e = ends[field];
+        if (!quoted[field]) {
+            int s = starts[field];
+            while (e > s && isBlank(window.get(e - 1))) {
+                e--;
+            }
+            if (e == s) {
+                // All blank: empty at the field's end, where trimmedStart stops too
+                return ends[field];
+            }
+        }
+        return e;
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    /**
+     * Decimal number grammar: [+-]digits[.digits][(e|E)[+-]digits], plus NaN / Infinity.
+     * Whole numbers that fit an int are TYPE_INT, like Integer.parseInt would accept.
+     */
+    private void classify(int field) {
+        if (field == lastField) {
+            return;
+        }
+        lastField = field;
+        lastType = TYPE_STRING;
+        if (escaped[field]) {
+            return;
+        }
+        int s = trimmedStart(field);
+        int e = trimmedEnd(field);
+        if (s == e) {
+            return;
+        }
+
+        int p = s;
+        boolean negative = false;
+        byte b = window.get(p);
+        if (b == '-' || b == '+') {
+            negative = b == '-';
+            p++;
+        }
+
+        long mantissa = 0;
+        int significant = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean dot = false;
+        boolean exponent = false;
+        for (; p < e; p++) {
+            b = window.get(p);
+            if (b >= '0' && b <= '9') {
+                digits++;
+                if (mantissa != 0 || b != '0') {
+                    significant++;
+                }
+                if (significant <= 18) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (dot) {
+                        scale--;
+                    }
+                } else if (!dot) {
+                    scale++;
+                }
+            } else if (b == '.' && !dot) {
+                dot = true;
+            } else if ((b == 'e' || b == 'E') && digits > 0) {
+                exponent = true;
+                p++;
+                break;
+            } else {
+                classifySpecial(s, e);
+                return;
+            }
+        }
+        if (digits == 0) {
+            classifySpecial(s, e);
+            return;
+        }
+
+        int exp = 0;
+        if (exponent) {
+            boolean expNegative = false;
+            if (p < e && (window.get(p) == '-' || window.get(p) == '+')) {
+                expNegative = window.get(p) == '-';
+                p++;
+            }
+            if (p == e) {
+                return;
+            }
+            for (; p < e; p++) {
+                b = window.get(p);
+                if (b < '0' || b > '9') {
+                    return;
+                }
+                if (exp < 100_000) {
+                    exp = exp * 10 + (b - '0');
+                }
+            }
+            if (expNegative) {
+                exp = -exp;
+            }
+        }
+
+        if (!dot && !exponent && significant <= 10) {
+            long value = negative ? -mantissa : mantissa;
+            if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                lastType = TYPE_INT;
+                lastInt = (int) value;
+                return;
+            }
+        }
+
+        lastType = TYPE_DOUBLE;
+        int power = scale + exp;
+        if (significant <= 15 && power >= -22 && power <= 22) {
+            // Both operands exact, so one correctly rounded operation
+            double value = power < 0 ? mantissa / POW10[-power] : mantissa * POW10[power];
+            lastDouble = negative ? -value : value;
+        } else {
+            lastDouble = Double.parseDouble(ascii(s, e));
+        }
+    }
+
+    private void classifySpecial(int s, int e) {
+        String text;
+        switch (e - s) {
+            case 3:
+            case 8:
+            case 9:
+                text = ascii(s, e);
+                break;
+            default:
+                return;
+        }
+        if (text.equals("NaN") || text.equals("Infinity") || text.equals("+Infinity") || text.equals("-Infinity")) {
+            lastType = TYPE_DOUBLE;
+            lastDouble = Double.parseDouble(text);
+        }
+    }
+
+    private String ascii(int s, int e) {
+        int length = copy(s, e, false);
+        return new String(scratch, 0, length, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Copies a field into scratch, collapsing "" escapes
+     *
+     * @return Number of bytes copied
+     */
+    private int copy(int s, int e, boolean unescape) {
+        if (scratch.length < e - s) {
+            scratch = new byte[Math.max(e - s, scratch.length * 2)];
+        }
+        int length = 0;
+        for (int p = s; p < e; p++) {
+            byte b = window.get(p);
+            scratch[length++] = b;
+            if (unescape && b == '"') {
+                p++;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * @param cacheColumn Column whose string cache to use, or -1 for none (header)
+     */
+    private String decode(int field, int cacheColumn) {
+        int s = trimmedStart(field);
+        int e = trimmedEnd(field);
+        int length = copy(s, e, escaped[field]);
+        if (cacheColumn < 0) {
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + scratch[i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & (STRING_CACHE - 1);
+
+        byte[][] bytes = cachedBytes[cacheColumn];
+        String[] strings = cachedStrings[cacheColumn];
+        if (bytes == null) {
+            bytes = cachedBytes[cacheColumn] = new byte[STRING_CACHE][];
+            strings = cachedStrings[cacheColumn] = new String[STRING_CACHE];
+        }
+        byte[] key = bytes[slot];
+        if (key != null && Arrays.equals(key, 0, key.length, scratch, 0, length)) {
+            return strings[slot];
+        }
+
+        String value = new String(scratch, 0, length, StandardCharsets.UTF_8);
+        bytes[slot] = Arrays.copyOf(scratch, length);
+        strings[slot] = value;
+        return value;
+    }
+}
@@ -1,20 +1,31 @@
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import utils.LogObj;
 
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.io.IOException;
 import java.net.ConnectException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
 
 /**
  * Client for communicating with the Python Model Server.
@@ -24,6 +35,17 @@ public class ModelServerClient {
     private final HttpClient httpClient;
     private final int timeout;
     private final int maxRetries;
+    private final int batchConcurrency;
+
+    // Bounded window for sendPredictionRequestAsync
+    public static final int DEFAULT_MAX_IN_FLIGHT = 256;
+    private final Semaphore inFlightPermits = new Semaphore(DEFAULT_MAX_IN_FLIGHT);
+
+    // Rows a batch keeps in flight (-Dids.gui.concurrency)
+    public static final int DEFAULT_BATCH_CONCURRENCY = 8;
+
+    // Thread-safe, shared by every response parser
+    private static final JsonFactory JSON = new JsonFactory();
 
     //Logger
     private final LogObj log = new LogObj("ModelServerClient");
@@ -32,7 +54,7 @@ public class ModelServerClient {
      * Constructor - initializes the HTTP client with default settings
      */
     public ModelServerClient() {
-        this(10, 3);
+        this(10, 3, Integer.getInteger("ids.gui.concurrency", DEFAULT_BATCH_CONCURRENCY));
     }
 
     /**
@@ -42,10 +64,22 @@ public class ModelServerClient {
      * @param maxRetries Maximum number of retries for failed requests
      */
     public ModelServerClient(int timeoutSeconds, int maxRetries) {
+        this(timeoutSeconds, maxRetries, DEFAULT_BATCH_CONCURRENCY);
+    }
+
+    /**
+     * Constructor - initializes the HTTP client with custom settings
+     *
+     * @param timeoutSeconds Timeout in seconds for HTTP requests
+     * @param maxRetries Maximum number of retries for failed requests
+     * @param batchConcurrency Maximum number of batch rows in flight at once
+     */
+    public ModelServerClient(int timeoutSeconds, int maxRetries, int batchConcurrency) {
         log.info("Initializing ModelServerClient with timeout ");
 
         this.timeout = timeoutSeconds;
         this.maxRetries = maxRetries;
+        this.batchConcurrency = Math.max(1, Math.min(batchConcurrency, DEFAULT_MAX_IN_FLIGHT));
 
         // Create an HTTP client with a timeout
         httpClient = HttpClient.newBuilder()
@@ -62,7 +96,7 @@ public class ModelServerClient {
      * @return The prediction result
      */
     public PredictionResult predict(String serverUrl, String inputData) {
-        log.info("Predicting data from " + serverUrl + " to " + inputData);
+        log.debug("Predicting data from {} to {}", serverUrl, inputData);
 
         try {
             // Parse the input data into a feature map
@@ -77,6 +111,19 @@ public class ModelServerClient {
         }
     }
 
+    /**
+     * Called once per finished batch row, from the HTTP client threads
+     */
+    public interface BatchProgressListener {
+        /**
+         * @param completed Rows finished so far (successful or not)
+         * @param total Rows in the batch
+         * @param rowsPerSecond Average rate since the batch started
+         * @param etaMillis Estimated time left at that rate
+         */
+        void onProgress(int completed, int total, double rowsPerSecond, long etaMillis);
+    }
+
     /**
      * Sends a batch prediction request to the Python Model Server
      * 
@@ -85,15 +132,24 @@ public class ModelServerClient {
      * @return List of prediction results
      */
     public List<PredictionResult> batchPredict(String serverUrl, List<String> inputDataList) {
-        log.info("Batch predicting data from " + serverUrl);
-
-        List<PredictionResult> results = new ArrayList<>();
+        return batchPredict(serverUrl, inputDataList, null);
+    }
 
-        for (String inputData : inputDataList) {
-            results.add(predict(serverUrl, inputData));
-        }
+    /**
+     * Sends a batch prediction request to the Python Model Server, keeping up to
+     * batchConcurrency rows in flight
+     *
+     * @param serverUrl The URL of the Python Model Server
+     * @param inputDataList List of input data strings in key-value format
+     * @param progress Optional progress listener (may be null)
+     * @return List of prediction results, in input order
+     */
+    public List<PredictionResult> batchPredict(String serverUrl, List<String> inputDataList,
+                                               BatchProgressListener progress) {
+        log.info("Batch predicting data from {}", serverUrl);
 
-        return results;
+        return predictInOrder(serverUrl, inputDataList.size(),
+                i -> createJsonRequest(FeatureMapper.parseKeyValueString(inputDataList.get(i))), progress);
     }
 
     /**
@@ -104,18 +160,29 @@ public class ModelServerClient {
      * @return List of prediction results
      */
     public List<PredictionResult> batchPredictFromCsv(String serverUrl, java.io.File csvFile) {
-        log.info("Batch predicting data from " + serverUrl);
+        return batchPredictFromCsv(serverUrl, csvFile, null);
+    }
+
+    /**
+     * Sends a batch prediction request from a CSV file, keeping up to batchConcurrency rows in flight
+     *
+     * @param serverUrl The URL of the Python Model Server
+     * @param csvFile The CSV file containing test data
+     * @param progress Optional progress listener (may be null)
+     * @return List of prediction results, in row order
+     */
+    public List<PredictionResult> batchPredictFromCsv(String serverUrl, java.io.File csvFile,
+                                                      BatchProgressListener progress) {
+        log.info("Batch predicting data from {}", serverUrl);
 
         List<PredictionResult> results = new ArrayList<>();
 
         try {
-            // Parse the CSV file into a list of feature maps
-            List<Map<String, Object>> featuresList = FeatureMapper.parseCsvFile(csvFile);
+            // Columnar batch from the cache, or parsed (large files on all cores) and cached
+            FeatureBatch batch = FeatureBatchCache.load(csvFile, ForkJoinPool.commonPool());
 
-            // Send a prediction request for each set of features
-            for (Map<String, Object> features : featuresList) {
-                results.add(sendPredictionRequest(serverUrl, features));
-            }
+            // Send the rows concurrently, results come back in row order
+            results.addAll(batchPredict(serverUrl, batch, progress));
         } catch (IOException e) {
             results.add(new PredictionResult("CSV file error: " + e.getMessage()));
         } catch (IllegalArgumentException e) {
@@ -127,6 +194,116 @@ public class ModelServerClient {
         return results;
     }
 
+    /**
+     * Sends every row of an already parsed batch, keeping up to batchConcurrency rows in flight
+     *
+     * @param serverUrl The URL of the Python Model Server
+     * @param batch Feature rows, e.g. NslKddReader.Dataset.getFeatures()
+     * @param progress Optional progress listener (may be null)
+     * @return List of prediction results, in row order
+     */
+    public List<PredictionResult> batchPredict(String serverUrl, FeatureBatch batch, BatchProgressListener progress) {
+        log.info("Batch predicting {} rows from {}", batch.size(), serverUrl);
+
+        return predictInOrder(serverUrl, batch.size(), i -> createJsonRequest(batch, i), progress);
+    }
+
+    /**
+     * Streams predictions for a CSV file without loading it: rows are read as the subscriber
+     * requests results, and at most batchConcurrency rows are in flight. Cancelling the
+     * subscription stops reading and closes the file.
+     *
+     * @param serverUrl The URL of the Python Model Server
+     * @param csvFile The CSV file containing test data
+     * @return Single-use publisher of one result per data row, in row order
+     */
+    public Flow.Publisher<PredictionResult> streamPredictFromCsv(String serverUrl, java.io.File csvFile) {
+        log.info("Streaming predictions for {} to {}", csvFile, serverUrl);
+
+        return new BatchPredictionPublisher(this, serverUrl, csvFile, batchConcurrency);
+    }
+
+    /**
+     * Streams the predictions of already opened rows, e.g. the records of an NSL-KDD file
+     *
+     * @param serverUrl The URL of the Python Model Server
+     * @param rows The rows to predict; closed when the stream ends or is cancelled
+     * @param name Name of the rows for log messages
+     * @return Publisher of one result per row, in row order
+     */
+    public Flow.Publisher<PredictionResult> streamPredictRows(String serverUrl,
+                                                              BatchPredictionPublisher.RowSource rows, String name) {
+        log.info("Streaming predictions for {} to {}", name, serverUrl);
+
+        return new BatchPredictionPublisher(this, serverUrl, () -> rows, name, batchConcurrency);
+    }
+
+    /**
+     * Sends rows 0..total-1 with at most batchConcurrency requests outstanding.
+     * Each row ends up in its own slot, so a bad row or failed request only yields an error result for that row.
+     *
+     * @param serverUrl The URL of the Python Model Server
+     * @param total Number of rows
+     * @param rowJson JSON request body of row i (IllegalArgumentException = bad row)
+     * @param progress Optional progress listener (may be null)
+     * @return Prediction results, in row order
+     */
+    private List<PredictionResult> predictInOrder(String serverUrl, int total,
+                                                  IntFunction<String> rowJson,
+                                                  BatchProgressListener progress) {
+        PredictionResult[] results = new PredictionResult[total];
+        Semaphore window = new Semaphore(batchConcurrency);
+        AtomicInteger completed = new AtomicInteger();
+        long startNanos = System.nanoTime();
+
+        try {
+            for (int i = 0; i < total; i++) {
+                String json;
+                try {
+                    json = rowJson.apply(i);
+                } catch (IllegalArgumentException e) {
+                    results[i] = new PredictionResult("Input data format error: " + e.getMessage());
+                    reportProgress(progress, completed.incrementAndGet(), total, startNanos);
+                    continue;
+                }
+
+                window.acquire();
+                int index = i;
+                sendJsonAsync(serverUrl, json).whenComplete((result, error) -> {
+                    results[index] = result != null ? result : errorResult(serverUrl, error);
+                    reportProgress(progress, completed.incrementAndGet(), total, startNanos);
+                    window.release();
+                });
+            }
+
+            // Wait for the last rows in flight
+            window.acquire(batchConcurrency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (int i = 0; i < total; i++) {
+                if (results[i] == null) {
+                    results[i] = new PredictionResult("Request interrupted: " + e.getMessage());
+                }
+            }
+        }
+
+        return Arrays.asList(results);
+    }
+
+    private void reportProgress(BatchProgressListener progress, int completed, int total, long startNanos) {
+        if (progress == null) {
+            return;
+        }
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        double rowsPerSecond = seconds > 0 ? completed / seconds : 0.0;
+        long etaMillis = rowsPerSecond > 0 ? (long) ((total - completed) / rowsPerSecond * 1000) : -1;
+        try {
+            progress.onProgress(completed, total, rowsPerSecond, etaMillis);
+        } catch (RuntimeException e) {
+            log.error("Batch progress listener failed: {}", e.getMessage());
+        }
+    }
+
     /**
      * Sends a prediction request to the server with the given features
      * 
@@ -135,37 +312,112 @@ public class ModelServerClient {
      * @return The prediction result
      */
     public PredictionResult sendPredictionRequest(String serverUrl, Map<String, Object> features) {
-        log.info("Sending request to " + serverUrl);
+        log.debug("Sending request to {}", serverUrl);
 
         try {
-            // Create the JSON request body
-            String jsonBody = createJsonRequest(features);
-
-            // Build the HTTP request
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(serverUrl))
-                    .header("Content-Type", "application/json")
-                    .timeout(Duration.ofSeconds(timeout))
-                    .POST(HttpRequest.BodyPublishers.ofString(jsonBody, StandardCharsets.UTF_8))
-                    .build();
+            // Build the HTTP request (JSON body)
+            HttpRequest request = buildRequest(serverUrl, createJsonRequest(features));
 
             // Send the request with retries
             HttpResponse<String> response = sendWithRetries(request);
 
             // Process the response
             return processResponse(response);
-        } catch (ConnectException e) {
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return errorResult(serverUrl, e);
+        } catch (Exception e) {
+            return errorResult(serverUrl, e);
+        }
+    }
+
+    /**
+     * Non-blocking version of sendPredictionRequest (HttpClient.sendAsync).
+     * At most DEFAULT_MAX_IN_FLIGHT requests are outstanding; the caller blocks only while the window is full.
+     * Over HTTP/2 the requests are multiplexed on one connection.
+     *
+     * @param serverUrl The URL of the Python Model Server
+     * @param features Map of feature names to values
+     * @return Future completed with the prediction result (never completed exceptionally)
+     */
+    public CompletableFuture<PredictionResult> sendPredictionRequestAsync(String serverUrl, Map<String, Object> features) {
+        String jsonBody;
+        try {
+            jsonBody = createJsonRequest(features);
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(errorResult(serverUrl, e));
+        }
+        return sendJsonAsync(serverUrl, jsonBody);
+    }
+
+    /**
+     * sendPredictionRequestAsync for an already serialized {"features": {...}} body
+     */
+    private CompletableFuture<PredictionResult> sendJsonAsync(String serverUrl, String jsonBody) {
+        HttpRequest request;
+        try {
+            request = buildRequest(serverUrl, jsonBody);
+            inFlightPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.completedFuture(errorResult(serverUrl, e));
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(errorResult(serverUrl, e));
+        }
+
+        return sendAsyncWithRetries(request, 0).handle((response, error) -> {
+            inFlightPermits.release();
+            if (error != null) {
+                return errorResult(serverUrl, error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error);
+            }
+            return processResponse(response);
+        });
+    }
+
+    /**
+     * Same retry/backoff as sendWithRetries, without holding a thread while waiting
+     */
+    private CompletableFuture<HttpResponse<String>> sendAsyncWithRetries(HttpRequest request, int attempt) {
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .handle((response, error) -> {
+                    if (error == null) {
+                        return CompletableFuture.completedFuture(response);
+                    }
+                    if (attempt + 1 >= maxRetries) {
+                        return CompletableFuture.<HttpResponse<String>>failedFuture(error);
+                    }
+                    long backoffMillis = (long) Math.pow(2, attempt) * 1000;
+                    return CompletableFuture.runAsync(() -> { },
+                                    CompletableFuture.delayedExecutor(backoffMillis, TimeUnit.MILLISECONDS))
+                            .thenCompose(ignored -> sendAsyncWithRetries(request, attempt + 1));
+                })
+                .thenCompose(future -> future);
+    }
+
+    private HttpRequest buildRequest(String serverUrl, String jsonBody) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(serverUrl))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(timeout))
+                .POST(HttpRequest.BodyPublishers.ofString(jsonBody, StandardCharsets.UTF_8))
+                .build();
+    }
+
+    /**
+     * Maps a transport failure to an error PredictionResult (also used by BatchPredictionPublisher)
+     */
+    PredictionResult errorResult(String serverUrl, Throwable e) {
+        if (e instanceof ConnectException) {
             return new PredictionResult("Connection error: Could not connect to server at " + serverUrl);
-        } catch (TimeoutException e) {
+        } else if (e instanceof TimeoutException || e instanceof HttpTimeoutException) {
             return new PredictionResult("Timeout error: Server did not respond within " + timeout + " seconds");
-        } catch (IOException e) {
+        } else if (e instanceof IOException) {
             return new PredictionResult("I/O error: " + e.getMessage());
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+        } else if (e instanceof InterruptedException) {
             return new PredictionResult("Request interrupted: " + e.getMessage());
-        } catch (Exception e) {
-            return new PredictionResult("Error: " + e.getMessage());
         }
+        return new PredictionResult("Error: " + e.getMessage());
     }
 
     /**
@@ -175,7 +427,7 @@ public class ModelServerClient {
      * @return JSON string in the format {"features": {...}}
      */
     private String createJsonRequest(Map<String, Object> features) {
-        log.info("Creating JSON request");
+        log.debug("Creating JSON request");
 
         StringBuilder json = new StringBuilder();
         json.append("{\"features\":{");
@@ -201,6 +453,42 @@ public class ModelServerClient {
         return json.toString();
     }
 
+    /**
+     * Creates a JSON request body from one row of a feature batch, walking its columns
+     * with the schema's pre-encoded keys
+     * 
+     * @param batch The feature batch
+     * @param row Row index in the batch
+     * @return JSON string in the format {"features": {...}}
+     */
+    private String createJsonRequest(FeatureBatch batch, int row) {
+        FeatureSchema schema = batch.getSchema();
+
+        StringBuilder json = new StringBuilder(32 + schema.size() * 24);
+        json.append("{\"features\":{");
+
+        for (int column = 0; column < schema.size(); column++) {
+            if (column > 0) {
+                json.append(',');
+            }
+            json.append(schema.getJsonKey(column));
+
+            switch (batch.getCellType(row, column)) {
+                case FeatureSchema.INT:
+                    json.append(batch.getInt(row, column));
+                    break;
+                case FeatureSchema.DOUBLE:
+                    json.append(batch.getDouble(row, column));
+                    break;
+                default:
+                    json.append('"').append(FeatureSchema.escapeJson(batch.getString(row, column))).append('"');
+            }
+        }
+
+        json.append("}}");
+        return json.toString();
+    }
+
     /**
      * Sends an HTTP request with retries
      * 
@@ -212,7 +500,7 @@ public class ModelServerClient {
      */
     private HttpResponse<String> sendWithRetries(HttpRequest request) 
             throws IOException, InterruptedException, TimeoutException {
-        log.info("Sending HTTP request with retries");
+        log.debug("Sending HTTP request with retries");
 
         Exception lastException = null;
 
@@ -255,23 +543,12 @@ public class ModelServerClient {
      * @return The prediction result
      */
     private PredictionResult processResponse(HttpResponse<String> response) {
-        log.info("Processing response");
+        log.debug("Processing response");
 
         // Check if the request was successful
         if (response.statusCode() >= 200 && response.statusCode() < 300) {
             try {
-                // Parse the JSON response
-                Map<String, Object> jsonValues = parseJsonResponse(response.body());
-
-                // Extract prediction values
-                int prediction = getIntValue(jsonValues, "prediction", -1);
-                String predictionLabel = getStringValue(jsonValues, "prediction_label", "Unknown");
-                double confidence = getDoubleValue(jsonValues, "confidence", 0.0);
-                double normalProb = getDoubleValue(jsonValues, "probabilities.0", 0.0);
-                double attackProb = getDoubleValue(jsonValues, "probabilities.1", 0.0);
-
-                // Create and return the prediction result
-                return new PredictionResult(prediction, predictionLabel, confidence, normalProb, attackProb);
+                return parsePrediction(response.body());
             } catch (Exception e) {
                 return new PredictionResult("Error parsing response: " + e.getMessage());
             }
@@ -288,7 +565,7 @@ public class ModelServerClient {
      * @return The escaped string
      */
     private String escapeJson(String input) {
-        log.info("Escaping JSON string");
+        log.debug("Escaping JSON string");
 
         if (input == null) return "";
         return input.replace("\\", "\\\\")
@@ -299,183 +576,135 @@ public class ModelServerClient {
     }
 
     /**
-     * Parses a JSON response string into a map of key-value pairs
-     * 
-     * @param jsonString The JSON string to parse
-     * @return A map of key-value pairs from the JSON
+     * Reads a prediction response in one pass over the tokens.
+     * Only top-level prediction, prediction_label, confidence and probabilities[0..1] are kept;
+     * anything else (nested objects included) is skipped.
+     *
+     * @param body The JSON response body
+     * @return The prediction result
+     * @throws IOException If the body is not valid JSON
      */
-    private Map<String, Object> parseJsonResponse(String jsonString) {
-        log.info("Parsing JSON string");
-
-        Map<String, Object> result = new HashMap<>();
-
-        // Use regex to extract key-value pairs
-        Pattern pattern = Pattern.compile("\"([\\w\\.]+)\"\\s*:\\s*\"([^\"]*)\"");
-        Matcher matcher = pattern.matcher(jsonString);
-
-        while (matcher.find()) {
-            String key = matcher.group(1);
-            String value = matcher.group(2);
-            result.put(key, value);
-        }
-
-        // Also try to match non-string values (numbers, booleans, etc.)
-        Pattern nonStringPattern = Pattern.compile("\"([\\w\\.]+)\"\\s*:\\s*([^,}\\s][^,}]*)");
-        Matcher nonStringMatcher = nonStringPattern.matcher(jsonString);
-
-        while (nonStringMatcher.find()) {
-            String key = nonStringMatcher.group(1);
-            String value = nonStringMatcher.group(2);
-            // Only add if not already added as a string value
-            if (!result.containsKey(key)) {
-                // Try to parse as number
-                try {
-                    if (value.contains(".")) {
-                        result.put(key, Double.parseDouble(value));
-                    } else {
-                        result.put(key, Integer.parseInt(value));
-                    }
-                } catch (NumberFormatException e) {
-                    // Not a number, store as string
-                    result.put(key, value);
+    private PredictionResult parsePrediction(String body) throws IOException {
+        int prediction = -1;
+        String predictionLabel = "Unknown";
+        double confidence = 0.0;
+        double normalProb = 0.0;
+        double attackProb = 0.0;
+
+        try (JsonParser parser = JSON.createParser(body)) {
+            expectObject(parser);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "prediction":
+                        prediction = parser.getValueAsInt(prediction);
+                        break;
+                    case "prediction_label":
+                        if (value != JsonToken.VALUE_NULL && value.isScalarValue()) {
+                            predictionLabel = parser.getText();
+                        }
+                        break;
+                    case "confidence":
+                        confidence = parser.getValueAsDouble(confidence);
+                        break;
+                    case "probabilities":
+                        if (value == JsonToken.START_ARRAY) {
+                            int index = 0;
+                            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                                if (index == 0) {
+                                    normalProb = parser.getValueAsDouble(normalProb);
+                                } else if (index == 1) {
+                                    attackProb = parser.getValueAsDouble(attackProb);
+                                }
+                                parser.skipChildren();
+                                index++;
+                            }
+                        } else {
+                            parser.skipChildren();
+                        }
+                        break;
+                    default:
+                        parser.skipChildren();
                 }
             }
         }
 
-        // Try to parse arrays
-        parseArrays(jsonString, result);
-
-        return result;
+        return new PredictionResult(prediction, predictionLabel, confidence, normalProb, attackProb);
     }
 
     /**
-     * Parses arrays in a JSON string and adds them to the result map
-     * 
-     * @param jsonString The JSON string to parse
-     * @param result The map to add the parsed arrays to
+     * Reads a /health response in one pass: status, total_features and the models_loaded flags
+     *
+     * @param body The JSON response body
+     * @return The server health status
+     * @throws IOException If the body is not valid JSON
      */
-    private void parseArrays(String jsonString, Map<String, Object> result) {
-        log.info("Parsing JSON string");
-
-        // Find arrays in the JSON string
-        Pattern arrayPattern = Pattern.compile("\"([\\w\\.]+)\"\\s*:\\s*\\[(.*?)\\]");
-        Matcher arrayMatcher = arrayPattern.matcher(jsonString);
-
-        while (arrayMatcher.find()) {
-            String key = arrayMatcher.group(1);
-            String arrayContent = arrayMatcher.group(2);
-
-            // Split the array content by commas (ignoring commas in nested structures)
-            String[] elements = arrayContent.split(",");
-
-            // Store array elements with indexed keys
-            for (int i = 0; i < elements.length; i++) {
-                String element = elements[i].trim();
-                if (!element.isEmpty()) {
-                    result.put(key + "." + i, parseValue(element));
+    private ServerHealthStatus parseHealth(String body) throws IOException {
+        String status = "unknown";
+        int totalFeatures = 0;
+        boolean encoderLoaded = false;
+        boolean featuresLoaded = false;
+        boolean modelLoaded = false;
+        boolean scalerLoaded = false;
+
+        try (JsonParser parser = JSON.createParser(body)) {
+            expectObject(parser);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "status":
+                        if (value != JsonToken.VALUE_NULL && value.isScalarValue()) {
+                            status = parser.getText();
+                        }
+                        break;
+                    case "total_features":
+                        totalFeatures = parser.getValueAsInt(totalFeatures);
+                        break;
+                    case "models_loaded":
+                        if (value != JsonToken.START_OBJECT) {
+                            parser.skipChildren();
+                            break;
+                        }
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            String modelName = parser.getCurrentName();
+                            JsonToken flag = parser.nextToken();
+                            boolean isLoaded = flag == JsonToken.VALUE_TRUE;
+                            switch (modelName) {
+                                case "encoder":
+                                    encoderLoaded = isLoaded;
+                                    break;
+                                case "features":
+                                    featuresLoaded = isLoaded;
+                                    break;
+                                case "model":
+                                    modelLoaded = isLoaded;
+                                    break;
+                                case "scaler":
+                                    scalerLoaded = isLoaded;
+                                    break;
+                                default:
+                                    parser.skipChildren();
+                            }
+                        }
+                        break;
+                    default:
+                        parser.skipChildren();
                 }
             }
         }
-    }
-
-    /**
-     * Parses a value string into an appropriate type
-     * 
-     * @param value The value string to parse
-     * @return The parsed value (String, Double, Integer, Boolean)
-     */
-    private Object parseValue(String value) {
-        log.info("Parsing value");
 
-        // Remove quotes if present
-        if (value.startsWith("\"") && value.endsWith("\"")) {
-            return value.substring(1, value.length() - 1);
-        }
-
-        // Try to parse as boolean
-        if ("true".equalsIgnoreCase(value)) {
-            return Boolean.TRUE;
-        } else if ("false".equalsIgnoreCase(value)) {
-            return Boolean.FALSE;
-        }
-
-        // Try to parse as number
-        try {
-            if (value.contains(".")) {
-                return Double.parseDouble(value);
-            } else {
-                return Integer.parseInt(value);
-            }
-        } catch (NumberFormatException e) {
-            // Not a number, return as string
-            return value;
-        }
-    }
-
-    /**
-     * Gets a string value from a map, with a default value if not found
-     * 
-     * @param map The map to get the value from
-     * @param key The key to look up
-     * @param defaultValue The default value to return if the key is not found
-     * @return The string value
-     */
-    private String getStringValue(Map<String, Object> map, String key, String defaultValue) {
-        log.info("Getting string value for key: " + key);
-
-        Object value = map.get(key);
-        if (value != null) {
-            return value.toString();
-        }
-        return defaultValue;
+        return new ServerHealthStatus(
+                encoderLoaded, featuresLoaded, modelLoaded, scalerLoaded,
+                status, totalFeatures);
     }
 
-    /**
-     * Gets an integer value from a map, with a default value if not found
-     * 
-     * @param map The map to get the value from
-     * @param key The key to look up
-     * @param defaultValue The default value to return if the key is not found
-     * @return The integer value
-     */
-    private int getIntValue(Map<String, Object> map, String key, int defaultValue) {
-        log.info("Getting int value for key: " + key);
-
-        Object value = map.get(key);
-        if (value instanceof Number) {
-            return ((Number) value).intValue();
-        } else if (value instanceof String) {
-            try {
-                return Integer.parseInt((String) value);
-            } catch (NumberFormatException e) {
-                return defaultValue;
-            }
+    private static void expectObject(JsonParser parser) throws IOException {
+        JsonToken first = parser.nextToken();
+        if (first != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected a JSON object but found " + first);
         }
-        return defaultValue;
-    }
-
-    /**
-     * Gets a double value from a map, with a default value if not found
-     * 
-     * @param map The map to get the value from
-     * @param key The key to look up
-     * @param defaultValue The default value to return if the key is not found
-     * @return The double value
-     */
-    private double getDoubleValue(Map<String, Object> map, String key, double defaultValue) {
-        log.info("Getting double value for key: " + key);
-
-        Object value = map.get(key);
-        if (value instanceof Number) {
-            return ((Number) value).doubleValue();
-        } else if (value instanceof String) {
-            try {
-                return Double.parseDouble((String) value);
-            } catch (NumberFormatException e) {
-                return defaultValue;
-            }
-        }
-        return defaultValue;
     }
 
     /**
@@ -485,7 +714,7 @@ public class ModelServerClient {
      * @return The server health status
      */
     public ServerHealthStatus checkServerHealth(String serverUrl) {
-        log.info("Checking server health at " + serverUrl);
+        log.info("Checking server health at {}", serverUrl);
 
         // Extract the base URL (remove "/predict" if present)
         String baseUrl = serverUrl;
@@ -515,71 +744,7 @@ public class ModelServerClient {
             // Check if the request was successful
             if (response.statusCode() >= 200 && response.statusCode() < 300) {
                 try {
-//                    // Parse the JSON response
-//                    Map<String, Object> jsonValues = parseJsonResponse(response.body());
-//
-//                    // Extract health status values
-//                    String status = getStringValue(jsonValues, "status", "unknown");
-//                    int totalFeatures = getIntValue(jsonValues, "total_features", 0);
-//
-//                    // Extract models_loaded values (nested map)
-//                    @SuppressWarnings("unchecked")
-//                    Map<String, Object> modelsLoaded =
-//                            (Map<String, Object>) jsonValues.get("models_loaded");
-//
-//                    boolean encoderLoaded = Boolean.TRUE.equals(modelsLoaded.get("encoder"));
-//                    boolean featuresLoaded = Boolean.TRUE.equals(modelsLoaded.get("features"));
-//                    boolean modelLoaded = Boolean.TRUE.equals(modelsLoaded.get("model"));
-//                    boolean scalerLoaded = Boolean.TRUE.equals(modelsLoaded.get("scaler"));
-
-                    String body = response.body();
-                    // Use regex to extract values
-                    String status = "unknown";
-                    int totalFeatures = 0;
-                    boolean encoderLoaded = false;
-                    boolean featuresLoaded = false;
-                    boolean modelLoaded = false;
-                    boolean scalerLoaded = false;
-                    Pattern statusPattern = Pattern.compile("\"status\"\\s*:\\s*\"([^\"]+)\"");
-                    Matcher statusMatcher = statusPattern.matcher(body);
-                    if (statusMatcher.find()) {
-                        status = statusMatcher.group(1);
-                    }
-                    Pattern totalFeaturesPattern = Pattern.compile("\"total_features\"\\s*:\\s*(\\d+)");
-                    Matcher totalFeaturesMatcher = totalFeaturesPattern.matcher(body);
-                    if (totalFeaturesMatcher.find()) {
-                        totalFeatures = Integer.parseInt(totalFeaturesMatcher.group(1));
-                    }
-                    Pattern modelsLoadedPattern = Pattern.compile("\"models_loaded\"\\s*:\\s*\\{(.*?)\\}");
-                    Matcher modelsLoadedMatcher = modelsLoadedPattern.matcher(body);
-                    if (modelsLoadedMatcher.find()) {
-                        String modelsLoadedContent = modelsLoadedMatcher.group(1);
-                        Pattern modelPattern = Pattern.compile("\"(encoder|features|model|scaler)\"\\s*:\\s*(true|false)");
-                        Matcher modelMatcher = modelPattern.matcher(modelsLoadedContent);
-                        while (modelMatcher.find()) {
-                            String modelName = modelMatcher.group(1);
-                            boolean isLoaded = "true".equals(modelMatcher.group(2));
-                            switch (modelName) {
-                                case "encoder":
-                                    encoderLoaded = isLoaded;
-                                    break;
-                                case "features":
-                                    featuresLoaded = isLoaded;
-                                    break;
-                                case "model":
-                                    modelLoaded = isLoaded;
-                                    break;
-                                case "scaler":
-                                    scalerLoaded = isLoaded;
-                                    break;
-                            }
-                        }
-                    }
-
-                    // Create and return the health status
-                    return new ServerHealthStatus(
-                            encoderLoaded, featuresLoaded, modelLoaded, scalerLoaded,
-                            status, totalFeatures);
+                    return parseHealth(response.body());
                 } catch (Exception e) {
                     System.out.println(e.getMessage());
                     return new ServerHealthStatus("Error parsing response: " + e.getMessage());
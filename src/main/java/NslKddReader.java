@@ -0,0 +1,483 @@
+import utils.LogObj;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reader for the NSL-KDD dataset files as distributed, without converting them to CSV first.
+ *
+ * KDDTrain+.txt / KDDTest+.txt: no header, 41 features, label, difficulty level.
+ * KDDTrain+.arff / KDDTest+.arff: @relation / @attribute preamble, then @data rows of 41 features and class.
+ * Both may be gzip-compressed. The 41 features get the canonical NSL-KDD names and types;
+ * label and difficulty are kept apart from the features so evaluation runs can score predictions.
+ * read() loads a whole file into a batch; open() streams its records for BatchPredictionPublisher
+ * and scores the results as they arrive.
+ */
+public class NslKddReader {
+    public static final String[] FEATURES = {
+            "duration", "protocol_type", "service", "flag", "src_bytes", "dst_bytes",
+            "land", "wrong_fragment", "urgent", "hot", "num_failed_logins", "logged_in",
+            "num_compromised", "root_shell", "su_attempted", "num_root", "num_file_creations",
+            "num_shells", "num_access_files", "num_outbound_cmds", "is_host_login", "is_guest_login",
+            "count", "srv_count", "serror_rate", "srv_serror_rate", "rerror_rate", "srv_rerror_rate",
+            "same_srv_rate", "diff_srv_rate", "srv_diff_host_rate", "dst_host_count", "dst_host_srv_count",
+            "dst_host_same_srv_rate", "dst_host_diff_srv_rate", "dst_host_same_src_port_rate",
+            "dst_host_srv_diff_host_rate", "dst_host_serror_rate", "dst_host_srv_serror_rate",
+            "dst_host_rerror_rate", "dst_host_srv_rerror_rate"
+    };
+
+    // Symbolic features are strings, *_rate features doubles, everything else counts / flags
+    private static final int[] TYPES = new int[FEATURES.length];
+
+    static {
+        for (int column = 0; column < FEATURES.length; column++) {
+            String name = FEATURES[column];
+            if (name.equals("protocol_type") || name.equals("service") || name.equals("flag")) {
+                TYPES[column] = FeatureSchema.STRING;
+            } else if (name.endsWith("_rate")) {
+                TYPES[column] = FeatureSchema.DOUBLE;
+            } else {
+                TYPES[column] = FeatureSchema.INT;
+            }
+        }
+    }
+
+    // Shared by every dataset read; each batch keeps its own column types
+    private static final FeatureSchema SCHEMA = new FeatureSchema(FEATURES);
+
+    private static final int LABEL = FEATURES.length;
+    private static final int DIFFICULTY = FEATURES.length + 1;
+
+    // Logger
+    private static final LogObj log = new LogObj("NslKddReader");
+
+    private NslKddReader() {
+    }
+
+    /**
+     * Where the records start and how many fields they have
+     */
+    private static final class Layout {
+        final long dataStart;
+        final int fields;
+
+        Layout(long dataStart, int fields) {
+            this.dataStart = dataStart;
+            this.fields = fields;
+        }
+    }
+
+    /**
+     * Checks whether a file looks like an NSL-KDD dataset (ARFF, or headerless rows of 41-43 fields)
+     *
+     * @param file A plain or gzip-compressed file
+     * @return true if read() can load it
+     */
+    public static boolean isDataset(File file) {
+        try {
+            Layout layout = scanLayout(file);
+            return layout != null && layout.fields >= FEATURES.length && layout.fields <= DIFFICULTY + 1;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads a whole NSL-KDD file into a typed batch, label and difficulty split off
+     *
+     * @param file KDDTrain+/KDDTest+ .txt or .arff, plain or gzip-compressed
+     * @return The dataset, one row per record in file order
+     * @throws IOException If an I/O error occurs
+     * @throws IllegalArgumentException If the file is not an NSL-KDD dataset or a record is malformed
+     */
+    public static Dataset read(File file) throws IOException, IllegalArgumentException {
+        log.info("Reading NSL-KDD file: {}", file.getAbsolutePath());
+
+        Layout layout = checkedLayout(file);
+        Dataset dataset = new Dataset(new FeatureBatch(SCHEMA, TYPES, 1024), layout.fields > LABEL, layout.fields > DIFFICULTY);
+
+        try (MappedCsvParser parser = openRecords(file, layout)) {
+            while (parser.nextRecord()) {
+                dataset.add(parser);
+            }
+        }
+
+        log.info("Read {} records from {}", dataset.size(), file.getName());
+        return dataset;
+    }
+
+    /**
+     * Opens an NSL-KDD file for reading one record at a time, so only the current record is in memory
+     *
+     * @param file KDDTrain+/KDDTest+ .txt or .arff, plain or gzip-compressed
+     * @return The records, to be closed by the caller (or by the publisher they are streamed through)
+     * @throws IOException If an I/O error occurs
+     * @throws IllegalArgumentException If the file is not an NSL-KDD dataset
+     */
+    public static Records open(File file) throws IOException, IllegalArgumentException {
+        log.info("Streaming NSL-KDD file: {}", file.getAbsolutePath());
+
+        Layout layout = checkedLayout(file);
+        return new Records(openRecords(file, layout), layout.fields > LABEL, layout.dataStart);
+    }
+
+    /**
+     * @throws IllegalArgumentException If the file has no NSL-KDD records
+     */
+    private static Layout checkedLayout(File file) throws IOException, IllegalArgumentException {
+        Layout layout = scanLayout(file);
+        if (layout == null) {
+            throw new IllegalArgumentException("Not an NSL-KDD file (no records, or a header row): " + file.getName());
+        }
+        if (layout.fields < FEATURES.length || layout.fields > DIFFICULTY + 1) {
+            throw new IllegalArgumentException("Not an NSL-KDD file: " + layout.fields
+                    + " fields per record (expected " + FEATURES.length + " to " + (DIFFICULTY + 1) + ")");
+        }
+        return layout;
+    }
+
+    private static MappedCsvParser openRecords(File file, Layout layout) throws IOException {
+        String[] columns = Arrays.copyOf(FEATURES, layout.fields);
+        if (layout.fields > LABEL) {
+            columns[LABEL] = "label";
+        }
+        if (layout.fields > DIFFICULTY) {
+            columns[DIFFICULTY] = "difficulty";
+        }
+        return MappedCsvParser.openData(file, columns, layout.dataStart);
+    }
+
+    /**
+     * Reads the lines before the first record: ARFF preamble, comments, blank lines
+     *
+     * @return Layout of the records, or null if there are none or the file starts with a header row
+     */
+    private static Layout scanLayout(File file) throws IOException {
+        try (InputStream in = CompressedInput.open(file)) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(512);
+            long offset = 0;
+            boolean arff = false;
+            int consumed;
+            while ((consumed = readLine(in, line)) >= 0) {
+                long lineStart = offset;
+                offset += consumed;
+                String text = line.toString(StandardCharsets.UTF_8);
+                // UTF-8 byte order mark
+                if (lineStart == 0 && text.startsWith("\uFEFF")) {
+                    text = text.substring(1);
+                    lineStart = 3;
+                }
+                text = text.trim();
+
+                if (text.isEmpty() || text.startsWith("%")) {
+                    continue;
+                }
+                if (text.startsWith("@")) {
+                    arff = true;
+                    continue;
+                }
+                if (!arff && !Character.isDigit(text.charAt(0))) {
+                    // Header row: a converted CSV, whose columns may be in any order
+                    return null;
+                }
+                return new Layout(lineStart, text.split(",", -1).length);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Reads one line (without its line break) into the buffer
+     *
+     * @return Bytes consumed including the line break, or -1 at end of input
+     */
+    private static int readLine(InputStream in, ByteArrayOutputStream line) throws IOException {
+        line.reset();
+        int consumed = 0;
+        int b;
+        while ((b = in.read()) >= 0) {
+            consumed++;
+            if (b == '\n') {
+                return consumed;
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return consumed > 0 ? consumed : -1;
+    }
+
+    /**
+     * ARFF symbols may be written 'tcp'
+     */
+    private static String unquote(String value) {
+        if (value.length() >= 2 && value.charAt(0) == '\'' && value.charAt(value.length() - 1) == '\'') {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    /**
+     * @return true if the label names anything other than normal traffic
+     */
+    private static boolean isAttackLabel(String label) {
+        return !label.equalsIgnoreCase("normal");
+    }
+
+    /**
+     * Confusion counts of predictions against labels (attack = positive)
+     */
+    public static final class Score {
+        private int truePositives, falsePositives, trueNegatives, falseNegatives, errors;
+
+        /**
+         * Counts one prediction of a record labelled attack (or not)
+         */
+        public void add(boolean attack, PredictionResult result) {
+            if ("error".equals(result.getStatus())) {
+                addError();
+                return;
+            }
+            boolean predictedAttack = "attack".equalsIgnoreCase(result.getPredictionLabel());
+            if (attack) {
+                if (predictedAttack) {
+                    truePositives++;
+                } else {
+                    falseNegatives++;
+                }
+            } else if (predictedAttack) {
+                falsePositives++;
+            } else {
+                trueNegatives++;
+            }
+        }
+
+        /**
+         * Counts a record that got no prediction, or whose label could not be read
+         */
+        private void addError() {
+            errors++;
+        }
+
+        /**
+         * @return Accuracy and confusion counts, e.g. for the status bar
+         */
+        @Override
+        public String toString() {
+            int scored = truePositives + falsePositives + trueNegatives + falseNegatives;
+            double accuracy = scored > 0 ? 100.0 * (truePositives + trueNegatives) / scored : 0;
+            return String.format("Accuracy %.2f%% on %d records (TP %d, FP %d, TN %d, FN %d, %d errors)",
+                    accuracy, scored, truePositives, falsePositives, trueNegatives, falseNegatives, errors);
+        }
+    }
+
+    /**
+     * Records of an NSL-KDD file read on demand, as feature maps of the 41 features.
+     * The labels of records read but not scored yet are kept in order, so score() must get
+     * the results in record order, as BatchPredictionPublisher delivers them.
+     * A record that cannot be parsed still queues a label, so the results after its error stay aligned.
+     */
+    public static final class Records implements BatchPredictionPublisher.RowSource {
+        private enum Label { NORMAL, ATTACK, UNREADABLE }
+
+        private final MappedCsvParser parser;
+        private final boolean labelled;
+        private final long dataStart;
+        // Labels of the records read ahead of their results
+        private final ArrayDeque<Label> unscored = new ArrayDeque<>();
+        private final Score score = new Score();
+
+        private Records(MappedCsvParser parser, boolean labelled, long dataStart) {
+            this.parser = parser;
+            this.labelled = labelled;
+            this.dataStart = dataStart;
+        }
+
+        @Override
+        public Map<String, Object> next() throws IOException, IllegalArgumentException {
+            try {
+                if (!parser.nextRecord()) {
+                    return null;
+                }
+            } catch (IllegalArgumentException e) {
+                // Wrong field count: the publisher still emits an (error) result for the record
+                if (labelled) {
+                    unscored.add(Label.UNREADABLE);
+                }
+                throw e;
+            }
+            // Label first: a malformed feature still gets its (error) result scored against it
+            if (labelled) {
+                unscored.add(isAttackLabel(unquote(parser.stringValue(LABEL))) ? Label.ATTACK : Label.NORMAL);
+            }
+            Map<String, Object> features = new LinkedHashMap<>(FEATURES.length * 4 / 3 + 1);
+            for (int column = 0; column < FEATURES.length; column++) {
+                Object value;
+                switch (TYPES[column] == FeatureSchema.STRING ? MappedCsvParser.TYPE_STRING : parser.type(column)) {
+                    case MappedCsvParser.TYPE_INT:
+                        value = parser.intValue(column);
+                        break;
+                    case MappedCsvParser.TYPE_DOUBLE:
+                        value = parser.doubleValue(column);
+                        break;
+                    default:
+                        value = unquote(parser.stringValue(column));
+                }
+                features.put(FEATURES[column], value);
+            }
+            return features;
+        }
+
+        public boolean isLabelled() {
+            return labelled;
+        }
+
+        /**
+         * @return Offset of the first record in the uncompressed text, past any ARFF preamble or comments
+         */
+        public long getDataStart() {
+            return dataStart;
+        }
+
+        /**
+         * Scores the result of the oldest record not scored yet against its label
+         */
+        public void score(PredictionResult result) {
+            Label label = unscored.poll();
+            if (label == Label.UNREADABLE) {
+                score.addError();
+            } else if (label != null) {
+                score.add(label == Label.ATTACK, result);
+            }
+        }
+
+        /**
+         * @return Accuracy so far, or a note that the file has no labels
+         */
+        public String getScore() {
+            return labelled ? score.toString() : "No labels to score against";
+        }
+
+        @Override
+        public void close() throws IOException {
+            parser.close();
+        }
+    }
+
+    /**
+     * Features of an NSL-KDD file plus, when the file has them, each record's label and difficulty level
+     */
+    public static class Dataset {
+        private final FeatureBatch features;
+        private final boolean labelled;
+        private final boolean hasDifficulty;
+        private final Map<String, Integer> labelCodes = new HashMap<>();
+        private final List<String> labelNames = new ArrayList<>();
+        private int[] labels = new int[1024];
+        private int[] difficulties = new int[1024];
+
+        private Dataset(FeatureBatch features, boolean labelled, boolean hasDifficulty) {
+            this.features = features;
+            this.labelled = labelled;
+            this.hasDifficulty = hasDifficulty;
+        }
+
+        private void add(MappedCsvParser parser) {
+            int row = features.addRow();
+            for (int column = 0; column < FEATURES.length; column++) {
+                switch (TYPES[column] == FeatureSchema.STRING ? MappedCsvParser.TYPE_STRING : parser.type(column)) {
+                    case MappedCsvParser.TYPE_INT:
+                        features.setInt(row, column, parser.intValue(column));
+                        break;
+                    case MappedCsvParser.TYPE_DOUBLE:
+                        features.setDouble(row, column, parser.doubleValue(column));
+                        break;
+                    default:
+                        features.setString(row, column, unquote(parser.stringValue(column)));
+                }
+            }
+
+            if (row == labels.length) {
+                labels = Arrays.copyOf(labels, row * 2);
+                difficulties = Arrays.copyOf(difficulties, row * 2);
+            }
+            if (labelled) {
+                String label = unquote(parser.stringValue(LABEL));
+                Integer code = labelCodes.get(label);
+                if (code == null) {
+                    code = labelNames.size();
+                    labelCodes.put(label, code);
+                    labelNames.add(label);
+                }
+                labels[row] = code;
+            }
+            difficulties[row] = hasDifficulty ? parser.intValue(DIFFICULTY) : -1;
+        }
+
+        /**
+         * @return The 41 features, one row per record
+         */
+        public FeatureBatch getFeatures() {
+            return features;
+        }
+
+        public int size() {
+            return features.size();
+        }
+
+        /**
+         * @return true if the records carry a label (attack name, or normal / anomaly in the ARFF files)
+         */
+        public boolean isLabelled() {
+            return labelled;
+        }
+
+        /**
+         * @return The record's label, or null if the file has no labels
+         */
+        public String getLabel(int row) {
+            return labelled ? labelNames.get(labels[row]) : null;
+        }
+
+        /**
+         * @return true if the record is labelled as anything other than normal
+         */
+        public boolean isAttack(int row) {
+            return labelled && isAttackLabel(labelNames.get(labels[row]));
+        }
+
+        /**
+         * @return The record's difficulty level (0-21), or -1 if the file has none
+         */
+        public int getDifficulty(int row) {
+            return difficulties[row];
+        }
+
+        /**
+         * Compares predictions with the labels, row by row
+         *
+         * @param results One prediction per record, in record order
+         * @return Accuracy and confusion counts (attack = positive), e.g. for the status bar
+         */
+        public String score(List<PredictionResult> results) {
+            if (!labelled) {
+                return "No labels to score against";
+            }
+            Score score = new Score();
+            for (int row = 0; row < Math.min(results.size(), size()); row++) {
+                score.add(isAttack(row), results.get(row));
+            }
+            return score.toString();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+import utils.LogObj;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Parallel CSV ingestion into a FeatureBatch.
+ *
+ * The file is cut into byte ranges that start right after a line break, each range is parsed
+ * by its own MappedCsvParser on a ForkJoinPool, and the partial batches are appended back
+ * in file order, so row i of the result is the i-th data line as with sequential parsing.
+ *
+ * Cutting at line breaks assumes no quoted field contains one. If any range fails to parse
+ * (as a range cut inside a quoted field would), the file is parsed again sequentially,
+ * which either succeeds or reports the real error.
+ */
+public class ParallelCsvReader {
+    // Below this a single parser is faster than splitting
+    public static final long MIN_CHUNK_BYTES = 8L << 20;
+
+    private final File csvFile;
+    private final String[] columns;
+    // One schema for all chunks: appending them then skips the column name check
+    private final FeatureSchema schema;
+    private final long[] bounds;
+
+    // Logger
+    private static final LogObj log = new LogObj("ParallelCsvReader");
+
+    private ParallelCsvReader(File csvFile, String[] columns, long[] bounds) {
+        this.csvFile = csvFile;
+        this.columns = columns;
+        this.schema = new FeatureSchema(columns);
+        this.bounds = bounds;
+    }
+
+    /**
+     * Parses a CSV file into a columnar batch using the pool's threads
+     *
+     * @param csvFile The CSV file to parse
+     * @param pool Pool the chunks are parsed on
+     * @return One batch row per data line, in file order
+     * @throws IOException If an I/O error occurs
+     * @throws IllegalArgumentException If the CSV format is invalid
+     */
+    public static FeatureBatch parse(File csvFile, ForkJoinPool pool) throws IOException, IllegalArgumentException {
+        String[] columns;
+        long[] bounds;
+        try (MappedCsvParser header = MappedCsvParser.open(csvFile)) {
+            columns = header.getColumns();
+            // Compressed input has no byte ranges; it is decompressed on its own thread instead
+            bounds = header.isStreamed() ? new long[0] : split(header, pool.getParallelism());
+        }
+
+        if (bounds.length <= 2) {
+            return FeatureMapper.parseCsvBatch(csvFile);
+        }
+
+        log.info("Parsing {} in {} chunks", csvFile.getName(), bounds.length - 1);
+        try {
+            return pool.invoke(new ChunkTask(new ParallelCsvReader(csvFile, columns, bounds), 0, bounds.length - 1));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (IllegalArgumentException e) {
+            log.warn("Chunked parse failed ({}), parsing sequentially", e.getMessage());
+            return FeatureMapper.parseCsvBatch(csvFile);
+        }
+    }
+
+    /**
+     * Range boundaries: bounds[i]..bounds[i + 1] is chunk i; a few chunks per thread for balance
+     */
+    private static long[] split(MappedCsvParser header, int parallelism) throws IOException {
+        long start = header.getDataStart();
+        long end = header.getSize();
+        long chunks = Math.max(1, Math.min((long) parallelism * 4, (end - start) / MIN_CHUNK_BYTES));
+        long chunkBytes = (end - start) / chunks;
+
+        long[] bounds = new long[(int) chunks + 1];
+        int count = 0;
+        bounds[count++] = start;
+        for (int i = 1; i < chunks; i++) {
+            long boundary = header.findRecordStart(start + i * chunkBytes);
+            if (boundary > bounds[count - 1] && boundary < end) {
+                bounds[count++] = boundary;
+            }
+        }
+        bounds[count++] = end;
+        return Arrays.copyOf(bounds, count);
+    }
+
+    private FeatureBatch parseChunk(int chunk) {
+        try (MappedCsvParser parser = MappedCsvParser.openRange(csvFile, columns, bounds[chunk], bounds[chunk + 1])) {
+            FeatureBatch batch = new FeatureBatch(schema);
+            FeatureMapper.fillBatch(parser, batch);
+            return batch;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Chunks [from, to): halves are parsed in parallel, then the right one is appended to the left
+     */
+    private static final class ChunkTask extends RecursiveTask<FeatureBatch> {
+        private static final long serialVersionUID = 1L;
+
+        private final ParallelCsvReader reader;
+        private final int from;
+        private final int to;
+
+        ChunkTask(ParallelCsvReader reader, int from, int to) {
+            this.reader = reader;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected FeatureBatch compute() {
+            if (to - from == 1) {
+                return reader.parseChunk(from);
+            }
+            int middle = (from + to) >>> 1;
+            ChunkTask left = new ChunkTask(reader, from, middle);
+            left.fork();
+            FeatureBatch right = new ChunkTask(reader, middle, to).compute();
+            FeatureBatch merged = left.join();
+            merged.append(right);
+            return merged;
+        }
+    }
+}
@@ -41,7 +41,7 @@ public class PredictionResult {
         this.attackProbability = attackProbability;
         this.status = "success";
 
-        log.info("PredictionResult created");
+        log.debug("PredictionResult created");
     }
 
     /**
@@ -50,7 +50,7 @@ public class PredictionResult {
      * @param errorMessage The error message
      */
     public PredictionResult(String errorMessage) {
-        log.info(errorMessage);
+        log.debug(errorMessage);
         this.status = "error";
         this.errorMessage = errorMessage;
     }
@@ -157,7 +157,7 @@ public class PredictionResult {
      * @return A formatted string representation of the prediction result
      */
     public String getFormattedResult() {
-        log.info("Generating formatted result");
+        log.debug("Generating formatted result");
 
         if ("error".equals(status)) {
             return "Error: " + errorMessage;
@@ -178,7 +178,7 @@ public class PredictionResult {
      * @return A CSV string representation of the prediction result
      */
     public String toCsvString() {
-        log.info("Converting CSV string");
+        log.debug("Converting CSV string");
 
         if ("error".equals(status)) {
             return "error,,,," + errorMessage;
@@ -193,7 +193,7 @@ public class PredictionResult {
      * @return The CSV header for prediction results
      */
     public static String getCsvHeader() {
-        log.info("Converting CSV header");
+        log.debug("Converting CSV header");
 
         return "prediction,prediction_label,confidence,normal_probability,attack_probability,status,error_message";
     }
@@ -36,7 +36,7 @@ public class ServerHealthStatus {
         this.totalFeatures = totalFeatures;
         this.errorMessage = null;
 
-        log.info("ServerHealthStatus created");
+        log.debug("ServerHealthStatus created");
     }
 
     /**
@@ -53,7 +53,7 @@ public class ServerHealthStatus {
         this.totalFeatures = 0;
         this.errorMessage = errorMessage;
 
-        log.error("ServerHealthStatus error: " + errorMessage);
+        log.error("ServerHealthStatus error: {}", errorMessage);
     }
 
     /**
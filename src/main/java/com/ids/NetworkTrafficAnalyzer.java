@@ -1,30 +1,65 @@
 package com.ids;
 
+import com.ids.backend.PredictionBatcher;
 import com.ids.backend.PredictionClient;
+import com.ids.backend.VerdictCache;
+import com.ids.backend.WireFormat;
+import com.ids.flow.DstHostWindow;
+import com.ids.flow.EmissionMode;
+import com.ids.flow.FlowTable;
+import com.ids.flow.TrafficWindow;
 import com.ids.model.NetworkFeatures;
+import com.ids.packet.CaptureFilter;
 import com.ids.packet.PacketFeatureExtractor;
+import com.ids.packet.PacketHeader;
+import com.ids.packet.RawPacketParser;
+import com.ids.pipeline.OverflowHandler;
+import com.ids.pipeline.OverflowPolicy;
+import com.ids.pipeline.ShardContext;
+import com.ids.pipeline.ShardedExecutor;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
 import org.pcap4j.core.*;
 import org.pcap4j.packet.IpV4Packet;
 import org.pcap4j.packet.Packet;
+import org.pcap4j.packet.factory.PacketFactories;
+import org.pcap4j.packet.namednumber.DataLinkType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
 import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
 import java.net.InetAddress;
+import java.sql.Timestamp;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
 
 public class NetworkTrafficAnalyzer implements Closeable {
     private static final Logger logger = LoggerFactory.getLogger(NetworkTrafficAnalyzer.class);
 
     private PcapHandle handle;
     private final String networkInterface;
+    private final File replayFile;
+    private final ReplaySpeed replaySpeed;
     private final PredictionClient predictionClient;
-    private final ExecutorService executorService;
+    private final PredictionBatcher predictionBatcher; // null = one request per prediction
+    private final VerdictCache verdictCache; // null = every prediction goes to the backend
+    private final ShardedExecutor workers;
+    private final OverflowHandler overflowHandler;
+    private CaptureFilter captureFilter;
+    private final LongAdder fullDecodeCount = new LongAdder();
+    // 2-second KDD traffic features, shared by all shards
+    private final TrafficWindow trafficWindow = new TrafficWindow();
+    // dst_host_* features (last 100 connections per host / service)
+    private final DstHostWindow dstHostWindow = new DstHostWindow(DstHostWindow.DEFAULT_CONNECTIONS,
+            DST_HOST_CAPACITY, DST_HOST_IDLE_SECONDS * 1_000_000L);
     private volatile boolean isRunning = false;
     private Thread captureThread;
     JTextArea outputLog;
@@ -36,12 +71,51 @@ public class NetworkTrafficAnalyzer implements Closeable {
     private static final String BACKEND_URL = "http://localhost:8888/predict";
     private static final int PACKET_COUNT = -1; // Capture unlimited packets
     private static final int READ_TIMEOUT = 1000; // milliseconds - increased for responsiveness
-    private static final int THREAD_POOL_SIZE = 4;
+    // Flow-affinity worker shards, one thread each (default: available cores)
+    private static final int SHARD_COUNT = Integer.getInteger("ids.shards", Runtime.getRuntime().availableProcessors());
+    // Extra BPF expressions, ';'-separated, e.g. -Dids.capture.filter="tcp;not port 22"
+    private static final String CAPTURE_FILTER_PROPERTY = "ids.capture.filter";
+    // Connection tracking slots (total, split across shards)
+    private static final int FLOW_CAPACITY = Integer.getInteger("ids.flow.capacity", 1 << 20);
+    // packet = score every packet, connection = score each connection once when it closes/times out
+    private static final EmissionMode EMISSION_MODE = EmissionMode.parse(System.getProperty("ids.emit.mode"));
+    // PER_CONNECTION: extra early score after the first K packets (0 = disabled)
+    private static final int EARLY_SCORE_PACKETS = Integer.getInteger("ids.emit.early-packets", 0);
+    // Hosts (and services) kept by the dst_host window; idle ones are evicted earlier
+    private static final int DST_HOST_CAPACITY = Integer.getInteger("ids.dsthost.capacity", DstHostWindow.DEFAULT_MAX_HOSTS);
+    private static final long DST_HOST_IDLE_SECONDS = Long.getLong("ids.dsthost.idle-seconds", 60);
+    // Bounded hand-off between the pcap loop and the workers (total, split across shards)
+    private static final int QUEUE_CAPACITY = Integer.getInteger("ids.queue.capacity", 10000);
+    // Read headers straight from the frame bytes; false = always decode with pcap4j
+    private static final boolean RAW_PARSING = Boolean.parseBoolean(System.getProperty("ids.capture.raw", "true"));
+    private static final OverflowPolicy OVERFLOW_POLICY = OverflowPolicy.parse(System.getProperty("ids.queue.policy"));
+    // Micro-batching: flush at BATCH_SIZE items or after BATCH_LINGER_MS (size 1 = off)
+    private static final int BATCH_SIZE = Integer.getInteger("ids.batch.size", 1);
+    private static final long BATCH_LINGER_MS = Long.getLong("ids.batch.linger-ms", 20);
+    private static final int BATCH_SENDERS = Integer.getInteger("ids.batch.senders", 2);
+    // Pooled keep-alive connections for blocking requests: one per thread that calls the backend
+    private static final int POOL_SIZE = Integer.getInteger("ids.pool.size", Math.max(1, SHARD_COUNT) + BATCH_SENDERS);
+    // Non-blocking transport: workers hand off requests instead of waiting for the round trip
+    private static final boolean ASYNC_TRANSPORT = Boolean.getBoolean("ids.async");
+    private static final int ASYNC_MAX_IN_FLIGHT = Integer.getInteger("ids.async.max-in-flight", PredictionClient.DEFAULT_MAX_IN_FLIGHT);
+    private static final int ASYNC_CONNECTIONS = Integer.getInteger("ids.async.connections", PredictionClient.DEFAULT_ASYNC_CONNECTIONS);
+    // force = HTTP/2 prior knowledge (h2c), negotiate = ALPN on TLS, else HTTP/1.1
+    private static final boolean ASYNC_FORCE_HTTP2 = "force".equalsIgnoreCase(System.getProperty("ids.async.http2"));
+    // json, or binary (compact encoding, JSON again if the backend rejects it)
+    private static final WireFormat WIRE_FORMAT = WireFormat.parse(System.getProperty("ids.wire"));
+    // Reuse the verdict of an identical feature vector for CACHE_TTL_MS (size 0 = off)
+    private static final int CACHE_SIZE = Integer.getInteger("ids.cache.size", VerdictCache.DEFAULT_MAX_ENTRIES);
+    private static final long CACHE_TTL_MS = Long.getLong("ids.cache.ttl-ms", VerdictCache.DEFAULT_TTL_MILLIS);
 
     public NetworkTrafficAnalyzer(String interfaceName) throws PcapNativeException {
         this.networkInterface = interfaceName;
-        this.predictionClient = new PredictionClient(BACKEND_URL);
-        this.executorService = Executors.newFixedThreadPool(THREAD_POOL_SIZE);
+        this.replayFile = null;
+        this.replaySpeed = null;
+        this.predictionClient = createPredictionClient();
+        this.predictionBatcher = createBatcher(predictionClient);
+        this.verdictCache = createVerdictCache();
+        this.overflowHandler = new OverflowHandler(OVERFLOW_POLICY);
+        this.workers = createWorkers(overflowHandler);
 
         // Setup packet capture
         logger.info("INIT: locating interface...");
@@ -59,6 +133,8 @@ public class NetworkTrafficAnalyzer implements Closeable {
         );
         logger.info("INIT: handle opened OK");
 
+        setCaptureFilter(CaptureFilter.splitExpressions(System.getProperty(CAPTURE_FILTER_PROPERTY)));
+
         logger.info("Opened interface: {} ({})", interfaceName, nif.getDescription());
 
         // Warn if using virtual adapter
@@ -67,6 +143,107 @@ public class NetworkTrafficAnalyzer implements Closeable {
         }
     }
 
+    /**
+     * Replay a pcap file through the same processing path as live capture
+     *
+     * @param pcapFile The pcap file to replay
+     * @param speed    Playback speed (max, original timing, or N× multiplier)
+     */
+    public NetworkTrafficAnalyzer(File pcapFile, ReplaySpeed speed) throws PcapNativeException {
+        this.networkInterface = null;
+        this.replayFile = pcapFile;
+        this.replaySpeed = speed != null ? speed : ReplaySpeed.maxSpeed();
+        this.predictionClient = createPredictionClient();
+        this.predictionBatcher = createBatcher(predictionClient);
+        this.verdictCache = createVerdictCache();
+        this.overflowHandler = new OverflowHandler(OVERFLOW_POLICY);
+        this.workers = createWorkers(overflowHandler);
+
+        logger.info("INIT: opening pcap file {}...", pcapFile.getAbsolutePath());
+        this.handle = Pcaps.openOffline(pcapFile.getAbsolutePath());
+        setCaptureFilter(CaptureFilter.splitExpressions(System.getProperty(CAPTURE_FILTER_PROPERTY)));
+        logger.info("Opened pcap file: {} (speed: {})", pcapFile.getName(), this.replaySpeed);
+    }
+
+    /**
+     * Backend client: pooled blocking connections, async transport and wire format from the ids.* properties
+     */
+    private static PredictionClient createPredictionClient() {
+        PredictionClient client = new PredictionClient(BACKEND_URL, BACKEND_URL + "/batch", ASYNC_MAX_IN_FLIGHT, POOL_SIZE);
+        client.setAsyncConnections(ASYNC_CONNECTIONS);
+        client.setAsyncVersionPolicy(ASYNC_FORCE_HTTP2 ? HttpVersionPolicy.FORCE_HTTP_2 : HttpVersionPolicy.NEGOTIATE);
+        client.setWireFormat(WIRE_FORMAT);
+        return client;
+    }
+
+    /**
+     * @return Micro-batcher in front of the client, or null when ids.batch.size is 1
+     */
+    private static PredictionBatcher createBatcher(PredictionClient client) {
+        return BATCH_SIZE > 1 ? new PredictionBatcher(client, BATCH_SIZE, BATCH_LINGER_MS, BATCH_SENDERS) : null;
+    }
+
+    private static VerdictCache createVerdictCache() {
+        return CACHE_SIZE > 0 ? new VerdictCache(CACHE_SIZE, CACHE_TTL_MS) : null;
+    }
+
+    public VerdictCache getVerdictCache() {
+        return verdictCache;
+    }
+
+    /**
+     * Flow-affinity shards with bounded queues; overflow is handled (and counted) by the OverflowHandler
+     */
+    private ShardedExecutor createWorkers(OverflowHandler overflowHandler) {
+        int shards = Math.max(1, SHARD_COUNT);
+        return new ShardedExecutor(shards, QUEUE_CAPACITY / shards, overflowHandler, "ids-shard",
+                index -> {
+                    ShardContext context = new ShardContext(index, FLOW_CAPACITY / shards);
+                    context.getFlowTable().setExpiryListener(this::onConnectionExpired);
+                    return context;
+                });
+    }
+
+    /**
+     * @return Packets that were captured but never scored (queue overflow or shutdown)
+     */
+    public long getDroppedPacketCount() {
+        return overflowHandler.getDroppedCount();
+    }
+
+    public OverflowHandler getOverflowHandler() {
+        return overflowHandler;
+    }
+
+    public int getQueuedPacketCount() {
+        return workers.getQueuedCount();
+    }
+
+    /**
+     * Compile and apply the BPF filter in the kernel (libpcap) so unwanted frames never reach Java.
+     * The generated clause excluding BACKEND_URL is always appended.
+     *
+     * @param expressions Extra BPF expressions, ANDed together (may be empty)
+     */
+    public void setCaptureFilter(String... expressions) throws PcapNativeException {
+        CaptureFilter filter = CaptureFilter.forBackend(BACKEND_URL, expressions);
+        try {
+            handle.setFilter(filter.toExpression(), BpfProgram.BpfCompileMode.OPTIMIZE);
+        } catch (NotOpenException e) {
+            throw new PcapNativeException("Cannot apply filter, handle is not open: " + filter);
+        }
+        this.captureFilter = filter;
+        logger.info("Capture filter applied: {}", filter);
+    }
+
+    public CaptureFilter getCaptureFilter() {
+        return captureFilter;
+    }
+
+    public boolean isReplay() {
+        return replayFile != null;
+    }
+
     /**
      * Start capturing packets (in separate thread)
      */
@@ -83,9 +260,11 @@ public class NetworkTrafficAnalyzer implements Closeable {
             try {
                 logger.info("CAPTURE LOOP START");
 
-                handle.loop(-1, (PacketListener) packet ->
-                        executorService.execute(() -> processPacket(packet))
-                );
+                if (isReplay()) {
+                    replayLoop();
+                } else {
+                    liveLoop();
+                }
 
 
             } catch (InterruptedException e) {
@@ -103,39 +282,146 @@ public class NetworkTrafficAnalyzer implements Closeable {
     }
 
     /**
-     * Process individual packet
+     * Live capture: hand raw frames to the workers, decoding happens there
      */
-    private void processPacket(Packet packet) {
+    private void liveLoop() throws PcapNativeException, NotOpenException, InterruptedException {
+        int dlt = handle.getDlt().value();
+
+        // Idle connections must time out even when no packets arrive to drive the sweep
+        ScheduledExecutorService expiryTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ids-flow-expiry");
+            t.setDaemon(true);
+            return t;
+        });
+        expiryTimer.scheduleAtFixedRate(
+                () -> workers.offerToAll(context -> context.getFlowTable().expire(System.currentTimeMillis() * 1000L)),
+                1, 1, TimeUnit.SECONDS);
+        if (verdictCache != null) {
+            expiryTimer.scheduleAtFixedRate(verdictCache::purgeExpired, 1, 1, TimeUnit.SECONDS);
+        }
+
         try {
-            // Check if it's an IPv4 packet
-            IpV4Packet ipPacket = packet.get(IpV4Packet.class);
-            if (ipPacket == null) return;
+            handle.loop(-1, (RawPacketListener) frame -> {
+                long timestampMicros = toMicros(handle.getTimestamp());
+                workers.execute(RawPacketParser.flowHash(frame, dlt),
+                        context -> processRawPacket(context, frame, dlt, timestampMicros));
+            });
+        } finally {
+            expiryTimer.shutdownNow();
+        }
+    }
 
-//            IpV4Packet ipPacket = (IpV4Packet) packet;
+    /**
+     * Read packets from the offline handle until EOF, pacing them according to replaySpeed.
+     * When the file is exhausted, waits for the workers to drain and reports throughput.
+     */
+    private void replayLoop() throws PcapNativeException, NotOpenException, InterruptedException {
+        long packets = 0;
+        long firstPacketNanos = -1;
+        long startNanos = System.nanoTime();
 
-            // Extract source/destination IPs
-            String srcIp = PacketFeatureExtractor.extractSrcIp(ipPacket);
-            String dstIp = PacketFeatureExtractor.extractDstIp(ipPacket);
+        int dlt = handle.getDlt().value();
 
-            logger.debug("Packet captured: {} -> {}", srcIp, dstIp);
+        while (isRunning) {
+            byte[] frame;
+            try {
+                frame = handle.getNextRawPacketEx();
+            } catch (EOFException e) {
+                break;
+            } catch (TimeoutException e) {
+                continue;
+            }
 
-            // Extract features từ packet
-            NetworkFeatures features = PacketFeatureExtractor.extractFeatures(ipPacket);
+            long packetNanos = toNanos(handle.getTimestamp());
+            long timestampMicros = packetNanos / 1000;
 
-            if (features == null) {
-                logger.warn("Failed to extract features from packet");
-                return;
+            if (replaySpeed.isTimed()) {
+                if (firstPacketNanos < 0) {
+                    firstPacketNanos = packetNanos;
+                }
+                long due = startNanos + (long) ((packetNanos - firstPacketNanos) / replaySpeed.getMultiplier());
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
             }
 
-            // Log extracted features
-            logger.info("Extracted features - Protocol: {}, Service: {}, Src Bytes: {}, Dst Bytes: {}",
-                    features.getProtocolType(),
-                    features.getService(),
-                    features.getSrcBytes(),
-                    features.getDstBytes());
+            packets++;
+            workers.execute(RawPacketParser.flowHash(frame, dlt),
+                    context -> processRawPacket(context, frame, dlt, timestampMicros));
+        }
+
+        long dispatchNanos = System.nanoTime() - startNanos;
+
+        // Connections still open at EOF get their final score now
+        workers.putToAll(context -> context.getFlowTable().flush());
+
+        // Wait for all submitted packets to be scored (end-to-end completion)
+        workers.shutdown();
+        workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        drainPredictions();
+        long completionNanos = System.nanoTime() - startNanos;
+
+        String summary = String.format(
+                "Replay finished: %d packets (%d dropped) | Dispatch: %.1f ms (%.0f pkt/s) | End-to-end: %.1f ms (%.0f pkt/s)",
+                packets,
+                overflowHandler.getDroppedCount(),
+                dispatchNanos / 1e6,
+                packetsPerSecond(packets, dispatchNanos),
+                completionNanos / 1e6,
+                packetsPerSecond(packets, completionNanos)
+        );
+        logger.info(summary);
+        logger.info("Backend connections: {}", predictionClient.getConnectionManager());
+        if (verdictCache != null) {
+            logger.info("{}", verdictCache);
+        }
+        appendToLog(summary);
+    }
+
+    private static long toNanos(Timestamp timestamp) {
+        return Math.floorDiv(timestamp.getTime(), 1000L) * 1_000_000_000L + timestamp.getNanos();
+    }
+
+    private static long toMicros(Timestamp timestamp) {
+        return Math.floorDiv(timestamp.getTime(), 1000L) * 1_000_000L + timestamp.getNanos() / 1000;
+    }
+
+    private static double packetsPerSecond(long packets, long nanos) {
+        return nanos > 0 ? packets * 1e9 / nanos : 0;
+    }
+
+    /**
+     * Wait until the capture thread finishes (replay reached EOF or capture stopped)
+     */
+    public void awaitCompletion() throws InterruptedException {
+        if (captureThread != null) {
+            captureThread.join();
+        }
+    }
+
+    /**
+     * Process a raw frame: read headers at fixed offsets, fall back to full pcap4j decoding
+     * only when the fast parser doesn't understand the frame
+     */
+    private void processRawPacket(ShardContext context, byte[] frame, int dlt, long timestampMicros) {
+        try {
+            PacketHeader header = context.getHeader();
 
-            // Send to backend for prediction
-            sendPredictionRequest(features, srcIp, dstIp);
+            if (!RAW_PARSING || !RawPacketParser.parse(frame, dlt, header)) {
+                fullDecodeCount.increment();
+                Packet packet = PacketFactories.getFactory(Packet.class, DataLinkType.class)
+                        .newInstance(frame, 0, frame.length, DataLinkType.getInstance(dlt));
+
+                // Check if it's an IPv4 packet
+                IpV4Packet ipPacket = packet.get(IpV4Packet.class);
+                if (ipPacket == null) return;
+
+                header.setFrom(ipPacket);
+            }
+            header.setTimestampMicros(timestampMicros);
+
+            processPacket(context, header);
 
         } catch (Exception e) {
             logger.error("Error processing packet: {}", e.getMessage(), e);
@@ -143,19 +429,151 @@ public class NetworkTrafficAnalyzer implements Closeable {
     }
 
     /**
-     * Send prediction request to backend
+     * Process individual packet
+     */
+    private void processPacket(ShardContext context, PacketHeader header) {
+        // Header is only formatted when debug is on; IP strings only where a result is emitted
+        logger.debug("Packet captured: {}", header);
+
+        // Track the connection
+        FlowTable flows = context.getFlowTable();
+        int slot = flows.update(header);
+
+        if (slot < 0) {
+            // Flow table full: score this packet on its own
+            emitFeatures(PacketFeatureExtractor.extractFeatures(header), header.getSrcIp(), header.getDstIp());
+            return;
+        }
+
+        dstHostWindow.track(flows, slot);
+        trafficWindow.track(flows, slot);
+
+        if (EMISSION_MODE == EmissionMode.PER_PACKET) {
+            emitFeatures(extractFeatures(flows, slot), header.getSrcIp(), header.getDstIp());
+        } else if (flows.isTerminated(slot)) {
+            // Closed (both FINs or RST): final score once, late packets until expiry are ignored
+            emitConnection(flows, slot, FlowTable.EMITTED_FINAL);
+        } else if (EARLY_SCORE_PACKETS > 0 && flows.getPackets(slot) >= EARLY_SCORE_PACKETS) {
+            emitConnection(flows, slot, FlowTable.EMITTED_EARLY);
+        }
+    }
+
+    /**
+     * Flow table callback: connection timed out (or replay EOF flush)
+     */
+    private void onConnectionExpired(FlowTable flows, int slot) {
+        if (EMISSION_MODE == EmissionMode.PER_CONNECTION) {
+            emitConnection(flows, slot, FlowTable.EMITTED_FINAL);
+        }
+    }
+
+    /**
+     * Score a connection once per mark (early / final)
+     */
+    private void emitConnection(FlowTable flows, int slot, int mark) {
+        if (flows.isEmitted(slot, mark) || flows.isEmitted(slot, FlowTable.EMITTED_FINAL)) {
+            return;
+        }
+        flows.markEmitted(slot, mark);
+        emitFeatures(extractFeatures(flows, slot),
+                PacketHeader.toIpString(flows.getOrigAddr(slot)),
+                PacketHeader.toIpString(flows.getRespAddr(slot)));
+    }
+
+    /**
+     * Send what is still batched and wait for the replies (batched and async requests)
+     */
+    private void drainPredictions() throws InterruptedException {
+        if (predictionBatcher != null) {
+            predictionBatcher.close();
+        }
+        if (ASYNC_TRANSPORT && !predictionClient.awaitInFlight(30, TimeUnit.SECONDS)) {
+            logger.warn("{} async predictions still in flight", predictionClient.getInFlightCount());
+        }
+    }
+
+    /**
+     * Connection features + 2-second and 100-connection traffic features
+     */
+    private NetworkFeatures extractFeatures(FlowTable flows, int slot) {
+        NetworkFeatures features = PacketFeatureExtractor.extractFeatures(flows, slot);
+        trafficWindow.fill(features, flows, slot);
+        dstHostWindow.fill(features, flows, slot);
+        return features;
+    }
+
+    private void emitFeatures(NetworkFeatures features, String srcIp, String dstIp) {
+        // Log extracted features
+        logger.info("Extracted features - Protocol: {}, Service: {}, Flag: {}, Duration: {}, Src Bytes: {}, Dst Bytes: {}",
+                features.getProtocolType(),
+                features.getService(),
+                features.getFlag(),
+                features.getDuration(),
+                features.getSrcBytes(),
+                features.getDstBytes());
+
+        // Send to backend for prediction
+        sendPredictionRequest(features, srcIp, dstIp);
+    }
+
+    /**
+     * @return Frames the raw parser could not handle and that went through full pcap4j decoding
+     */
+    public long getFullDecodeCount() {
+        return fullDecodeCount.sum();
+    }
+
+    /**
+     * @return Connections currently tracked across all shards (approximate while running)
+     */
+    public int getTrackedFlowCount() {
+        int flows = 0;
+        for (int i = 0; i < workers.getShardCount(); i++) {
+            flows += workers.getContext(i).getFlowTable().size();
+        }
+        return flows;
+    }
+
+    /**
+     * Send prediction request to backend (or reuse the verdict of an identical feature vector)
      */
     private void sendPredictionRequest(NetworkFeatures features, String srcIp, String dstIp) {
         try {
-            PredictionClient.PredictionResult result = predictionClient.predict(features);
+            CompletableFuture<PredictionClient.PredictionResult> result = verdictCache != null
+                    ? verdictCache.get(features, this::requestPrediction)
+                    : requestPrediction(features);
+            result.thenAccept(r -> handlePredictionResult(srcIp, dstIp, r));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
-            if (result != null) {
-                logPredictionResult(srcIp, dstIp, result);
-            } else {
-                logger.warn("No prediction result from backend");
-            }
+    /**
+     * One backend prediction: batched, async, or blocking on this thread
+     */
+    private CompletableFuture<PredictionClient.PredictionResult> requestPrediction(NetworkFeatures features)
+            throws InterruptedException {
+        if (predictionBatcher != null) {
+            return predictionBatcher.submit(features);
+        }
+
+        if (ASYNC_TRANSPORT) {
+            return predictionClient.predictAsync(features);
+        }
+
+        try {
+            return CompletableFuture.completedFuture(predictionClient.predict(features));
         } catch (Exception e) {
             logger.error("Error sending prediction request: {}", e.getMessage(), e);
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private void handlePredictionResult(String srcIp, String dstIp, PredictionClient.PredictionResult result) {
+        if (result != null) {
+            logPredictionResult(srcIp, dstIp, result);
+        } else {
+            logger.warn("No prediction result from backend");
         }
     }
 
@@ -219,13 +637,20 @@ public class NetworkTrafficAnalyzer implements Closeable {
                 captureThread.join(2000);
             }
 
-            executorService.shutdownNow();
+            workers.shutdownNow();
+            drainPredictions();
 
         } catch (Exception e) {
             logger.error("Stop error", e);
         }
 
-        logger.info("Stopped.");
+        logger.info("Stopped. {} | Full decodes: {} | Tracked flows: {} | Dst hosts: {} (evicted {})",
+                overflowHandler, fullDecodeCount.sum(), getTrackedFlowCount(),
+                dstHostWindow.getHostCount(), dstHostWindow.getEvictedCount());
+        logger.info("Backend connections: {}", predictionClient.getConnectionManager());
+        if (verdictCache != null) {
+            logger.info("{}", verdictCache);
+        }
     }
 
     /**
@@ -278,6 +703,9 @@ public class NetworkTrafficAnalyzer implements Closeable {
         }
 
         handle = nif.openLive(65536, PcapNetworkInterface.PromiscuousMode.PROMISCUOUS, READ_TIMEOUT);
+        if (captureFilter != null) {
+            setCaptureFilter(captureFilter.getUserExpressions().toArray(new String[0]));
+        }
         logger.info("Handle reinitialized for interface: {}", networkInterface);
     }
 
@@ -294,11 +722,21 @@ public class NetworkTrafficAnalyzer implements Closeable {
             // If no arguments, list interfaces
             if (args.length == 0) {
                 System.out.println("Usage: java NetworkTrafficAnalyzer <interface_name>");
+                System.out.println("       java NetworkTrafficAnalyzer --replay <file.pcap> [max|original|<N>x]");
                 System.out.println("Example: java NetworkTrafficAnalyzer eth0\n");
                 listInterfaces();
                 return;
             }
 
+            if ("--replay".equals(args[0])) {
+                if (args.length < 2) {
+                    System.err.println("Missing pcap file for --replay");
+                    System.exit(1);
+                }
+                replay(new File(args[1]), ReplaySpeed.parse(args.length > 2 ? args[2] : "max"));
+                return;
+            }
+
             String interfaceName = args[0];
 
 
@@ -315,7 +753,14 @@ public class NetworkTrafficAnalyzer implements Closeable {
                 logger.info("========== Network Traffic Analyzer Started ==========");
                 logger.info("Interface: {}", interfaceName);
                 logger.info("Backend URL: {}", BACKEND_URL);
-                logger.info("Thread Pool Size: {}", THREAD_POOL_SIZE);
+                logger.info("Capture Filter: {}", analyzer.getCaptureFilter());
+                logger.info("Worker Shards: {}", SHARD_COUNT);
+                logger.info("Emission Mode: {} (early after {} packets)", EMISSION_MODE, EARLY_SCORE_PACKETS);
+                logger.info("Queue: capacity={}, policy={}", QUEUE_CAPACITY, OVERFLOW_POLICY);
+                logger.info("Batching: size={}, linger={} ms", BATCH_SIZE, BATCH_LINGER_MS);
+                logger.info("Async transport: {} (max in flight {}, http2 {})", ASYNC_TRANSPORT, ASYNC_MAX_IN_FLIGHT, ASYNC_FORCE_HTTP2 ? "force" : "negotiate");
+                logger.info("Verdict cache: size={}, ttl={} ms", CACHE_SIZE, CACHE_TTL_MS);
+                logger.info("Wire format: {}", WIRE_FORMAT);
                 logger.info("========================================================");
 
                 // Start capturing (non-blocking)
@@ -341,6 +786,35 @@ public class NetworkTrafficAnalyzer implements Closeable {
         }
     }
 
+    /**
+     * Replay a pcap file and block until every packet has been processed
+     */
+    public static void replay(File pcapFile, ReplaySpeed speed) throws PcapNativeException, InterruptedException {
+        NetworkTrafficAnalyzer analyzer = new NetworkTrafficAnalyzer(pcapFile, speed);
+
+        logger.info("========== Network Traffic Analyzer Replay ==========");
+        logger.info("Pcap file: {}", pcapFile.getAbsolutePath());
+        logger.info("Replay speed: {}", speed);
+        logger.info("Backend URL: {}", BACKEND_URL);
+        logger.info("Capture Filter: {}", analyzer.getCaptureFilter());
+        logger.info("Worker Shards: {}", SHARD_COUNT);
+        logger.info("Emission Mode: {} (early after {} packets)", EMISSION_MODE, EARLY_SCORE_PACKETS);
+        logger.info("Queue: capacity={}, policy={}", QUEUE_CAPACITY, OVERFLOW_POLICY);
+        logger.info("Batching: size={}, linger={} ms", BATCH_SIZE, BATCH_LINGER_MS);
+        logger.info("Async transport: {} (max in flight {}, http2 {})", ASYNC_TRANSPORT, ASYNC_MAX_IN_FLIGHT, ASYNC_FORCE_HTTP2 ? "force" : "negotiate");
+        logger.info("Verdict cache: size={}, ttl={} ms", CACHE_SIZE, CACHE_TTL_MS);
+        logger.info("Wire format: {}", WIRE_FORMAT);
+        logger.info("========================================================");
+
+        analyzer.start();
+        analyzer.awaitCompletion();
+
+        if (analyzer.handle.isOpen()) {
+            analyzer.handle.close();
+        }
+        analyzer.predictionClient.close();
+    }
+
     public static void startCapture(String iName, int packageCount) {
         try {
             String interfaceName = iName;
@@ -358,7 +832,14 @@ public class NetworkTrafficAnalyzer implements Closeable {
                 logger.info("========== Network Traffic Analyzer Started ==========");
                 logger.info("Interface: {}", interfaceName);
                 logger.info("Backend URL: {}", BACKEND_URL);
-                logger.info("Thread Pool Size: {}", THREAD_POOL_SIZE);
+                logger.info("Capture Filter: {}", analyzer.getCaptureFilter());
+                logger.info("Worker Shards: {}", SHARD_COUNT);
+                logger.info("Emission Mode: {} (early after {} packets)", EMISSION_MODE, EARLY_SCORE_PACKETS);
+                logger.info("Queue: capacity={}, policy={}", QUEUE_CAPACITY, OVERFLOW_POLICY);
+                logger.info("Batching: size={}, linger={} ms", BATCH_SIZE, BATCH_LINGER_MS);
+                logger.info("Async transport: {} (max in flight {}, http2 {})", ASYNC_TRANSPORT, ASYNC_MAX_IN_FLIGHT, ASYNC_FORCE_HTTP2 ? "force" : "negotiate");
+                logger.info("Verdict cache: size={}, ttl={} ms", CACHE_SIZE, CACHE_TTL_MS);
+                logger.info("Wire format: {}", WIRE_FORMAT);
                 logger.info("========================================================");
 
                 // Start capturing (non-blocking)
@@ -395,7 +876,14 @@ public class NetworkTrafficAnalyzer implements Closeable {
         appendToLog("========== Network Traffic Analyzer Started ==========");
 //        logger.info("Interface: {}", interfaceName);
         appendToLog("Backend URL: " + BACKEND_URL);
-        appendToLog("Thread Pool Size: " + THREAD_POOL_SIZE);
+        appendToLog("Capture Filter: " + captureFilter);
+        appendToLog("Worker Shards: " + SHARD_COUNT);
+        appendToLog("Emission Mode: " + EMISSION_MODE + " (early after " + EARLY_SCORE_PACKETS + " packets)");
+        appendToLog("Queue: capacity=" + QUEUE_CAPACITY + ", policy=" + OVERFLOW_POLICY);
+        appendToLog("Batching: size=" + BATCH_SIZE + ", linger=" + BATCH_LINGER_MS + " ms");
+        appendToLog("Async transport: " + ASYNC_TRANSPORT + " (max in flight " + ASYNC_MAX_IN_FLIGHT + ")");
+        appendToLog("Verdict cache: size=" + CACHE_SIZE + ", ttl=" + CACHE_TTL_MS + " ms");
+        appendToLog("Wire format: " + WIRE_FORMAT);
         appendToLog("========================================================");
 
 
@@ -411,9 +899,11 @@ public class NetworkTrafficAnalyzer implements Closeable {
             try {
                 appendToLog("CAPTURE LOOP START");
 
-                handle.loop(-1, (PacketListener) packet ->
-                        executorService.execute(() -> processPacket(packet))
-                );
+                if (isReplay()) {
+                    replayLoop();
+                } else {
+                    liveLoop();
+                }
 
             } catch (InterruptedException e) {
                 appendToLog("Capture thread interrupted");
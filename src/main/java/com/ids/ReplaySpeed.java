@@ -0,0 +1,63 @@
+package com.ids;
+
+/**
+ * Playback speed for offline pcap replay.
+ *
+ * MAX_SPEED feeds packets as fast as the pipeline accepts them, ORIGINAL keeps the
+ * recorded inter-packet gaps, and a multiplier compresses (or stretches) those gaps.
+ */
+public final class ReplaySpeed {
+    private final double multiplier; // 0 = no pacing
+
+    private ReplaySpeed(double multiplier) {
+        this.multiplier = multiplier;
+    }
+
+    public static ReplaySpeed maxSpeed() {
+        return new ReplaySpeed(0);
+    }
+
+    public static ReplaySpeed original() {
+        return new ReplaySpeed(1.0);
+    }
+
+    public static ReplaySpeed multiplier(double factor) {
+        if (!(factor > 0)) {
+            throw new IllegalArgumentException("Replay multiplier must be > 0: " + factor);
+        }
+        return new ReplaySpeed(factor);
+    }
+
+    /**
+     * Parse "max", "original" hoặc "<N>x" (ví dụ "10x", "0.5x")
+     */
+    public static ReplaySpeed parse(String value) {
+        if (value == null || value.isEmpty() || "max".equalsIgnoreCase(value)) {
+            return maxSpeed();
+        }
+        if ("original".equalsIgnoreCase(value) || "1x".equalsIgnoreCase(value)) {
+            return original();
+        }
+        String factor = value.toLowerCase().endsWith("x") ? value.substring(0, value.length() - 1) : value;
+        try {
+            return multiplier(Double.parseDouble(factor));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid replay speed: " + value);
+        }
+    }
+
+    public boolean isTimed() {
+        return multiplier > 0;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    @Override
+    public String toString() {
+        if (!isTimed()) return "max";
+        if (multiplier == 1.0) return "original";
+        return multiplier + "x";
+    }
+}
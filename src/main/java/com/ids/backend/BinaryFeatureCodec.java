@@ -0,0 +1,187 @@
+package com.ids.backend;
+
+import com.ids.model.NetworkFeatures;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Định dạng nhị phân gọn cho request/response prediction (thay cho JSON).
+ *
+ * Everything is big-endian. Request body ({@value #FEATURES_CONTENT_TYPE}):
+ * <pre>
+ *   u8  version (1)
+ *   i32 record count
+ *   per record:
+ *     u8  protocol_type, u8 service, u8 flag   dictionary codes (index in the tables below);
+ *                                              255 = not in the table, followed by u8 length + UTF-8 bytes
+ *     i32 duration, i64 src_bytes, i64 dst_bytes
+ *     i32 land, wrong_fragment, urgent, hot, num_failed_logins, logged_in,
+ *         num_compromised, root_shell, su_attempted, num_root
+ *     i32 count, srv_count
+ *     f32 serror_rate, srv_serror_rate, rerror_rate, srv_rerror_rate,
+ *         same_srv_rate, diff_srv_rate, srv_diff_host_rate
+ *     i32 dst_host_count, dst_host_srv_count
+ *     f32 dst_host_same_srv_rate, dst_host_diff_srv_rate, dst_host_same_src_port_rate,
+ *         dst_host_srv_diff_host_rate, dst_host_serror_rate, dst_host_srv_serror_rate,
+ *         dst_host_rerror_rate, dst_host_srv_rerror_rate
+ * </pre>
+ * Response body ({@value #SCORES_CONTENT_TYPE}): f32 p(normal), f32 p(attack) per record, same order.
+ *
+ * The service and flag tables are the NSL-KDD values in alphabetical order, i.e. the codes a
+ * label encoder fitted on the training set produces.
+ */
+public final class BinaryFeatureCodec {
+    public static final String FEATURES_CONTENT_TYPE = "application/x-ids-features";
+    public static final String SCORES_CONTENT_TYPE = "application/x-ids-scores";
+    public static final int VERSION = 1;
+
+    /** Record size when every categorical is in its table */
+    public static final int RECORD_BYTES = 3 + 4 + 8 + 8 + 10 * 4 + 2 * 4 + 7 * 4 + 2 * 4 + 8 * 4;
+
+    private static final int ESCAPE = 255;
+    private static final int SCORES_PER_RECORD = 2;
+
+    static final List<String> PROTOCOLS = List.of("icmp", "tcp", "udp");
+
+    static final List<String> SERVICES = List.of(
+            "IRC", "X11", "Z39_50", "aol", "auth", "bgp", "courier", "csnet_ns", "ctf", "daytime",
+            "discard", "domain", "domain_u", "echo", "eco_i", "ecr_i", "efs", "exec", "finger", "ftp",
+            "ftp_data", "gopher", "harvest", "hostnames", "http", "http_2784", "http_443", "http_8001", "imap4", "iso_tsap",
+            "klogin", "kshell", "ldap", "link", "login", "mtp", "name", "netbios_dgm", "netbios_ns", "netbios_ssn",
+            "netstat", "nnsp", "nntp", "ntp_u", "other", "pm_dump", "pop_2", "pop_3", "printer", "private",
+            "red_i", "remote_job", "rje", "shell", "smtp", "sql_net", "ssh", "sunrpc", "supdup", "systat",
+            "telnet", "tftp_u", "tim_i", "time", "urh_i", "urp_i", "uucp", "uucp_path", "vmnet", "whois");
+
+    static final List<String> FLAGS = List.of(
+            "OTH", "REJ", "RSTO", "RSTOS0", "RSTR", "S0", "S1", "S2", "S3", "SF", "SH");
+
+    private static final Map<String, Integer> PROTOCOL_CODES = codes(PROTOCOLS);
+    private static final Map<String, Integer> SERVICE_CODES = codes(SERVICES);
+    private static final Map<String, Integer> FLAG_CODES = codes(FLAGS);
+
+    private BinaryFeatureCodec() {}
+
+    private static Map<String, Integer> codes(List<String> table) {
+        Map<String, Integer> codes = new HashMap<>();
+        for (int i = 0; i < table.size(); i++) {
+            codes.put(table.get(i), i);
+        }
+        return Collections.unmodifiableMap(codes);
+    }
+
+    public static byte[] encode(NetworkFeatures features) {
+        return encode(Collections.singletonList(features));
+    }
+
+    public static byte[] encode(List<NetworkFeatures> batch) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(5 + batch.size() * RECORD_BYTES);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(VERSION);
+            out.writeInt(batch.size());
+            for (NetworkFeatures f : batch) {
+                writeRecord(out, f);
+            }
+        } catch (IOException e) {
+            // ByteArrayOutputStream does not throw
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeRecord(DataOutputStream out, NetworkFeatures f) throws IOException {
+        writeCode(out, PROTOCOL_CODES, f.getProtocolType());
+        writeCode(out, SERVICE_CODES, f.getService());
+        writeCode(out, FLAG_CODES, f.getFlag());
+
+        out.writeInt(f.getDuration());
+        out.writeLong(f.getSrcBytes());
+        out.writeLong(f.getDstBytes());
+
+        out.writeInt(f.getLand());
+        out.writeInt(f.getWrongFragment());
+        out.writeInt(f.getUrgent());
+        out.writeInt(f.getHot());
+        out.writeInt(f.getNumFailedLogins());
+        out.writeInt(f.getLoggedIn());
+        out.writeInt(f.getNumCompromised());
+        out.writeInt(f.getRootShell());
+        out.writeInt(f.getSuAttempted());
+        out.writeInt(f.getNumRoot());
+
+        out.writeInt(f.getCount());
+        out.writeInt(f.getSrvCount());
+        out.writeFloat((float) f.getSerrorRate());
+        out.writeFloat((float) f.getSrvSerrorRate());
+        out.writeFloat((float) f.getRerrorRate());
+        out.writeFloat((float) f.getSrvRerrorRate());
+        out.writeFloat((float) f.getSameSrvRate());
+        out.writeFloat((float) f.getDiffSrvRate());
+        out.writeFloat((float) f.getSrvDiffHostRate());
+
+        out.writeInt(f.getDstHostCount());
+        out.writeInt(f.getDstHostSrvCount());
+        out.writeFloat((float) f.getDstHostSameSrvRate());
+        out.writeFloat((float) f.getDstHostDiffSrvRate());
+        out.writeFloat((float) f.getDstHostSameSrcPortRate());
+        out.writeFloat((float) f.getDstHostSrvDiffHostRate());
+        out.writeFloat((float) f.getDstHostSerrorRate());
+        out.writeFloat((float) f.getDstHostSrvSerrorRate());
+        out.writeFloat((float) f.getDstHostRerrorRate());
+        out.writeFloat((float) f.getDstHostSrvRerrorRate());
+    }
+
+    private static void writeCode(DataOutputStream out, Map<String, Integer> codes, String value) throws IOException {
+        Integer code = value != null ? codes.get(value) : null;
+        if (code != null) {
+            out.writeByte(code);
+            return;
+        }
+        // Not in the table (e.g. "https", raw TCP flags): send the string itself
+        byte[] utf8 = value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        int length = Math.min(utf8.length, 255);
+        out.writeByte(ESCAPE);
+        out.writeByte(length);
+        out.write(utf8, 0, length);
+    }
+
+    /**
+     * @param expected Records in the request
+     * @return One result per record (same order)
+     * @throws IllegalStateException The body does not hold exactly expected score pairs
+     */
+    public static List<PredictionClient.PredictionResult> decodeScores(byte[] body, int expected) {
+        if (body.length != expected * SCORES_PER_RECORD * Float.BYTES) {
+            throw new IllegalStateException("Binary response has " + body.length + " bytes for " + expected + " inputs");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        List<PredictionClient.PredictionResult> results = new ArrayList<>(expected);
+        for (int i = 0; i < expected; i++) {
+            results.add(toResult(buffer.getFloat(), buffer.getFloat()));
+        }
+        return results;
+    }
+
+    private static PredictionClient.PredictionResult toResult(float normal, float attack) {
+        PredictionClient.PredictionResult result = new PredictionClient.PredictionResult();
+        boolean isAttack = attack > normal;
+        result.setPrediction(isAttack ? "1" : "0");
+        result.setPredictionLabel(isAttack ? "attack" : "normal");
+        result.setConfidence(isAttack ? attack : normal);
+        return result;
+    }
+
+    public static boolean isScores(String contentType) {
+        return contentType != null && contentType.regionMatches(true, 0, SCORES_CONTENT_TYPE, 0, SCORES_CONTENT_TYPE.length());
+    }
+}
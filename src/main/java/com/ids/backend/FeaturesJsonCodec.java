@@ -0,0 +1,141 @@
+package com.ids.backend;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.ids.model.NetworkFeatures;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * JSON streaming cho request/response, không qua HashMap hay String trung gian.
+ *
+ * Requests are generated straight into a byte buffer owned by the calling thread, with the
+ * {"features": ...} key pre-encoded and the NetworkFeatures serializer resolved once.
+ * Responses are bound off the InputStream (or body bytes) by a cached ObjectReader.
+ */
+public class FeaturesJsonCodec {
+    private static final SerializedString FEATURES = new SerializedString("features");
+    private static final SerializedString PREDICTIONS = new SerializedString("predictions");
+    private static final int INITIAL_BUFFER = 1024;
+
+    private final JsonFactory factory;
+    private final ObjectWriter featuresWriter;
+    private final ObjectReader resultReader;
+    private final ThreadLocal<JsonBuffer> buffers = ThreadLocal.withInitial(JsonBuffer::new);
+
+    /**
+     * Growable byte buffer, reset and refilled by every write on its thread
+     */
+    public static final class JsonBuffer extends ByteArrayOutputStream {
+        JsonBuffer() {
+            super(INITIAL_BUFFER);
+        }
+
+        /** Backing array: only the first size() bytes are valid */
+        public byte[] array() { return buf; }
+    }
+
+    public FeaturesJsonCodec(ObjectMapper objectMapper) {
+        this.factory = objectMapper.getFactory();
+        this.featuresWriter = objectMapper.writerFor(NetworkFeatures.class);
+        this.resultReader = objectMapper.readerFor(PredictionClient.PredictionResult.class);
+    }
+
+    /**
+     * {"features": {...}}
+     *
+     * @return This thread's buffer, valid until its next write call
+     */
+    public JsonBuffer write(NetworkFeatures features) throws IOException {
+        JsonBuffer buffer = buffers.get();
+        buffer.reset();
+        try (JsonGenerator generator = factory.createGenerator(buffer, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeFieldName(FEATURES);
+            featuresWriter.writeValue(generator, features);
+            generator.writeEndObject();
+        }
+        return buffer;
+    }
+
+    /**
+     * {"features": [{...}, {...}]}
+     *
+     * @return This thread's buffer, valid until its next write call
+     */
+    public JsonBuffer write(List<NetworkFeatures> batch) throws IOException {
+        JsonBuffer buffer = buffers.get();
+        buffer.reset();
+        try (JsonGenerator generator = factory.createGenerator(buffer, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeFieldName(FEATURES);
+            generator.writeStartArray();
+            for (NetworkFeatures features : batch) {
+                featuresWriter.writeValue(generator, features);
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        return buffer;
+    }
+
+    public PredictionClient.PredictionResult readResult(InputStream in) throws IOException {
+        return resultReader.readValue(in);
+    }
+
+    public PredictionClient.PredictionResult readResult(byte[] body) throws IOException {
+        return resultReader.readValue(body);
+    }
+
+    /**
+     * [{...}, {...}] or {"predictions": [...]}; a single object counts as a one-item batch
+     *
+     * @throws IllegalStateException The body does not hold exactly expected results
+     */
+    public List<PredictionClient.PredictionResult> readResults(InputStream in, int expected) throws IOException {
+        try (JsonParser parser = factory.createParser(in)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_OBJECT) {
+                // Rare shapes: bind the object as a tree, then look inside
+                JsonNode root = resultReader.readTree(parser);
+                if (expected == 1 && !root.has(PREDICTIONS.getValue())) {
+                    return Collections.singletonList(resultReader.treeToValue(root, PredictionClient.PredictionResult.class));
+                }
+                JsonNode items = root.path(PREDICTIONS.getValue());
+                if (!items.isArray() || items.size() != expected) {
+                    throw new IllegalStateException("Batch response has " + items.size() + " results for " + expected + " inputs");
+                }
+                List<PredictionClient.PredictionResult> results = new ArrayList<>(expected);
+                for (JsonNode item : items) {
+                    results.add(resultReader.treeToValue(item, PredictionClient.PredictionResult.class));
+                }
+                return results;
+            }
+            if (token != JsonToken.START_ARRAY) {
+                throw new IllegalStateException("Batch response is not an array: " + token);
+            }
+
+            List<PredictionClient.PredictionResult> results = new ArrayList<>(expected);
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                results.add(resultReader.readValue(parser));
+            }
+            if (results.size() != expected) {
+                throw new IllegalStateException("Batch response has " + results.size() + " results for " + expected + " inputs");
+            }
+            return results;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.ids.backend;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.io.LeaseRequest;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Connection pool cho PredictionClient, có đo thời gian chờ lease.
+ *
+ * The pool is sized to the number of threads that call the backend concurrently (the default
+ * of 2 per route would serialize the workers). Measures how long callers wait for a connection
+ * and how often the pool is fully leased.
+ */
+public class MeteredConnectionManager extends PoolingHttpClientConnectionManager {
+    private final LongAdder leaseCount = new LongAdder();
+    private final LongAdder leaseNanos = new LongAdder();
+    private final LongAccumulator maxLeaseNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder saturatedLeaseCount = new LongAdder();
+
+    /**
+     * @param maxConnections      Connections per route (and total: there is one backend)
+     * @param validateAfterIdle   Check a pooled connection before reuse if it was idle this long
+     */
+    public MeteredConnectionManager(int maxConnections, TimeValue validateAfterIdle) {
+        super();
+        setMaxTotal(maxConnections);
+        setDefaultMaxPerRoute(maxConnections);
+        setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setValidateAfterInactivity(validateAfterIdle)
+                .build());
+    }
+
+    @Override
+    public LeaseRequest lease(String id, HttpRoute route, Timeout requestTimeout, Object state) {
+        // Every connection already leased: this caller will wait
+        PoolStats stats = getTotalStats();
+        if (stats.getAvailable() == 0 && stats.getLeased() >= stats.getMax()) {
+            saturatedLeaseCount.increment();
+        }
+
+        LeaseRequest request = super.lease(id, route, requestTimeout, state);
+        return new LeaseRequest() {
+            @Override
+            public ConnectionEndpoint get(Timeout timeout)
+                    throws InterruptedException, ExecutionException, TimeoutException {
+                long start = System.nanoTime();
+                try {
+                    return request.get(timeout);
+                } finally {
+                    long waited = System.nanoTime() - start;
+                    leaseCount.increment();
+                    leaseNanos.add(waited);
+                    maxLeaseNanos.accumulate(waited);
+                }
+            }
+
+            @Override
+            public boolean cancel() {
+                return request.cancel();
+            }
+        };
+    }
+
+    public long getLeaseCount() { return leaseCount.sum(); }
+
+    /**
+     * @return Average time callers waited for a connection
+     */
+    public double getAverageLeaseMillis() {
+        long leases = leaseCount.sum();
+        return leases == 0 ? 0.0 : leaseNanos.sum() / 1e6 / leases;
+    }
+
+    public long getMaxLeaseMillis() { return TimeUnit.NANOSECONDS.toMillis(maxLeaseNanos.get()); }
+
+    /**
+     * @return Leases requested while every connection was in use
+     */
+    public long getSaturatedLeaseCount() { return saturatedLeaseCount.sum(); }
+
+    /**
+     * @return Leased / max connections right now (1.0 = saturated)
+     */
+    public double getSaturation() {
+        PoolStats stats = getTotalStats();
+        return stats.getMax() == 0 ? 0.0 : (double) stats.getLeased() / stats.getMax();
+    }
+
+    @Override
+    public String toString() {
+        PoolStats stats = getTotalStats();
+        return String.format("Pool{max=%d, leased=%d, available=%d, pending=%d, leases=%d, avgWaitMs=%.3f, maxWaitMs=%d, saturatedLeases=%d}",
+                stats.getMax(), stats.getLeased(), stats.getAvailable(), stats.getPending(),
+                getLeaseCount(), getAverageLeaseMillis(), getMaxLeaseMillis(), getSaturatedLeaseCount());
+    }
+}
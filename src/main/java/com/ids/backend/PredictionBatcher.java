@@ -0,0 +1,246 @@
+package com.ids.backend;
+
+import com.ids.model.NetworkFeatures;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Gom features thành batch trước khi gửi backend (micro-batching).
+ *
+ * A batch is flushed when it reaches maxBatchSize items or when its first item has waited
+ * lingerMillis, whichever comes first, and is POSTed as one array. Results are fanned back
+ * to the callers' futures in order. If the backend has no batch endpoint, items fall back
+ * to one request each.
+ */
+public class PredictionBatcher implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(PredictionBatcher.class);
+
+    private final PredictionClient client;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final BlockingQueue<Pending> queue;
+    private final Thread flusher;
+    private final ExecutorService senders;
+    // Batches handed to the senders and not finished yet
+    private final Semaphore sendPermits;
+
+    private volatile boolean running = true;
+    private volatile boolean batchSupported = true;
+
+    // Metrics
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder itemCount = new LongAdder();
+    private final LongAdder fullFlushCount = new LongAdder();
+    private final LongAdder lingerFlushCount = new LongAdder();
+    private final LongAdder failedBatchCount = new LongAdder();
+
+    private static final class Pending {
+        final NetworkFeatures features;
+        final CompletableFuture<PredictionClient.PredictionResult> future = new CompletableFuture<>();
+
+        Pending(NetworkFeatures features) {
+            this.features = features;
+        }
+    }
+
+    /**
+     * @param maxBatchSize  Flush when this many items are waiting
+     * @param lingerMillis  Flush when the oldest waiting item is this old
+     * @param senderThreads Batches in flight at the same time
+     */
+    public PredictionBatcher(PredictionClient client, int maxBatchSize, long lingerMillis, int senderThreads) {
+        this.client = client;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, lingerMillis));
+        // Room for a few batches per sender: callers block beyond that (backpressure)
+        this.queue = new ArrayBlockingQueue<>(this.maxBatchSize * Math.max(1, senderThreads) * 4);
+        // One batch sending and one waiting per sender, then the flusher stops draining the queue
+        this.sendPermits = new Semaphore(Math.max(1, senderThreads) * 2);
+
+        AtomicInteger senderIndex = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(Math.max(1, senderThreads), r -> {
+            Thread t = new Thread(r, "ids-batch-sender-" + senderIndex.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+
+        this.flusher = new Thread(this::flushLoop, "ids-batch-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Queue features for the next batch (blocks while the queue is full)
+     *
+     * @return Completed with the prediction, or null if the batch failed
+     */
+    public CompletableFuture<PredictionClient.PredictionResult> submit(NetworkFeatures features) throws InterruptedException {
+        Pending pending = new Pending(features);
+        if (!running) {
+            pending.future.complete(null);
+            return pending.future;
+        }
+        queue.put(pending);
+        // close() may have drained the queue between the check and the put
+        if (!running && queue.remove(pending)) {
+            pending.future.complete(null);
+        }
+        return pending.future;
+    }
+
+    private void flushLoop() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + lingerNanos;
+
+                // Fill up to maxBatchSize or until the oldest item has lingered long enough
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    if (batch.size() >= maxBatchSize) break;
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0 || !running) break;
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+
+                if (batch.size() >= maxBatchSize) {
+                    fullFlushCount.increment();
+                } else {
+                    lingerFlushCount.increment();
+                }
+
+                sendPermits.acquire();
+                List<Pending> toSend = batch;
+                batch = new ArrayList<>(maxBatchSize);
+                senders.execute(() -> {
+                    try {
+                        send(toSend);
+                    } finally {
+                        sendPermits.release();
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        complete(batch);
+    }
+
+    /**
+     * Items that will never be sent: their callers get null
+     */
+    private static void complete(List<Pending> unsent) {
+        for (Pending pending : unsent) {
+            pending.future.complete(null);
+        }
+    }
+
+    private void send(List<Pending> batch) {
+        batchCount.increment();
+        itemCount.add(batch.size());
+
+        if (batchSupported) {
+            List<NetworkFeatures> features = new ArrayList<>(batch.size());
+            for (Pending pending : batch) {
+                features.add(pending.features);
+            }
+            try {
+                List<PredictionClient.PredictionResult> results = client.predictBatch(features);
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).future.complete(results.get(i));
+                }
+                return;
+            } catch (PredictionClient.BatchUnsupportedException e) {
+                batchSupported = false;
+                logger.warn("Batch endpoint not available ({}), falling back to one request per item", e.getMessage());
+            } catch (Exception e) {
+                failedBatchCount.increment();
+                logger.error("Batch of {} failed: {}", batch.size(), e.getMessage());
+                for (Pending pending : batch) {
+                    pending.future.complete(null);
+                }
+                return;
+            }
+        }
+
+        for (Pending pending : batch) {
+            pending.future.complete(client.predict(pending.features));
+        }
+    }
+
+    /**
+     * Flush what is queued, wait for in-flight batches and stop.
+     * If interrupted, stops waiting (batches already sending still complete their futures)
+     * and keeps the thread's interrupt status.
+     */
+    @Override
+    public void close() {
+        running = false;
+        boolean interrupted = false;
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            interrupted = true;
+            flusher.interrupt();
+        }
+        List<Pending> leftovers = new ArrayList<>();
+        queue.drainTo(leftovers);
+        complete(leftovers);
+        senders.shutdown();
+        if (!interrupted) {
+            try {
+                senders.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        logger.info("{}", this);
+    }
+
+    public int getMaxBatchSize() { return maxBatchSize; }
+    public long getLingerMillis() { return TimeUnit.NANOSECONDS.toMillis(lingerNanos); }
+    public long getBatchCount() { return batchCount.sum(); }
+    public long getItemCount() { return itemCount.sum(); }
+    public long getFullFlushCount() { return fullFlushCount.sum(); }
+    public long getLingerFlushCount() { return lingerFlushCount.sum(); }
+    public long getFailedBatchCount() { return failedBatchCount.sum(); }
+    public int getQueuedCount() { return queue.size(); }
+
+    /**
+     * @return Average items per batch / maxBatchSize (1.0 = every batch was full)
+     */
+    public double getFillRatio() {
+        long batches = batchCount.sum();
+        return batches == 0 ? 0.0 : (double) itemCount.sum() / (batches * (double) maxBatchSize);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Batching{size=%d, lingerMs=%d, batches=%d, items=%d, fill=%.2f, full=%d, linger=%d, failed=%d}",
+                maxBatchSize, getLingerMillis(), getBatchCount(), getItemCount(), getFillRatio(),
+                getFullFlushCount(), getLingerFlushCount(), getFailedBatchCount());
+    }
+}
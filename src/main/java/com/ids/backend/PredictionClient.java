@@ -3,29 +3,142 @@ package com.ids.backend;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
 import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.config.TlsConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ClassicHttpResponse;
 import org.apache.hc.core5.http.ContentType;
-import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.util.TimeValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.ids.model.NetworkFeatures;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class PredictionClient {
     private static final Logger logger = LoggerFactory.getLogger(PredictionClient.class);
 
     private final String backendUrl;
-    private final ObjectMapper objectMapper;
+    private final String batchUrl;
+    private final FeaturesJsonCodec jsonCodec;
     private final CloseableHttpClient httpClient;
+    private final MeteredConnectionManager connectionManager;
+
+    // Blocking client pool
+    public static final int DEFAULT_POOL_SIZE = Math.max(4, Runtime.getRuntime().availableProcessors());
+    private static final TimeValue KEEP_ALIVE = TimeValue.ofSeconds(30);
+    private static final TimeValue VALIDATE_AFTER_IDLE = TimeValue.ofSeconds(2);
+
+    // Async transport (created on first predictAsync)
+    public static final int DEFAULT_MAX_IN_FLIGHT = 1024;
+    public static final int DEFAULT_ASYNC_CONNECTIONS = 32;
+    private final Semaphore inFlightPermits;
+    private final int maxInFlight;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private volatile CloseableHttpAsyncClient asyncClient;
+    private HttpVersionPolicy versionPolicy = HttpVersionPolicy.NEGOTIATE;
+    private int asyncConnections = DEFAULT_ASYNC_CONNECTIONS;
+
+    // Binary encoding, dropped for JSON if the backend answers 415/406
+    private static final ContentType BINARY_FEATURES = ContentType.create(BinaryFeatureCodec.FEATURES_CONTENT_TYPE);
+    private static final String ACCEPT_BINARY = BinaryFeatureCodec.SCORES_CONTENT_TYPE + ", application/json;q=0.5";
+    private volatile WireFormat wireFormat = WireFormat.JSON;
 
     public PredictionClient(String backendUrl) {
+        this(backendUrl, backendUrl + "/batch");
+    }
+
+    /**
+     * @param batchUrl Endpoint nhận một mảng features, trả về mảng kết quả cùng thứ tự
+     */
+    public PredictionClient(String backendUrl, String batchUrl) {
+        this(backendUrl, batchUrl, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * @param maxInFlight Async requests allowed in flight at once (predictAsync blocks beyond that)
+     */
+    public PredictionClient(String backendUrl, String batchUrl, int maxInFlight) {
+        this(backendUrl, batchUrl, maxInFlight, DEFAULT_POOL_SIZE);
+    }
+
+    /**
+     * @param maxConnections Pooled keep-alive connections for the blocking client; size it to the
+     *                       number of threads calling predict/predictBatch concurrently
+     */
+    public PredictionClient(String backendUrl, String batchUrl, int maxInFlight, int maxConnections) {
         this.backendUrl = backendUrl;
-        this.objectMapper = new ObjectMapper();
-        this.httpClient = HttpClients.createDefault();
+        this.batchUrl = batchUrl;
+        this.jsonCodec = new FeaturesJsonCodec(new ObjectMapper());
+        this.connectionManager = new MeteredConnectionManager(Math.max(1, maxConnections), VALIDATE_AFTER_IDLE);
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionKeepAlive(KEEP_ALIVE) // when the server sends no Keep-Alive header
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(KEEP_ALIVE)
+                .build();
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.inFlightPermits = new Semaphore(this.maxInFlight);
+    }
+
+    /**
+     * HTTP/2 cho async transport: NEGOTIATE (ALPN trên TLS, HTTP/1.1 nếu không được),
+     * FORCE_HTTP_2 (h2c prior knowledge: mọi request multiplex trên một connection).
+     * Must be called before the first predictAsync.
+     */
+    public void setAsyncVersionPolicy(HttpVersionPolicy versionPolicy) {
+        this.versionPolicy = versionPolicy;
+    }
+
+    /**
+     * @param connections HTTP/1.1 connections to the backend used by the async transport
+     */
+    public void setAsyncConnections(int connections) {
+        this.asyncConnections = Math.max(1, connections);
+    }
+
+    /**
+     * BINARY: send BinaryFeatureCodec bodies; falls back to JSON for good if the backend
+     * rejects the content type (415/406)
+     */
+    public void setWireFormat(WireFormat wireFormat) {
+        this.wireFormat = wireFormat != null ? wireFormat : WireFormat.JSON;
+    }
+
+    public WireFormat getWireFormat() { return wireFormat; }
+
+    private boolean isBinaryRejected(int statusCode) {
+        if (statusCode != 415 && statusCode != 406) {
+            return false;
+        }
+        if (wireFormat == WireFormat.BINARY) {
+            wireFormat = WireFormat.JSON;
+            logger.warn("Backend rejected binary encoding ({}), falling back to JSON", statusCode);
+        }
+        return true;
     }
 
     /**
@@ -34,32 +147,38 @@ public class PredictionClient {
      * @return Prediction result hoặc null nếu error
      */
     public PredictionResult predict(NetworkFeatures features) {
-        try {
-            // Tạo request body
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("features", features);
+        if (wireFormat == WireFormat.BINARY) {
+            try {
+                List<PredictionResult> results = executeBinary(backendUrl, Collections.singletonList(features));
+                if (results != null) {
+                    return results.get(0);
+                }
+            } catch (Exception e) {
+                logger.error("Error sending prediction request: {}", e.getMessage());
+                return null;
+            }
+        }
 
-            String jsonPayload = objectMapper.writeValueAsString(requestBody);
-            logger.debug("Sending payload: {}", jsonPayload);
+        try {
+            // Request body: written into this thread's buffer, sent before the next write reuses it
+            FeaturesJsonCodec.JsonBuffer body = jsonCodec.write(features);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Sending payload: {}", body.toString(StandardCharsets.UTF_8));
+            }
 
             // Create HTTP POST request
             HttpPost httpPost = new HttpPost(backendUrl);
-            httpPost.setEntity(new StringEntity(jsonPayload, ContentType.APPLICATION_JSON));
-            httpPost.setHeader("Content-Type", "application/json");
+            httpPost.setEntity(new ByteArrayEntity(body.array(), 0, body.size(), ContentType.APPLICATION_JSON));
 
             // Execute request
             return httpClient.execute(httpPost, response -> {
                 int statusCode = response.getCode();
-                String responseBody = new String(response.getEntity().getContent().readAllBytes());
 
                 logger.info("Backend response status: {}", statusCode);
 
                 if (statusCode == 200 || statusCode == 201) {
                     try {
-                        PredictionResult result = objectMapper.readValue(
-                                responseBody,
-                                PredictionResult.class
-                        );
+                        PredictionResult result = jsonCodec.readResult(response.getEntity().getContent());
                         logger.info("Prediction result: {}", result);
                         return result;
                     } catch (Exception e) {
@@ -67,7 +186,7 @@ public class PredictionClient {
                         return null;
                     }
                 } else {
-                    logger.error("Backend returned error: {} - {}", statusCode, responseBody);
+                    logger.error("Backend returned error: {} - {}", statusCode, bodyText(response));
                     return null;
                 }
             });
@@ -78,12 +197,268 @@ public class PredictionClient {
         }
     }
 
+    /**
+     * POST a binary request
+     *
+     * @return One result per input, or null if the backend does not accept binary (caller resends as JSON)
+     * @throws BatchUnsupportedException Backend has no such endpoint (404/405)
+     */
+    private List<PredictionResult> executeBinary(String url, List<NetworkFeatures> batch) throws IOException {
+        HttpPost httpPost = new HttpPost(url);
+        httpPost.setEntity(new ByteArrayEntity(BinaryFeatureCodec.encode(batch), BINARY_FEATURES));
+        httpPost.setHeader("Accept", ACCEPT_BINARY);
+
+        return httpClient.execute(httpPost, response -> {
+            int statusCode = response.getCode();
+            if (isBinaryRejected(statusCode)) {
+                return null;
+            }
+            if (statusCode == 404 || statusCode == 405) {
+                throw new BatchUnsupportedException(url + " returned " + statusCode);
+            }
+            if (statusCode != 200 && statusCode != 201) {
+                throw new IllegalStateException("Backend returned error: " + statusCode + " - " + bodyText(response));
+            }
+            if (BinaryFeatureCodec.isScores(contentType(response))) {
+                return BinaryFeatureCodec.decodeScores(response.getEntity().getContent().readAllBytes(), batch.size());
+            }
+            // Binary request accepted, JSON reply
+            return jsonCodec.readResults(response.getEntity().getContent(), batch.size());
+        });
+    }
+
+    private static String contentType(ClassicHttpResponse response) {
+        HttpEntity entity = response.getEntity();
+        return entity != null ? entity.getContentType() : null;
+    }
+
+    /**
+     * Error responses only: the body is logged as text
+     */
+    private static String bodyText(ClassicHttpResponse response) throws IOException {
+        HttpEntity entity = response.getEntity();
+        return entity != null ? new String(entity.getContent().readAllBytes(), StandardCharsets.UTF_8) : "";
+    }
+
+    /**
+     * Non-blocking predict: the reply is handled on the client's I/O threads, so a few callers
+     * can keep up to maxInFlight predictions outstanding. Blocks only while the window is full.
+     *
+     * @return Completed with the result, or null on error (same contract as predict)
+     */
+    public CompletableFuture<PredictionResult> predictAsync(NetworkFeatures features) throws InterruptedException {
+        CompletableFuture<PredictionResult> future = new CompletableFuture<>();
+
+        SimpleHttpRequest request;
+        boolean binary = wireFormat == WireFormat.BINARY;
+        try {
+            request = binary ? binaryRequest(features) : jsonRequest(features);
+        } catch (Exception e) {
+            logger.error("Error serializing features: {}", e.getMessage());
+            future.complete(null);
+            return future;
+        }
+
+        inFlightPermits.acquire();
+        peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+
+        try {
+            asyncClient().execute(request, new AsyncCall(features, future, binary));
+        } catch (RuntimeException e) {
+            // Client closed or could not be built: the callback will never run
+            release();
+            logger.error("Error sending prediction request: {}", e.getMessage());
+            future.complete(null);
+        }
+        return future;
+    }
+
+    private SimpleHttpRequest jsonRequest(NetworkFeatures features) throws IOException {
+        // Sent later on an I/O thread: copy out of this thread's buffer
+        return SimpleRequestBuilder.post(backendUrl)
+                .setBody(jsonCodec.write(features).toByteArray(), ContentType.APPLICATION_JSON)
+                .build();
+    }
+
+    private SimpleHttpRequest binaryRequest(NetworkFeatures features) {
+        return SimpleRequestBuilder.post(backendUrl)
+                .setBody(BinaryFeatureCodec.encode(features), BINARY_FEATURES)
+                .addHeader("Accept", ACCEPT_BINARY)
+                .build();
+    }
+
+    /**
+     * Completes one predictAsync; holds its in-flight permit until then (including a JSON resend)
+     */
+    private final class AsyncCall implements FutureCallback<SimpleHttpResponse> {
+        private final NetworkFeatures features;
+        private final CompletableFuture<PredictionResult> future;
+        private final boolean binary;
+
+        AsyncCall(NetworkFeatures features, CompletableFuture<PredictionResult> future, boolean binary) {
+            this.features = features;
+            this.future = future;
+            this.binary = binary;
+        }
+
+        @Override
+        public void completed(SimpleHttpResponse response) {
+            if (binary && isBinaryRejected(response.getCode())) {
+                try {
+                    asyncClient().execute(jsonRequest(features), new AsyncCall(features, future, false));
+                    return;
+                } catch (Exception e) {
+                    logger.error("Error serializing features: {}", e.getMessage());
+                    release();
+                    future.complete(null);
+                    return;
+                }
+            }
+            release();
+            future.complete(parseResponse(response));
+        }
+
+        @Override
+        public void failed(Exception e) {
+            release();
+            logger.error("Error sending prediction request: {}", e.getMessage());
+            future.complete(null);
+        }
+
+        @Override
+        public void cancelled() {
+            release();
+            future.complete(null);
+        }
+    }
+
+    private void release() {
+        inFlight.decrementAndGet();
+        inFlightPermits.release();
+    }
+
+    private PredictionResult parseResponse(SimpleHttpResponse response) {
+        int statusCode = response.getCode();
+        if (statusCode != 200 && statusCode != 201) {
+            logger.error("Backend returned error: {} - {}", statusCode, response.getBodyText());
+            return null;
+        }
+        try {
+            ContentType contentType = response.getContentType();
+            if (contentType != null && BinaryFeatureCodec.isScores(contentType.getMimeType())) {
+                return BinaryFeatureCodec.decodeScores(response.getBodyBytes(), 1).get(0);
+            }
+            return jsonCodec.readResult(response.getBodyBytes());
+        } catch (Exception e) {
+            logger.error("Error parsing response: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private CloseableHttpAsyncClient asyncClient() {
+        CloseableHttpAsyncClient client = asyncClient;
+        if (client == null) {
+            synchronized (this) {
+                client = asyncClient;
+                if (client == null) {
+                    // The version policy applies to plain (h2c) connections as well
+                    client = HttpAsyncClients.custom()
+                            .setConnectionManager(PoolingAsyncClientConnectionManagerBuilder.create()
+                                    .setDefaultTlsConfig(TlsConfig.custom()
+                                            .setVersionPolicy(versionPolicy)
+                                            .build())
+                                    .setMaxConnPerRoute(asyncConnections)
+                                    .setMaxConnTotal(asyncConnections)
+                                    .build())
+                            .build();
+                    client.start();
+                    asyncClient = client;
+                    logger.info("Async transport started: policy={}, connections={}, maxInFlight={}",
+                            versionPolicy, asyncConnections, maxInFlight);
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * Wait until every async request has completed (end of replay)
+     *
+     * @return false if some were still in flight after the timeout
+     */
+    public boolean awaitInFlight(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!inFlightPermits.tryAcquire(maxInFlight, timeout, unit)) {
+            return false;
+        }
+        inFlightPermits.release(maxInFlight);
+        return true;
+    }
+
+    /**
+     * @return Blocking client pool (lease wait time, saturation)
+     */
+    public MeteredConnectionManager getConnectionManager() { return connectionManager; }
+
+    public int getInFlightCount() { return inFlight.get(); }
+    public int getPeakInFlightCount() { return peakInFlight.get(); }
+    public int getMaxInFlight() { return maxInFlight; }
+
+    /**
+     * Gửi nhiều features trong một request tới batch endpoint
+     *
+     * Request: {"features": [{...}, {...}]}
+     * Response: [{...}, {...}] hoặc {"predictions": [...]}, cùng thứ tự với request
+     *
+     * @return One result per input (same order)
+     * @throws BatchUnsupportedException Backend has no batch endpoint (404/405)
+     * @throws Exception Transport or parse error: the whole batch failed
+     */
+    public List<PredictionResult> predictBatch(List<NetworkFeatures> batch) throws Exception {
+        if (wireFormat == WireFormat.BINARY) {
+            List<PredictionResult> results = executeBinary(batchUrl, batch);
+            if (results != null) {
+                return results;
+            }
+        }
+
+        FeaturesJsonCodec.JsonBuffer body = jsonCodec.write(batch);
+        HttpPost httpPost = new HttpPost(batchUrl);
+        httpPost.setEntity(new ByteArrayEntity(body.array(), 0, body.size(), ContentType.APPLICATION_JSON));
+
+        return httpClient.execute(httpPost, response -> {
+            int statusCode = response.getCode();
+
+            if (statusCode == 404 || statusCode == 405) {
+                throw new BatchUnsupportedException(batchUrl + " returned " + statusCode);
+            }
+            if (statusCode != 200 && statusCode != 201) {
+                throw new IllegalStateException("Backend returned error: " + statusCode + " - " + bodyText(response));
+            }
+
+            return jsonCodec.readResults(response.getEntity().getContent(), batch.size());
+        });
+    }
+
+    /**
+     * Backend không hỗ trợ batch endpoint
+     */
+    public static class BatchUnsupportedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public BatchUnsupportedException(String message) {
+            super(message);
+        }
+    }
+
     /**
      * Shutdown HTTP client
      */
     public void close() {
         try {
             httpClient.close();
+            if (asyncClient != null) {
+                asyncClient.close(CloseMode.GRACEFUL);
+            }
         } catch (Exception e) {
             logger.error("Error closing HTTP client: {}", e.getMessage());
         }
@@ -0,0 +1,245 @@
+package com.ids.backend;
+
+import com.ids.model.NetworkFeatures;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache kết quả prediction theo feature vector.
+ *
+ * Many packets produce byte-identical features (e.g. every ACK of a bulk transfer), so the
+ * previous verdict is reused for ttlMillis. The cache is LRU-bounded to maxEntries. Concurrent
+ * misses on the same vector share one backend request. Failed predictions (null) are not cached.
+ */
+public class VerdictCache {
+    // Off unless -Dids.cache.size is set: a reused verdict hides changes of the model behind the backend
+    public static final int DEFAULT_MAX_ENTRIES = 0;
+    public static final long DEFAULT_TTL_MILLIS = 5_000;
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LinkedHashMap<Key, CachedVerdict> entries;
+    private final ConcurrentHashMap<Key, CompletableFuture<PredictionClient.PredictionResult>> loading = new ConcurrentHashMap<>();
+
+    // Metrics
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder coalescedCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder expiredCount = new LongAdder();
+
+    /**
+     * Sends one prediction request (batcher, async or blocking client)
+     */
+    @FunctionalInterface
+    public interface Loader {
+        CompletableFuture<PredictionClient.PredictionResult> load(NetworkFeatures features) throws InterruptedException;
+    }
+
+    private static final class CachedVerdict {
+        final PredictionClient.PredictionResult result;
+        final long expiresAtNanos;
+
+        CachedVerdict(PredictionClient.PredictionResult result, long expiresAtNanos) {
+            this.result = result;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    /**
+     * @param maxEntries Verdicts kept; the least recently used one is evicted beyond that
+     * @param ttlMillis  How long a verdict is reused
+     */
+    public VerdictCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, ttlMillis));
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedVerdict> eldest) {
+                if (size() > VerdictCache.this.maxEntries) {
+                    evictionCount.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Cached verdict if still fresh, else the request already in flight for the same vector,
+     * else a new request through the loader
+     */
+    public CompletableFuture<PredictionClient.PredictionResult> get(NetworkFeatures features, Loader loader)
+            throws InterruptedException {
+        Key key = Key.of(features);
+
+        PredictionClient.PredictionResult cached = lookup(key);
+        if (cached != null) {
+            hitCount.increment();
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        CompletableFuture<PredictionClient.PredictionResult> future = new CompletableFuture<>();
+        CompletableFuture<PredictionClient.PredictionResult> pending = loading.putIfAbsent(key, future);
+        if (pending != null) {
+            coalescedCount.increment();
+            return pending;
+        }
+        missCount.increment();
+
+        CompletableFuture<PredictionClient.PredictionResult> request;
+        try {
+            request = loader.load(features);
+        } catch (InterruptedException | RuntimeException e) {
+            loading.remove(key, future);
+            future.complete(null);
+            throw e;
+        }
+
+        request.whenComplete((result, error) -> {
+            PredictionClient.PredictionResult verdict = error == null ? result : null;
+            if (verdict != null) {
+                store(key, verdict);
+            }
+            // Stored before release so a new miss sees the verdict instead of sending again
+            loading.remove(key, future);
+            future.complete(verdict);
+        });
+        return future;
+    }
+
+    private synchronized PredictionClient.PredictionResult lookup(Key key) {
+        CachedVerdict entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.expiresAtNanos >= 0) {
+            entries.remove(key);
+            expiredCount.increment();
+            return null;
+        }
+        return entry.result;
+    }
+
+    private synchronized void store(Key key, PredictionClient.PredictionResult result) {
+        entries.put(key, new CachedVerdict(result, System.nanoTime() + ttlNanos));
+    }
+
+    /**
+     * Drop expired verdicts (lookups already ignore them; this only frees memory)
+     */
+    public synchronized int purgeExpired() {
+        long now = System.nanoTime();
+        int purged = 0;
+        for (Iterator<CachedVerdict> it = entries.values().iterator(); it.hasNext(); ) {
+            if (now - it.next().expiresAtNanos >= 0) {
+                it.remove();
+                purged++;
+            }
+        }
+        expiredCount.add(purged);
+        return purged;
+    }
+
+    public synchronized int size() { return entries.size(); }
+    public int getMaxEntries() { return maxEntries; }
+    public long getTtlMillis() { return TimeUnit.NANOSECONDS.toMillis(ttlNanos); }
+    public long getHitCount() { return hitCount.sum(); }
+    public long getMissCount() { return missCount.sum(); }
+
+    /**
+     * @return Lookups that joined a request already in flight for the same vector
+     */
+    public long getCoalescedCount() { return coalescedCount.sum(); }
+
+    /**
+     * @return Verdicts dropped because the cache was full (LRU)
+     */
+    public long getEvictionCount() { return evictionCount.sum(); }
+    public long getExpiredCount() { return expiredCount.sum(); }
+    public int getLoadingCount() { return loading.size(); }
+
+    /**
+     * @return (hits + coalesced) / lookups: share of predictions that did not cost a backend call
+     */
+    public double getHitRatio() {
+        long saved = hitCount.sum() + coalescedCount.sum();
+        long lookups = saved + missCount.sum();
+        return lookups == 0 ? 0.0 : (double) saved / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("VerdictCache{size=%d/%d, ttlMs=%d, hits=%d, misses=%d, coalesced=%d, hitRatio=%.2f, evicted=%d, expired=%d}",
+                size(), maxEntries, getTtlMillis(), getHitCount(), getMissCount(), getCoalescedCount(),
+                getHitRatio(), getEvictionCount(), getExpiredCount());
+    }
+
+    /**
+     * Canonical form of a feature vector: every field the backend sees, doubles by bit pattern
+     */
+    static final class Key {
+        private final String protocolType;
+        private final String service;
+        private final String flag;
+        private final long[] values;
+        private final int hash;
+
+        private Key(String protocolType, String service, String flag, long[] values) {
+            this.protocolType = protocolType;
+            this.service = service;
+            this.flag = flag;
+            this.values = values;
+            this.hash = 31 * (31 * (31 * Arrays.hashCode(values)
+                    + Objects.hashCode(protocolType)) + Objects.hashCode(service)) + Objects.hashCode(flag);
+        }
+
+        static Key of(NetworkFeatures f) {
+            long[] values = {
+                    f.getDuration(), f.getSrcBytes(), f.getDstBytes(), f.getLand(), f.getWrongFragment(),
+                    f.getUrgent(), f.getHot(), f.getNumFailedLogins(), f.getLoggedIn(), f.getNumCompromised(),
+                    f.getRootShell(), f.getSuAttempted(), f.getNumRoot(),
+                    f.getCount(), f.getSrvCount(),
+                    bits(f.getSerrorRate()), bits(f.getSrvSerrorRate()), bits(f.getRerrorRate()),
+                    bits(f.getSrvRerrorRate()), bits(f.getSameSrvRate()), bits(f.getDiffSrvRate()),
+                    bits(f.getSrvDiffHostRate()),
+                    f.getDstHostCount(), f.getDstHostSrvCount(),
+                    bits(f.getDstHostSameSrvRate()), bits(f.getDstHostDiffSrvRate()),
+                    bits(f.getDstHostSameSrcPortRate()), bits(f.getDstHostSrvDiffHostRate()),
+                    bits(f.getDstHostSerrorRate()), bits(f.getDstHostSrvSerrorRate()),
+                    bits(f.getDstHostRerrorRate()), bits(f.getDstHostSrvRerrorRate())
+            };
+            return new Key(f.getProtocolType(), f.getService(), f.getFlag(), values);
+        }
+
+        // 0.0 and -0.0 serialize the same way
+        private static long bits(double value) {
+            return Double.doubleToLongBits(value == 0.0 ? 0.0 : value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return hash == other.hash
+                    && Arrays.equals(values, other.values)
+                    && Objects.equals(protocolType, other.protocolType)
+                    && Objects.equals(service, other.service)
+                    && Objects.equals(flag, other.flag);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.ids.backend;
+
+/**
+ * Encoding PredictionClient uses for request and response bodies
+ */
+public enum WireFormat {
+    /** {"features": {...}} / JSON result, always understood by the backend */
+    JSON,
+    /** Dictionary-coded categoricals + fixed-width numerics, packed float scores back (see BinaryFeatureCodec) */
+    BINARY;
+
+    public static WireFormat parse(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return JSON;
+        }
+        return valueOf(value.trim().toUpperCase());
+    }
+}
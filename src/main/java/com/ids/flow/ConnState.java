@@ -0,0 +1,99 @@
+package com.ids.flow;
+
+/**
+ * KDD / Bro connection states used for the "flag" feature.
+ *
+ * Derived from the history bits a FlowTable accumulates for each TCP connection.
+ */
+public enum ConnState {
+    /** Connection attempt seen, no reply */
+    S0,
+    /** Connection established, not terminated */
+    S1,
+    /** Normal establishment and termination */
+    SF,
+    /** Connection attempt rejected */
+    REJ,
+    /** Established, close attempt by originator seen (but no reply from responder) */
+    S2,
+    /** Established, close attempt by responder seen (but no reply from originator) */
+    S3,
+    /** Established, originator aborted (sent a RST) */
+    RSTO,
+    /** Established, responder aborted */
+    RSTR,
+    /** Originator sent a SYN followed by a RST, never saw a SYN-ACK from the responder */
+    RSTOS0,
+    /** Responder sent a SYN-ACK followed by a RST, never saw a SYN from the originator */
+    RSTRH,
+    /** Originator sent a SYN followed by a FIN, never saw a SYN-ACK from the responder */
+    SH,
+    /** Responder sent a SYN-ACK followed by a FIN, never saw a SYN from the originator */
+    SHR,
+    /** No SYN seen, just midstream traffic */
+    OTH;
+
+    // History bits
+    public static final int ORIG_SYN = 1;
+    public static final int RESP_SYN_ACK = 1 << 1;
+    public static final int ORIG_FIN = 1 << 2;
+    public static final int RESP_FIN = 1 << 3;
+    public static final int ORIG_RST = 1 << 4;
+    public static final int RESP_RST = 1 << 5;
+    public static final int ORIG_DATA = 1 << 6;
+    public static final int RESP_DATA = 1 << 7;
+
+    public static ConnState fromHistory(int history) {
+        boolean origSyn = (history & ORIG_SYN) != 0;
+        boolean respSynAck = (history & RESP_SYN_ACK) != 0;
+        boolean origFin = (history & ORIG_FIN) != 0;
+        boolean respFin = (history & RESP_FIN) != 0;
+        boolean origRst = (history & ORIG_RST) != 0;
+        boolean respRst = (history & RESP_RST) != 0;
+
+        if (origSyn && !respSynAck) {
+            if (respRst) return REJ;
+            if (origRst) return RSTOS0;
+            if (origFin) return SH;
+            return S0;
+        }
+        if (!origSyn && respSynAck) {
+            if (respRst) return RSTRH;
+            if (respFin) return SHR;
+            return OTH;
+        }
+        if (!origSyn) {
+            return OTH;
+        }
+
+        // Established (SYN + SYN-ACK)
+        if (origRst) return RSTO;
+        if (respRst) return RSTR;
+        if (origFin && respFin) return SF;
+        if (origFin) return S2;
+        if (respFin) return S3;
+        return S1;
+    }
+
+    /**
+     * @return true once the connection can't carry more data (both FINs or any RST)
+     */
+    public static boolean isTerminated(int history) {
+        return (history & (ORIG_RST | RESP_RST)) != 0
+                || (history & (ORIG_FIN | RESP_FIN)) == (ORIG_FIN | RESP_FIN);
+    }
+
+    /**
+     * SYN error states (used by serror_rate features)
+     */
+    public boolean isSynError() {
+        return this == S0 || this == S1 || this == S2 || this == S3;
+    }
+
+    /**
+     * REJ error state (used by rerror_rate features)
+     */
+    public boolean isRejError() {
+        return this == REJ;
+    }
+}
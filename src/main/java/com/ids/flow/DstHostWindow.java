@@ -0,0 +1,293 @@
+package com.ids.flow;
+
+import com.ids.model.NetworkFeatures;
+import com.ids.packet.PacketHeader;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * KDD "host-based traffic" features (dst_host_*): the last 100 connections to the same
+ * destination host, and the last 100 connections to the same service.
+ *
+ * Each host / service keeps a ring of its last connections plus counters that are updated
+ * as entries enter and leave the ring (per-service and per-source-port counts, SYN/REJ
+ * errors), so reading the features never rescans the ring.
+ *
+ * Memory stays bounded under scans touching millions of hosts: rings idle longer than
+ * idleMicros (no new connection or state change) are evicted, and at most maxKeys rings
+ * are kept per map (LRU, per lock stripe).
+ * Shared by all worker shards: host rings are striped by destination host and service rings
+ * by service, each stripe with its own lock, like TrafficWindow.
+ */
+public class DstHostWindow {
+    public static final int DEFAULT_CONNECTIONS = 100;
+    public static final int DEFAULT_MAX_HOSTS = 10_000;
+    public static final long DEFAULT_IDLE_MICROS = 60_000_000L;
+
+    // Lock stripes (power of two)
+    private static final int STRIPES = 32;
+
+    private final int connections;
+    private final int maxKeysPerStripe;
+    private final long idleMicros;
+
+    private final Stripe[] hostStripes = new Stripe[STRIPES];
+    private final Stripe[] serviceStripes = new Stripe[STRIPES];
+
+    // Global connection sequence: stored per flow (FlowTable hostSeq) to find its ring entries again
+    private final AtomicLong nextSeq = new AtomicLong(1);
+    private final LongAdder evictedCount = new LongAdder();
+
+    public DstHostWindow() {
+        this(DEFAULT_CONNECTIONS, DEFAULT_MAX_HOSTS, DEFAULT_IDLE_MICROS);
+    }
+
+    public DstHostWindow(int connections, int maxKeys, long idleMicros) {
+        this.connections = connections;
+        this.maxKeysPerStripe = Math.max(1, maxKeys / STRIPES);
+        this.idleMicros = idleMicros;
+        for (int i = 0; i < STRIPES; i++) {
+            hostStripes[i] = new Stripe();
+            serviceStripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Rings of the keys hashing to one stripe, guarded by the stripe itself
+     */
+    private final class Stripe {
+        private final LinkedHashMap<Integer, Ring> rings = new LinkedHashMap<Integer, Ring>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Ring> eldest) {
+                if (size() > maxKeysPerStripe) {
+                    evictedCount.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Add a tracked connection to its host and service rings (first packet), or update its
+     * error class once the state changes. Call after every FlowTable.update; like
+     * TrafficWindow.track it takes no lock when the class didn't change.
+     */
+    public void track(FlowTable flows, int slot) {
+        int errorClass = TrafficWindow.classOf(flows.getState(slot));
+        if (flows.getHostClass(slot) == errorClass) {
+            return;
+        }
+        int host = flows.getRespAddr(slot);
+        int service = serviceKey(flows, slot);
+        long now = flows.getLastSeen(slot);
+        long seq = flows.getHostSeq(slot);
+        Stripe hostStripe = hostStripes[TrafficWindow.spread(host) & (STRIPES - 1)];
+        Stripe serviceStripe = serviceStripes[TrafficWindow.spread(service) & (STRIPES - 1)];
+
+        if (seq == 0) {
+            // Both locks (always host first): each ring then gets its sequence numbers in increasing order
+            synchronized (hostStripe) {
+                synchronized (serviceStripe) {
+                    seq = nextSeq.getAndIncrement();
+                    flows.setHostSeq(slot, seq);
+                    ring(hostStripe.rings, host, true).add(seq, service, flows.getOrigPort(slot), errorClass, now);
+                    ring(serviceStripe.rings, service, false).add(seq, host, 0, errorClass, now);
+                    evictIdle(serviceStripe.rings, now);
+                }
+                evictIdle(hostStripe.rings, now);
+            }
+        } else {
+            synchronized (hostStripe) {
+                Ring byHost = hostStripe.rings.get(host);
+                if (byHost != null) byHost.reclassify(seq, errorClass, now);
+            }
+            synchronized (serviceStripe) {
+                Ring byService = serviceStripe.rings.get(service);
+                if (byService != null) byService.reclassify(seq, errorClass, now);
+            }
+        }
+        flows.setHostClass(slot, errorClass);
+    }
+
+    /**
+     * Fill the dst_host_* features for a tracked connection
+     */
+    public void fill(NetworkFeatures features, FlowTable flows, int slot) {
+        int host = flows.getRespAddr(slot);
+        int service = serviceKey(flows, slot);
+        int count, sameSrv, sameSrcPort, serror, rerror;
+        Stripe hostStripe = hostStripes[TrafficWindow.spread(host) & (STRIPES - 1)];
+        synchronized (hostStripe) {
+            Ring byHost = hostStripe.rings.get(host);
+            count = byHost != null ? byHost.size : 0;
+            sameSrv = byHost != null ? byHost.keyCounts.count(service) : 0;
+            sameSrcPort = byHost != null ? byHost.portCounts.count(flows.getOrigPort(slot)) : 0;
+            serror = byHost != null ? byHost.serror : 0;
+            rerror = byHost != null ? byHost.rerror : 0;
+        }
+        int srvCount, sameHost, srvSerror, srvRerror;
+        Stripe serviceStripe = serviceStripes[TrafficWindow.spread(service) & (STRIPES - 1)];
+        synchronized (serviceStripe) {
+            Ring byService = serviceStripe.rings.get(service);
+            srvCount = byService != null ? byService.size : 0;
+            sameHost = byService != null ? byService.keyCounts.count(host) : 0;
+            srvSerror = byService != null ? byService.serror : 0;
+            srvRerror = byService != null ? byService.rerror : 0;
+        }
+
+        features.setDstHostCount(count);
+        features.setDstHostSrvCount(srvCount);
+        features.setDstHostSameSrvRate(rate(sameSrv, count));
+        features.setDstHostDiffSrvRate(rate(count - sameSrv, count));
+        features.setDstHostSameSrcPortRate(rate(sameSrcPort, count));
+        features.setDstHostSrvDiffHostRate(rate(srvCount - sameHost, srvCount));
+        features.setDstHostSerrorRate(rate(serror, count));
+        features.setDstHostRerrorRate(rate(rerror, count));
+        features.setDstHostSrvSerrorRate(rate(srvSerror, srvCount));
+        features.setDstHostSrvRerrorRate(rate(srvRerror, srvCount));
+    }
+
+    public int getHostCount() { return count(hostStripes); }
+    public int getServiceCount() { return count(serviceStripes); }
+
+    /**
+     * @return Rings dropped because a map was full (idle evictions not included)
+     */
+    public long getEvictedCount() { return evictedCount.sum(); }
+
+    private static int count(Stripe[] stripes) {
+        int count = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                count += stripe.rings.size();
+            }
+        }
+        return count;
+    }
+
+    private static int serviceKey(FlowTable flows, int slot) {
+        int protocol = flows.getProtocol(slot);
+        boolean ports = protocol == PacketHeader.PROTO_TCP || protocol == PacketHeader.PROTO_UDP;
+        return TrafficWindow.serviceKey(protocol, ports ? flows.getRespPort(slot) : 0);
+    }
+
+    private static double rate(int part, int total) {
+        if (total <= 0) {
+            return 0.0;
+        }
+        return Math.round(part * 100.0 / total) / 100.0;
+    }
+
+    private Ring ring(Map<Integer, Ring> map, int key, boolean trackPorts) {
+        Ring ring = map.get(key);
+        if (ring == null) {
+            ring = new Ring(connections, trackPorts);
+            map.put(key, ring);
+        }
+        return ring;
+    }
+
+    /**
+     * Access order: rings at the head were touched the longest time ago
+     */
+    private void evictIdle(LinkedHashMap<Integer, Ring> map, long now) {
+        Iterator<Ring> it = map.values().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().lastSeen <= idleMicros) {
+                break;
+            }
+            it.remove();
+        }
+    }
+
+    /**
+     * Last N connections to one host (key = service) or one service (key = host)
+     */
+    private static final class Ring {
+        private final long[] seq;
+        private final int[] key;
+        private final int[] srcPort;
+        private final byte[] errorClass;
+        private final IntCounts keyCounts;
+        private final IntCounts portCounts;
+        private int start;
+        private int size;
+        private int serror;
+        private int rerror;
+        private long lastSeen;
+
+        Ring(int capacity, boolean trackPorts) {
+            seq = new long[capacity];
+            key = new int[capacity];
+            srcPort = new int[capacity];
+            errorClass = new byte[capacity];
+            keyCounts = new IntCounts(capacity);
+            portCounts = trackPorts ? new IntCounts(capacity) : null;
+        }
+
+        void add(long connectionSeq, int entryKey, int port, int cls, long now) {
+            int capacity = seq.length;
+            int i;
+            if (size == capacity) {
+                // Oldest connection leaves the ring
+                i = start;
+                keyCounts.decrement(key[i]);
+                if (portCounts != null) portCounts.decrement(srcPort[i]);
+                count(errorClass[i], -1);
+                start = (start + 1) % capacity;
+            } else {
+                i = (start + size) % capacity;
+                size++;
+            }
+            seq[i] = connectionSeq;
+            key[i] = entryKey;
+            srcPort[i] = port;
+            errorClass[i] = (byte) cls;
+            keyCounts.increment(entryKey);
+            if (portCounts != null) portCounts.increment(port);
+            count(cls, 1);
+            lastSeen = Math.max(lastSeen, now);
+        }
+
+        void reclassify(long connectionSeq, int cls, long now) {
+            lastSeen = Math.max(lastSeen, now);
+            int i = find(connectionSeq);
+            if (i < 0 || errorClass[i] == cls) {
+                return;
+            }
+            count(errorClass[i], -1);
+            errorClass[i] = (byte) cls;
+            count(cls, 1);
+        }
+
+        /**
+         * Sequence numbers grow along the ring: binary search in logical order
+         */
+        private int find(long connectionSeq) {
+            int lo = 0;
+            int hi = size - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int i = (start + mid) % seq.length;
+                if (seq[i] < connectionSeq) {
+                    lo = mid + 1;
+                } else if (seq[i] > connectionSeq) {
+                    hi = mid - 1;
+                } else {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void count(int cls, int delta) {
+            if (cls == TrafficWindow.CLASS_SYN_ERROR) serror += delta;
+            else if (cls == TrafficWindow.CLASS_REJ_ERROR) rerror += delta;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.ids.flow;
+
+/**
+ * When NetworkTrafficAnalyzer asks the backend for a prediction
+ */
+public enum EmissionMode {
+    /** One prediction per captured packet (features of the connection so far) */
+    PER_PACKET,
+    /** One prediction per connection, when it closes or times out (optionally an early one after K packets) */
+    PER_CONNECTION;
+
+    public static EmissionMode parse(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return PER_PACKET;
+        }
+        String mode = value.trim().toUpperCase().replace('-', '_');
+        if ("PACKET".equals(mode)) return PER_PACKET;
+        if ("CONNECTION".equals(mode)) return PER_CONNECTION;
+        return valueOf(mode);
+    }
+}
@@ -0,0 +1,393 @@
+package com.ids.flow;
+
+import com.ids.packet.PacketHeader;
+import com.ids.packet.RawPacketParser;
+
+/**
+ * Connection tracking table for one worker shard.
+ *
+ * Open addressing (linear probing) over parallel primitive arrays, so tracking a packet
+ * never allocates. Not thread-safe: each shard owns its own table.
+ *
+ * The originator is the side that sent the first packet (or the SYN side when the first
+ * packet seen is a SYN-ACK). Byte counts are payload bytes per direction, timestamps
+ * come from pcap so replayed traffic keeps its original timing.
+ */
+public class FlowTable {
+    // Idle timeouts (microseconds, pcap time)
+    public static final long TCP_HANDSHAKE_TIMEOUT = 30_000_000L;
+    public static final long TCP_ESTABLISHED_TIMEOUT = 300_000_000L;
+    public static final long TCP_CLOSED_TIMEOUT = 5_000_000L;
+    public static final long UDP_TIMEOUT = 60_000_000L;
+    public static final long OTHER_TIMEOUT = 60_000_000L;
+
+    // Emission marks (per-connection scoring)
+    public static final int EMITTED_EARLY = 1;
+    public static final int EMITTED_FINAL = 1 << 1;
+
+    private static final float MAX_LOAD = 0.75f;
+    private static final int SWEEP_STEP = 4;
+
+    private final int capacity;
+    private final int mask;
+    private final int shift;
+    private final int maxSize;
+
+    private final boolean[] used;
+    private final int[] hashes;
+    private final byte[] protocol;
+    private final int[] origAddr;
+    private final int[] respAddr;
+    private final int[] origPort;
+    private final int[] respPort;
+    private final long[] firstSeen;
+    private final long[] lastSeen;
+    private final long[] origBytes;
+    private final long[] respBytes;
+    private final int[] origPackets;
+    private final int[] respPackets;
+    private final int[] history;
+    private final int[] urgent;
+    private final byte[] emitted;
+    private final byte[] trafficClass;
+    private final byte[] hostClass;
+    private final long[] hostSeq;
+
+    private ExpiryListener expiryListener;
+    private int size;
+    private int sweepCursor;
+    private long overflowCount;
+    private long expiredCount;
+
+    /**
+     * @param capacity Number of slots (rounded up to a power of two); 75% can be occupied
+     */
+    public FlowTable(int capacity) {
+        int slots = Integer.highestOneBit(Math.max(16, capacity - 1)) << 1;
+        this.capacity = slots;
+        this.mask = slots - 1;
+        this.shift = 32 - Integer.numberOfTrailingZeros(slots);
+        this.maxSize = (int) (slots * MAX_LOAD);
+
+        used = new boolean[slots];
+        hashes = new int[slots];
+        protocol = new byte[slots];
+        origAddr = new int[slots];
+        respAddr = new int[slots];
+        origPort = new int[slots];
+        respPort = new int[slots];
+        firstSeen = new long[slots];
+        lastSeen = new long[slots];
+        origBytes = new long[slots];
+        respBytes = new long[slots];
+        origPackets = new int[slots];
+        respPackets = new int[slots];
+        history = new int[slots];
+        urgent = new int[slots];
+        emitted = new byte[slots];
+        trafficClass = new byte[slots];
+        hostClass = new byte[slots];
+        hostSeq = new long[slots];
+    }
+
+    /**
+     * Called for each connection right before it leaves the table (idle timeout or flush).
+     * The slot is still readable inside the callback.
+     */
+    public interface ExpiryListener {
+        void onExpired(FlowTable table, int slot);
+    }
+
+    public void setExpiryListener(ExpiryListener expiryListener) {
+        this.expiryListener = expiryListener;
+    }
+
+    /**
+     * Account one packet to its connection (creating it if needed)
+     *
+     * @return Slot of the connection, valid until the next update/expire call; -1 if the table is full
+     */
+    public int update(PacketHeader header) {
+        long now = header.getTimestampMicros();
+        sweep(now, SWEEP_STEP);
+
+        int hash = RawPacketParser.flowHash(header.getProtocol(),
+                header.getSrcAddr(), header.getSrcPort(), header.getDstAddr(), header.getDstPort());
+
+        int slot = find(hash, header);
+        boolean fromOrig;
+        if (slot >= 0) {
+            fromOrig = origAddr[slot] == header.getSrcAddr() && origPort[slot] == header.getSrcPort();
+        } else {
+            if (size >= maxSize) {
+                sweep(now, capacity);
+                if (size >= maxSize) {
+                    overflowCount++;
+                    return -1;
+                }
+            }
+            slot = insert(hash, header, now);
+            fromOrig = origAddr[slot] == header.getSrcAddr() && origPort[slot] == header.getSrcPort();
+        }
+
+        lastSeen[slot] = Math.max(lastSeen[slot], now);
+        if (header.hasFlag(PacketHeader.TCP_URG)) {
+            urgent[slot]++;
+        }
+
+        int payload = header.getPayloadLength();
+        int bits = 0;
+        if (fromOrig) {
+            origPackets[slot]++;
+            origBytes[slot] += payload;
+            if (payload > 0) bits |= ConnState.ORIG_DATA;
+        } else {
+            respPackets[slot]++;
+            respBytes[slot] += payload;
+            if (payload > 0) bits |= ConnState.RESP_DATA;
+        }
+
+        if (header.isTcp()) {
+            boolean syn = header.hasFlag(PacketHeader.TCP_SYN);
+            boolean ack = header.hasFlag(PacketHeader.TCP_ACK);
+            if (fromOrig) {
+                if (syn && !ack) bits |= ConnState.ORIG_SYN;
+                if (header.hasFlag(PacketHeader.TCP_FIN)) bits |= ConnState.ORIG_FIN;
+                if (header.hasFlag(PacketHeader.TCP_RST)) bits |= ConnState.ORIG_RST;
+            } else {
+                if (syn && ack) bits |= ConnState.RESP_SYN_ACK;
+                if (header.hasFlag(PacketHeader.TCP_FIN)) bits |= ConnState.RESP_FIN;
+                if (header.hasFlag(PacketHeader.TCP_RST)) bits |= ConnState.RESP_RST;
+            }
+        }
+        history[slot] |= bits;
+
+        return slot;
+    }
+
+    private int find(int hash, PacketHeader header) {
+        int proto = header.getProtocol();
+        int srcAddr = header.getSrcAddr();
+        int dstAddr = header.getDstAddr();
+        int srcPort = header.getSrcPort();
+        int dstPort = header.getDstPort();
+
+        for (int i = index(hash); used[i]; i = (i + 1) & mask) {
+            if (hashes[i] != hash || (protocol[i] & 0xFF) != proto) {
+                continue;
+            }
+            if ((origAddr[i] == srcAddr && origPort[i] == srcPort && respAddr[i] == dstAddr && respPort[i] == dstPort)
+                    || (origAddr[i] == dstAddr && origPort[i] == dstPort && respAddr[i] == srcAddr && respPort[i] == srcPort)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int insert(int hash, PacketHeader header, long now) {
+        int slot = index(hash);
+        while (used[slot]) {
+            slot = (slot + 1) & mask;
+        }
+
+        // A SYN-ACK as first packet means we missed the SYN: the sender is the responder
+        boolean reversed = header.isTcp()
+                && header.hasFlag(PacketHeader.TCP_SYN) && header.hasFlag(PacketHeader.TCP_ACK);
+
+        used[slot] = true;
+        hashes[slot] = hash;
+        protocol[slot] = (byte) header.getProtocol();
+        origAddr[slot] = reversed ? header.getDstAddr() : header.getSrcAddr();
+        origPort[slot] = reversed ? header.getDstPort() : header.getSrcPort();
+        respAddr[slot] = reversed ? header.getSrcAddr() : header.getDstAddr();
+        respPort[slot] = reversed ? header.getSrcPort() : header.getDstPort();
+        firstSeen[slot] = now;
+        lastSeen[slot] = now;
+        origBytes[slot] = 0;
+        respBytes[slot] = 0;
+        origPackets[slot] = 0;
+        respPackets[slot] = 0;
+        history[slot] = 0;
+        urgent[slot] = 0;
+        emitted[slot] = 0;
+        trafficClass[slot] = -1;
+        hostClass[slot] = -1;
+        hostSeq[slot] = 0;
+        size++;
+        return slot;
+    }
+
+    /**
+     * Multiply-shift on the top bits: the low bits of the flow hash already picked the shard
+     */
+    private int index(int hash) {
+        return (hash * 0x9E3779B9) >>> shift;
+    }
+
+    /**
+     * Drop every idle connection (periodic tick when no packets arrive to drive the sweep)
+     *
+     * @param now Current time in microseconds
+     */
+    public void expire(long now) {
+        sweep(now, capacity);
+    }
+
+    /**
+     * Hand every remaining connection to the expiry listener and empty the table
+     * (end of a replay file)
+     */
+    public void flush() {
+        for (int slot = 0; slot < capacity && size > 0; slot++) {
+            while (used[slot]) {
+                if (expiryListener != null) {
+                    expiryListener.onExpired(this, slot);
+                }
+                remove(slot);
+            }
+        }
+    }
+
+    /**
+     * Check up to maxSlots slots from the sweep cursor and drop idle connections
+     */
+    private void sweep(long now, int maxSlots) {
+        for (int n = 0; n < maxSlots && size > 0; n++) {
+            int slot = sweepCursor;
+            if (used[slot] && isExpired(slot, now)) {
+                if (expiryListener != null) {
+                    expiryListener.onExpired(this, slot);
+                }
+                remove(slot);
+                expiredCount++;
+                // remove() may shift another entry into this slot: check it again
+            } else {
+                sweepCursor = (sweepCursor + 1) & mask;
+            }
+        }
+    }
+
+    public boolean isExpired(int slot, long now) {
+        return now - lastSeen[slot] > timeout(slot);
+    }
+
+    private long timeout(int slot) {
+        int proto = protocol[slot] & 0xFF;
+        if (proto == PacketHeader.PROTO_TCP) {
+            int h = history[slot];
+            if (ConnState.isTerminated(h)) return TCP_CLOSED_TIMEOUT;
+            if ((h & (ConnState.ORIG_SYN | ConnState.RESP_SYN_ACK)) == (ConnState.ORIG_SYN | ConnState.RESP_SYN_ACK)) {
+                return TCP_ESTABLISHED_TIMEOUT;
+            }
+            return TCP_HANDSHAKE_TIMEOUT;
+        }
+        if (proto == PacketHeader.PROTO_UDP) return UDP_TIMEOUT;
+        return OTHER_TIMEOUT;
+    }
+
+    /**
+     * Backward-shift deletion keeps probe chains intact without tombstones
+     */
+    public void remove(int slot) {
+        int hole = slot;
+        int i = (slot + 1) & mask;
+        while (used[i]) {
+            int home = index(hashes[i]);
+            // Entry at i may move into the hole if its home is not in (hole, i]
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                moveSlot(i, hole);
+                hole = i;
+            }
+            i = (i + 1) & mask;
+        }
+        used[hole] = false;
+        size--;
+    }
+
+    private void moveSlot(int from, int to) {
+        used[to] = true;
+        hashes[to] = hashes[from];
+        protocol[to] = protocol[from];
+        origAddr[to] = origAddr[from];
+        respAddr[to] = respAddr[from];
+        origPort[to] = origPort[from];
+        respPort[to] = respPort[from];
+        firstSeen[to] = firstSeen[from];
+        lastSeen[to] = lastSeen[from];
+        origBytes[to] = origBytes[from];
+        respBytes[to] = respBytes[from];
+        origPackets[to] = origPackets[from];
+        respPackets[to] = respPackets[from];
+        history[to] = history[from];
+        urgent[to] = urgent[from];
+        emitted[to] = emitted[from];
+        trafficClass[to] = trafficClass[from];
+        hostClass[to] = hostClass[from];
+        hostSeq[to] = hostSeq[from];
+    }
+
+    /**
+     * @return KDD connection state ("flag"); SF for connectionless protocols as in KDD
+     */
+    public ConnState getState(int slot) {
+        if ((protocol[slot] & 0xFF) != PacketHeader.PROTO_TCP) {
+            return ConnState.SF;
+        }
+        return ConnState.fromHistory(history[slot]);
+    }
+
+    public boolean isTerminated(int slot) {
+        return (protocol[slot] & 0xFF) == PacketHeader.PROTO_TCP && ConnState.isTerminated(history[slot]);
+    }
+
+    /**
+     * @return Duration in whole seconds, as in KDD
+     */
+    public int getDurationSeconds(int slot) {
+        return (int) ((lastSeen[slot] - firstSeen[slot]) / 1_000_000L);
+    }
+
+    public int getProtocol(int slot) { return protocol[slot] & 0xFF; }
+    public int getOrigAddr(int slot) { return origAddr[slot]; }
+    public int getRespAddr(int slot) { return respAddr[slot]; }
+    public int getOrigPort(int slot) { return origPort[slot]; }
+    public int getRespPort(int slot) { return respPort[slot]; }
+    public long getFirstSeen(int slot) { return firstSeen[slot]; }
+    public long getLastSeen(int slot) { return lastSeen[slot]; }
+    public long getOrigBytes(int slot) { return origBytes[slot]; }
+    public long getRespBytes(int slot) { return respBytes[slot]; }
+    public int getOrigPackets(int slot) { return origPackets[slot]; }
+    public int getRespPackets(int slot) { return respPackets[slot]; }
+    public int getPackets(int slot) { return origPackets[slot] + respPackets[slot]; }
+    public int getUrgent(int slot) { return urgent[slot]; }
+
+    public boolean isEmitted(int slot, int mark) { return (emitted[slot] & mark) != 0; }
+    public void markEmitted(int slot, int mark) { emitted[slot] |= (byte) mark; }
+
+    /**
+     * @return Error class the connection was last counted with in the TrafficWindow, -1 if not counted yet
+     */
+    public int getTrafficClass(int slot) { return trafficClass[slot]; }
+    public void setTrafficClass(int slot, int errorClass) { trafficClass[slot] = (byte) errorClass; }
+
+    /**
+     * @return Error class the connection was last counted with in the DstHostWindow, -1 if not counted yet
+     */
+    public int getHostClass(int slot) { return hostClass[slot]; }
+    public void setHostClass(int slot, int errorClass) { hostClass[slot] = (byte) errorClass; }
+
+    /**
+     * @return Sequence number the connection got in the DstHostWindow, 0 if not recorded yet
+     */
+    public long getHostSeq(int slot) { return hostSeq[slot]; }
+    public void setHostSeq(int slot, long seq) { hostSeq[slot] = seq; }
+
+    public int size() { return size; }
+    public int capacity() { return capacity; }
+
+    /**
+     * @return Packets that could not be tracked because the table was full
+     */
+    public long getOverflowCount() { return overflowCount; }
+    public long getExpiredCount() { return expiredCount; }
+}
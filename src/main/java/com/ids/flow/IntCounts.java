@@ -0,0 +1,70 @@
+package com.ids.flow;
+
+/**
+ * Small int -> count multiset (open addressing, no boxing) for the keys of one bounded ring.
+ * Capacity must stay above the ring length; entries are removed when their count drops to 0.
+ */
+final class IntCounts {
+    private final int[] keys;
+    private final int[] counts;
+    private final int mask;
+
+    IntCounts(int maxDistinct) {
+        int slots = Integer.highestOneBit(Math.max(4, maxDistinct * 2 - 1)) << 1;
+        keys = new int[slots];
+        counts = new int[slots];
+        mask = slots - 1;
+    }
+
+    int count(int key) {
+        for (int i = index(key); counts[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return counts[i];
+            }
+        }
+        return 0;
+    }
+
+    void increment(int key) {
+        int i = index(key);
+        while (counts[i] != 0 && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        counts[i]++;
+    }
+
+    void decrement(int key) {
+        int i = index(key);
+        while (counts[i] != 0 && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        if (counts[i] == 0) {
+            return;
+        }
+        if (--counts[i] == 0) {
+            removeAt(i);
+        }
+    }
+
+    /**
+     * Backward-shift deletion (same scheme as FlowTable)
+     */
+    private void removeAt(int slot) {
+        int hole = slot;
+        for (int i = (slot + 1) & mask; counts[i] != 0; i = (i + 1) & mask) {
+            int home = index(keys[i]);
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                counts[hole] = counts[i];
+                hole = i;
+            }
+        }
+        counts[hole] = 0;
+    }
+
+    private int index(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,335 @@
+package com.ids.flow;
+
+import com.ids.model.NetworkFeatures;
+import com.ids.packet.PacketHeader;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * KDD "time-based traffic" features: connections seen in the last 2 seconds to the same
+ * destination host / same service as the current one.
+ *
+ * Each key (host, service, host+service) keeps a ring of time buckets with running totals,
+ * so recording a connection and reading the features are O(1) amortized: buckets that fall
+ * out of the window are subtracted as the ring advances, history is never rescanned.
+ *
+ * Shared by all worker shards (one destination host is spread over many flows). The keys are
+ * split over lock stripes: hosts and host/service pairs by destination host, services by service,
+ * so shards only wait for each other when they touch the same stripe.
+ */
+public class TrafficWindow {
+    public static final long DEFAULT_WINDOW_MICROS = 2_000_000L;
+
+    // Error class of a connection (serror_rate / rerror_rate)
+    public static final int CLASS_NORMAL = 0;
+    public static final int CLASS_SYN_ERROR = 1;
+    public static final int CLASS_REJ_ERROR = 2;
+
+    private static final int BUCKETS = 20;
+    // Lock stripes (power of two)
+    private static final int STRIPES = 32;
+
+    private final long bucketMicros;
+
+    private final HostStripe[] hostStripes = new HostStripe[STRIPES];
+    private final ServiceStripe[] serviceStripes = new ServiceStripe[STRIPES];
+
+    public TrafficWindow() {
+        this(DEFAULT_WINDOW_MICROS);
+    }
+
+    public TrafficWindow(long windowMicros) {
+        this.bucketMicros = Math.max(1, windowMicros / BUCKETS);
+        for (int i = 0; i < STRIPES; i++) {
+            hostStripes[i] = new HostStripe();
+            serviceStripes[i] = new ServiceStripe();
+        }
+    }
+
+    /**
+     * @return Error class for a KDD connection state
+     */
+    public static int classOf(ConnState state) {
+        if (state.isSynError()) return CLASS_SYN_ERROR;
+        if (state.isRejError()) return CLASS_REJ_ERROR;
+        return CLASS_NORMAL;
+    }
+
+    /**
+     * Service key: protocol + responder port (port 0 for ICMP and other protocols)
+     */
+    public static int serviceKey(int protocol, int port) {
+        return (protocol << 16) | (port & 0xFFFF);
+    }
+
+    /**
+     * Count a tracked connection (first packet) or move it to its new error class (state change).
+     * Call after every FlowTable.update; costs nothing when the class didn't change.
+     */
+    public void track(FlowTable flows, int slot) {
+        int errorClass = classOf(flows.getState(slot));
+        int previous = flows.getTrafficClass(slot);
+        if (previous == errorClass) {
+            return;
+        }
+        int host = flows.getRespAddr(slot);
+        int service = serviceKey(flows, slot);
+        if (previous < 0) {
+            record(host, service, flows.getFirstSeen(slot), errorClass);
+        } else {
+            reclassify(host, service, flows.getFirstSeen(slot), previous, errorClass);
+        }
+        flows.setTrafficClass(slot, errorClass);
+    }
+
+    /**
+     * Fill the traffic features for a tracked connection, as of its last packet
+     */
+    public void fill(NetworkFeatures features, FlowTable flows, int slot) {
+        fill(features, flows.getRespAddr(slot), serviceKey(flows, slot), flows.getLastSeen(slot));
+    }
+
+    private static int serviceKey(FlowTable flows, int slot) {
+        int protocol = flows.getProtocol(slot);
+        boolean ports = protocol == PacketHeader.PROTO_TCP || protocol == PacketHeader.PROTO_UDP;
+        return serviceKey(protocol, ports ? flows.getRespPort(slot) : 0);
+    }
+
+    /**
+     * Count a new connection once, at its start time
+     */
+    public void record(int host, int service, long startMicros, int errorClass) {
+        long bucket = startMicros / bucketMicros;
+        HostStripe byHost = hostStripe(host);
+        synchronized (byHost) {
+            byHost.latestBucket = Math.max(byHost.latestBucket, bucket);
+            counter(byHost.hosts, host).add(bucket, errorClass, 1);
+            counter(byHost.pairs, pairKey(host, service)).add(bucket, errorClass, 1);
+            evictStale(byHost.hosts, byHost.latestBucket - BUCKETS);
+            evictStale(byHost.pairs, byHost.latestBucket - BUCKETS);
+        }
+        ServiceStripe byService = serviceStripe(service);
+        synchronized (byService) {
+            byService.latestBucket = Math.max(byService.latestBucket, bucket);
+            counter(byService.services, service).add(bucket, errorClass, 1);
+            evictStale(byService.services, byService.latestBucket - BUCKETS);
+        }
+    }
+
+    /**
+     * Move a recorded connection to another error class once its state changes
+     * (e.g. S0 -> SF after the SYN-ACK). No-op if its bucket already left the window.
+     */
+    public void reclassify(int host, int service, long startMicros, int oldClass, int newClass) {
+        if (oldClass == newClass) {
+            return;
+        }
+        long bucket = startMicros / bucketMicros;
+        HostStripe byHost = hostStripe(host);
+        synchronized (byHost) {
+            reclassify(byHost.hosts.get(host), bucket, oldClass, newClass);
+            reclassify(byHost.pairs.get(pairKey(host, service)), bucket, oldClass, newClass);
+        }
+        ServiceStripe byService = serviceStripe(service);
+        synchronized (byService) {
+            reclassify(byService.services.get(service), bucket, oldClass, newClass);
+        }
+    }
+
+    private static void reclassify(Counter counter, long bucket, int oldClass, int newClass) {
+        if (counter != null && counter.inWindow(bucket)) {
+            counter.add(bucket, oldClass, -1);
+            counter.add(bucket, newClass, 1);
+        }
+    }
+
+    /**
+     * Fill count, srv_count and the rate features for a connection to host/service at time now
+     */
+    public void fill(NetworkFeatures features, int host, int service, long nowMicros) {
+        long bucket = nowMicros / bucketMicros;
+        int count, serror, rerror, sameSrv;
+        HostStripe hostStripe = hostStripe(host);
+        synchronized (hostStripe) {
+            Counter byHost = current(hostStripe.hosts.get(host), bucket);
+            Counter byPair = current(hostStripe.pairs.get(pairKey(host, service)), bucket);
+            count = byHost != null ? byHost.total : 0;
+            serror = byHost != null ? byHost.totalSerror : 0;
+            rerror = byHost != null ? byHost.totalRerror : 0;
+            sameSrv = byPair != null ? byPair.total : 0;
+        }
+        int srvCount, srvSerror, srvRerror;
+        ServiceStripe serviceStripe = serviceStripe(service);
+        synchronized (serviceStripe) {
+            Counter byService = current(serviceStripe.services.get(service), bucket);
+            srvCount = byService != null ? byService.total : 0;
+            srvSerror = byService != null ? byService.totalSerror : 0;
+            srvRerror = byService != null ? byService.totalRerror : 0;
+        }
+
+        features.setCount(count);
+        features.setSrvCount(srvCount);
+        features.setSerrorRate(rate(serror, count));
+        features.setRerrorRate(rate(rerror, count));
+        features.setSameSrvRate(rate(sameSrv, count));
+        features.setDiffSrvRate(rate(count - sameSrv, count));
+        features.setSrvSerrorRate(rate(srvSerror, srvCount));
+        features.setSrvRerrorRate(rate(srvRerror, srvCount));
+        // Pairs and services are read under different locks: keep the difference non-negative
+        features.setSrvDiffHostRate(rate(Math.max(0, srvCount - sameSrv), srvCount));
+    }
+
+    /**
+     * @return Keys currently tracked (hosts + services + host/service pairs)
+     */
+    public int size() {
+        int size = 0;
+        for (HostStripe stripe : hostStripes) {
+            synchronized (stripe) {
+                size += stripe.hosts.size() + stripe.pairs.size();
+            }
+        }
+        for (ServiceStripe stripe : serviceStripes) {
+            synchronized (stripe) {
+                size += stripe.services.size();
+            }
+        }
+        return size;
+    }
+
+    private HostStripe hostStripe(int host) {
+        return hostStripes[spread(host) & (STRIPES - 1)];
+    }
+
+    private ServiceStripe serviceStripe(int service) {
+        return serviceStripes[spread(service) & (STRIPES - 1)];
+    }
+
+    /**
+     * Addresses of one subnet differ in the low bits only, ports in the low 16: mix before masking
+     */
+    static int spread(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static double rate(int part, int total) {
+        if (total <= 0) {
+            return 0.0;
+        }
+        return Math.round(part * 100.0 / total) / 100.0; // 2 decimals as in KDD
+    }
+
+    private static long pairKey(int host, int service) {
+        return ((long) host << 32) | (service & 0xFFFFFFFFL);
+    }
+
+    private static <K> Counter counter(Map<K, Counter> map, K key) {
+        Counter counter = map.get(key);
+        if (counter == null) {
+            counter = new Counter();
+            map.put(key, counter);
+        }
+        return counter;
+    }
+
+    private static Counter current(Counter counter, long bucket) {
+        if (counter != null) {
+            counter.advance(bucket);
+        }
+        return counter;
+    }
+
+    /**
+     * Drop keys untouched for a whole window: their totals are zero anyway
+     */
+    private static <K> void evictStale(LinkedHashMap<K, Counter> map, long oldest) {
+        Iterator<Counter> it = map.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().head > oldest) {
+                break;
+            }
+            it.remove();
+        }
+    }
+
+    /**
+     * Hosts and host/service pairs of the hosts hashing to one stripe, guarded by the stripe itself.
+     * Access order: the eldest entry is the one idle the longest, so stale keys are evicted from the head
+     */
+    private static final class HostStripe {
+        private final LinkedHashMap<Integer, Counter> hosts = new LinkedHashMap<>(64, 0.75f, true);
+        private final LinkedHashMap<Long, Counter> pairs = new LinkedHashMap<>(64, 0.75f, true);
+        private long latestBucket = Long.MIN_VALUE;
+    }
+
+    /**
+     * Services hashing to one stripe, guarded by the stripe itself
+     */
+    private static final class ServiceStripe {
+        private final LinkedHashMap<Integer, Counter> services = new LinkedHashMap<>(16, 0.75f, true);
+        private long latestBucket = Long.MIN_VALUE;
+    }
+
+    /**
+     * Ring of BUCKETS buckets ending at head, with running totals over the ring
+     */
+    private static final class Counter {
+        private final int[] count = new int[BUCKETS];
+        private final int[] serror = new int[BUCKETS];
+        private final int[] rerror = new int[BUCKETS];
+        private long head = Long.MIN_VALUE;
+        private int total;
+        private int totalSerror;
+        private int totalRerror;
+
+        /**
+         * Slide the ring forward so head == bucket, subtracting buckets that fall out
+         */
+        void advance(long bucket) {
+            if (bucket <= head) {
+                return;
+            }
+            if (head == Long.MIN_VALUE || bucket - head >= BUCKETS) {
+                Arrays.fill(count, 0);
+                Arrays.fill(serror, 0);
+                Arrays.fill(rerror, 0);
+                total = totalSerror = totalRerror = 0;
+            } else {
+                for (long b = head + 1; b <= bucket; b++) {
+                    int i = (int) Math.floorMod(b, (long) BUCKETS);
+                    total -= count[i];
+                    totalSerror -= serror[i];
+                    totalRerror -= rerror[i];
+                    count[i] = serror[i] = rerror[i] = 0;
+                }
+            }
+            head = bucket;
+        }
+
+        boolean inWindow(long bucket) {
+            return bucket <= head && bucket > head - BUCKETS;
+        }
+
+        void add(long bucket, int errorClass, int delta) {
+            advance(bucket);
+            // Slightly late timestamps (other shards) land in their own bucket if still in the window
+            if (!inWindow(bucket)) {
+                return;
+            }
+            int i = (int) Math.floorMod(bucket, (long) BUCKETS);
+            count[i] += delta;
+            total += delta;
+            if (errorClass == CLASS_SYN_ERROR) {
+                serror[i] += delta;
+                totalSerror += delta;
+            } else if (errorClass == CLASS_REJ_ERROR) {
+                rerror[i] += delta;
+                totalRerror += delta;
+            }
+        }
+    }
+}
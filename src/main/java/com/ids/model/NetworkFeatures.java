@@ -51,6 +51,65 @@ public class NetworkFeatures {
     @JsonProperty("num_root")
     private int numRoot; // number of root accesses
 
+    // Time-based traffic features (connections in the past 2 seconds)
+    @JsonProperty("count")
+    private int count; // connections to the same host
+
+    @JsonProperty("srv_count")
+    private int srvCount; // connections to the same service
+
+    @JsonProperty("serror_rate")
+    private double serrorRate;
+
+    @JsonProperty("srv_serror_rate")
+    private double srvSerrorRate;
+
+    @JsonProperty("rerror_rate")
+    private double rerrorRate;
+
+    @JsonProperty("srv_rerror_rate")
+    private double srvRerrorRate;
+
+    @JsonProperty("same_srv_rate")
+    private double sameSrvRate;
+
+    @JsonProperty("diff_srv_rate")
+    private double diffSrvRate;
+
+    @JsonProperty("srv_diff_host_rate")
+    private double srvDiffHostRate;
+
+    // Host-based traffic features (last 100 connections to the same host / service)
+    @JsonProperty("dst_host_count")
+    private int dstHostCount; // connections to the same host (last 100)
+
+    @JsonProperty("dst_host_srv_count")
+    private int dstHostSrvCount; // connections to the same service (last 100)
+
+    @JsonProperty("dst_host_same_srv_rate")
+    private double dstHostSameSrvRate;
+
+    @JsonProperty("dst_host_diff_srv_rate")
+    private double dstHostDiffSrvRate;
+
+    @JsonProperty("dst_host_same_src_port_rate")
+    private double dstHostSameSrcPortRate;
+
+    @JsonProperty("dst_host_srv_diff_host_rate")
+    private double dstHostSrvDiffHostRate;
+
+    @JsonProperty("dst_host_serror_rate")
+    private double dstHostSerrorRate;
+
+    @JsonProperty("dst_host_srv_serror_rate")
+    private double dstHostSrvSerrorRate;
+
+    @JsonProperty("dst_host_rerror_rate")
+    private double dstHostRerrorRate;
+
+    @JsonProperty("dst_host_srv_rerror_rate")
+    private double dstHostSrvRerrorRate;
+
     // Constructor
     public NetworkFeatures() {}
 
@@ -125,6 +184,63 @@ public class NetworkFeatures {
     public int getNumRoot() { return numRoot; }
     public void setNumRoot(int numRoot) { this.numRoot = numRoot; }
 
+    public int getCount() { return count; }
+    public void setCount(int count) { this.count = count; }
+
+    public int getSrvCount() { return srvCount; }
+    public void setSrvCount(int srvCount) { this.srvCount = srvCount; }
+
+    public double getSerrorRate() { return serrorRate; }
+    public void setSerrorRate(double serrorRate) { this.serrorRate = serrorRate; }
+
+    public double getSrvSerrorRate() { return srvSerrorRate; }
+    public void setSrvSerrorRate(double srvSerrorRate) { this.srvSerrorRate = srvSerrorRate; }
+
+    public double getRerrorRate() { return rerrorRate; }
+    public void setRerrorRate(double rerrorRate) { this.rerrorRate = rerrorRate; }
+
+    public double getSrvRerrorRate() { return srvRerrorRate; }
+    public void setSrvRerrorRate(double srvRerrorRate) { this.srvRerrorRate = srvRerrorRate; }
+
+    public double getSameSrvRate() { return sameSrvRate; }
+    public void setSameSrvRate(double sameSrvRate) { this.sameSrvRate = sameSrvRate; }
+
+    public double getDiffSrvRate() { return diffSrvRate; }
+    public void setDiffSrvRate(double diffSrvRate) { this.diffSrvRate = diffSrvRate; }
+
+    public double getSrvDiffHostRate() { return srvDiffHostRate; }
+    public void setSrvDiffHostRate(double srvDiffHostRate) { this.srvDiffHostRate = srvDiffHostRate; }
+
+    public int getDstHostCount() { return dstHostCount; }
+    public void setDstHostCount(int dstHostCount) { this.dstHostCount = dstHostCount; }
+
+    public int getDstHostSrvCount() { return dstHostSrvCount; }
+    public void setDstHostSrvCount(int dstHostSrvCount) { this.dstHostSrvCount = dstHostSrvCount; }
+
+    public double getDstHostSameSrvRate() { return dstHostSameSrvRate; }
+    public void setDstHostSameSrvRate(double dstHostSameSrvRate) { this.dstHostSameSrvRate = dstHostSameSrvRate; }
+
+    public double getDstHostDiffSrvRate() { return dstHostDiffSrvRate; }
+    public void setDstHostDiffSrvRate(double dstHostDiffSrvRate) { this.dstHostDiffSrvRate = dstHostDiffSrvRate; }
+
+    public double getDstHostSameSrcPortRate() { return dstHostSameSrcPortRate; }
+    public void setDstHostSameSrcPortRate(double dstHostSameSrcPortRate) { this.dstHostSameSrcPortRate = dstHostSameSrcPortRate; }
+
+    public double getDstHostSrvDiffHostRate() { return dstHostSrvDiffHostRate; }
+    public void setDstHostSrvDiffHostRate(double dstHostSrvDiffHostRate) { this.dstHostSrvDiffHostRate = dstHostSrvDiffHostRate; }
+
+    public double getDstHostSerrorRate() { return dstHostSerrorRate; }
+    public void setDstHostSerrorRate(double dstHostSerrorRate) { this.dstHostSerrorRate = dstHostSerrorRate; }
+
+    public double getDstHostSrvSerrorRate() { return dstHostSrvSerrorRate; }
+    public void setDstHostSrvSerrorRate(double dstHostSrvSerrorRate) { this.dstHostSrvSerrorRate = dstHostSrvSerrorRate; }
+
+    public double getDstHostRerrorRate() { return dstHostRerrorRate; }
+    public void setDstHostRerrorRate(double dstHostRerrorRate) { this.dstHostRerrorRate = dstHostRerrorRate; }
+
+    public double getDstHostSrvRerrorRate() { return dstHostSrvRerrorRate; }
+    public void setDstHostSrvRerrorRate(double dstHostSrvRerrorRate) { this.dstHostSrvRerrorRate = dstHostSrvRerrorRate; }
+
     @Override
     public String toString() {
         return "NetworkFeatures{" +
@@ -135,6 +251,10 @@ public class NetworkFeatures {
                 ", srcBytes=" + srcBytes +
                 ", dstBytes=" + dstBytes +
                 ", land=" + land +
+                ", count=" + count +
+                ", srvCount=" + srvCount +
+                ", dstHostCount=" + dstHostCount +
+                ", dstHostSrvCount=" + dstHostSrvCount +
                 '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,135 @@
+package com.ids.packet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Builds the BPF expression pushed down to the kernel via PcapHandle.setFilter.
+ *
+ * The expression always keeps only IPv4, untagged or inside one 802.1Q tag (processPacket
+ * drops everything else anyway), and always excludes the analyzer's own traffic to the
+ * prediction backend, so a prediction request never produces more packets to predict.
+ */
+public class CaptureFilter {
+    private static final Logger logger = LoggerFactory.getLogger(CaptureFilter.class);
+
+    // Without the vlan branch, 802.1Q-tagged frames fail "ip" on their outer ethertype
+    public static final String BASE_EXPRESSION = "(ip or (vlan and ip))";
+
+    private final List<String> userExpressions;
+    private final Set<String> backendHosts;
+    private final int backendPort;
+
+    private CaptureFilter(List<String> userExpressions, Set<String> backendHosts, int backendPort) {
+        this.userExpressions = userExpressions;
+        this.backendHosts = backendHosts;
+        this.backendPort = backendPort;
+    }
+
+    /**
+     * @param backendUrl      URL của prediction backend (sẽ bị loại khỏi capture)
+     * @param userExpressions Các BPF expression bổ sung (AND với nhau), có thể rỗng
+     */
+    public static CaptureFilter forBackend(String backendUrl, String... userExpressions) {
+        List<String> expressions = new ArrayList<>();
+        if (userExpressions != null) {
+            for (String expression : userExpressions) {
+                if (expression != null && !expression.trim().isEmpty()) {
+                    expressions.add(expression.trim());
+                }
+            }
+        }
+
+        URI uri = URI.create(backendUrl);
+        String host = uri.getHost();
+        int port = uri.getPort();
+        if (port < 0) {
+            port = "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+        }
+
+        return new CaptureFilter(expressions, resolveIpV4(host), port);
+    }
+
+    /**
+     * Resolve backend host thành các địa chỉ IPv4 (BPF "host" không match hostname lúc runtime)
+     */
+    private static Set<String> resolveIpV4(String host) {
+        Set<String> addresses = new LinkedHashSet<>();
+        if (host == null) {
+            return addresses;
+        }
+        try {
+            for (InetAddress address : InetAddress.getAllByName(host)) {
+                if (address instanceof Inet4Address) {
+                    addresses.add(address.getHostAddress());
+                }
+            }
+        } catch (UnknownHostException e) {
+            logger.warn("Cannot resolve backend host {}: {}", host, e.getMessage());
+        }
+        if (addresses.isEmpty()) {
+            // Let pcap_compile resolve the name itself
+            addresses.add(host);
+        }
+        return addresses;
+    }
+
+    /**
+     * Generated clause that drops our own backend traffic (both directions)
+     */
+    public String selfExclusionClause() {
+        StringBuilder hosts = new StringBuilder();
+        for (String host : backendHosts) {
+            if (hosts.length() > 0) hosts.append(" or ");
+            hosts.append("host ").append(host);
+        }
+        if (hosts.length() == 0) {
+            return "not (tcp port " + backendPort + ")";
+        }
+        return "not ((" + hosts + ") and tcp port " + backendPort + ")";
+    }
+
+    /**
+     * Full expression: IPv4 AND (user expressions...) AND NOT (backend host:port)
+     */
+    public String toExpression() {
+        StringBuilder expression = new StringBuilder(BASE_EXPRESSION);
+        for (String userExpression : userExpressions) {
+            expression.append(" and (").append(userExpression).append(")");
+        }
+        expression.append(" and ").append(selfExclusionClause());
+        return expression.toString();
+    }
+
+    public List<String> getUserExpressions() {
+        return userExpressions;
+    }
+
+    @Override
+    public String toString() {
+        return toExpression();
+    }
+
+    /**
+     * Split a ';'-separated list of expressions (system property / CLI form)
+     */
+    public static String[] splitExpressions(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return new String[0];
+        }
+        return Arrays.stream(value.split(";"))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .toArray(String[]::new);
+    }
+}
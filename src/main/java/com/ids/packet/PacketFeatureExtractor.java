@@ -1,9 +1,10 @@
 package com.ids.packet;
 
+import com.ids.flow.ConnState;
+import com.ids.flow.FlowTable;
 import com.ids.model.NetworkFeatures;
-import org.pcap4j.packet.*;
-import org.pcap4j.packet.TcpPacket;
-import org.pcap4j.packet.UdpPacket;
+import org.pcap4j.packet.IpV4Packet;
+import org.pcap4j.packet.namednumber.IpNumber;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,132 +32,107 @@ public class PacketFeatureExtractor {
         PORT_TO_SERVICE.put(5432, "postgres");
     }
 
-    // TCP Flags mapping
-    private static final Map<String, String> TCP_FLAGS = new HashMap<>();
-    static {
-        // S0: Connection established but not terminated
-        // S1: Connection started
-        // SF: Normal establishment and termination
-        // REJ: Rejected connection
-        // RSTO: Connection reset by originator
-        // RSTR: Connection reset by responder
-        // RSTOS0: Established, reset by originator
-        // SH: Shutdown
-    }
-
     /**
-     * Extract features từ IP packet
+     * Extract features của cả connection từ flow table (duration, bytes hai chiều, KDD flag)
+     *
+     * @param table Flow table của shard hiện tại
+     * @param slot  Slot trả về bởi FlowTable.update
      */
-    public static NetworkFeatures extractFeatures(IpV4Packet ipPacket) {
-        try {
-            NetworkFeatures features = new NetworkFeatures();
-
-            // IP Layer Info
-            IpV4Packet.IpV4Header ipHeader = ipPacket.getHeader();
-            features.setProtocolType(getProtocolType(ipHeader.getProtocol().name()));
-
-            // Check Land Attack (same src/dst IP)
-            if (ipHeader.getSrcAddr().equals(ipHeader.getDstAddr())) {
-                features.setLand(1);
-            } else {
-                features.setLand(0);
-            }
-
-            // Extract bytes
-            features.setSrcBytes(ipPacket.length());
-
-            // TCP/UDP Layer
-            Packet payload = ipPacket.getPayload();
-            if (payload instanceof TcpPacket) {
-                extractTcpFeatures(features, (TcpPacket) payload);
-            } else if (payload instanceof UdpPacket) {
-                extractUdpFeatures(features, (UdpPacket) payload);
-            } else if (ipHeader.getProtocol().name().contains("ICMP")) {
-                features.setService("icmp");
-                features.setFlag("ICMP");
-                features.setDuration(1);
-            }
-
-            // Default values for undetected features
-            if (features.getDuration() == 0) {
-                features.setDuration(1);
-            }
+    public static NetworkFeatures extractFeatures(FlowTable table, int slot) {
+        NetworkFeatures features = new NetworkFeatures();
+
+        int protocol = table.getProtocol(slot);
+        features.setProtocolType(getProtocolType(protocol));
+        features.setDuration(table.getDurationSeconds(slot));
+        features.setSrcBytes(table.getOrigBytes(slot));
+        features.setDstBytes(table.getRespBytes(slot));
+        features.setFlag(table.getState(slot).name());
+        features.setUrgent(table.getUrgent(slot));
+
+        // KDD land: same host and port on both ends
+        boolean land = table.getOrigAddr(slot) == table.getRespAddr(slot)
+                && table.getOrigPort(slot) == table.getRespPort(slot);
+        features.setLand(land ? 1 : 0);
+
+        if (protocol == PacketHeader.PROTO_TCP || protocol == PacketHeader.PROTO_UDP) {
+            features.setService(getService(table.getRespPort(slot)));
+        } else if (protocol == PacketHeader.PROTO_ICMP) {
+            features.setService("icmp");
+        }
 
-            return features;
+        return features;
+    }
 
-        } catch (Exception e) {
-            logger.error("Error extracting features: {}", e.getMessage());
-            return null;
-        }
+    /**
+     * Service name theo destination port
+     */
+    public static String getService(int port) {
+        return PORT_TO_SERVICE.getOrDefault(port, String.valueOf(port));
     }
 
     /**
-     * Extract TCP-specific features
+     * Features of a packet that could not be tracked (flow table full), as a one-packet
+     * connection: duration 0, payload bytes of the sender, flag from this packet alone
+     * (S0 for a bare SYN, OTH for midstream TCP, SF for connectionless protocols)
      */
-    private static void extractTcpFeatures(NetworkFeatures features, TcpPacket tcpPacket) {
-        TcpPacket.TcpHeader tcpHeader = tcpPacket.getHeader();
-
-        // Service mapping từ destination port
-        int dstPort = tcpHeader.getDstPort().valueAsInt();
-        String service = PORT_TO_SERVICE.getOrDefault(dstPort, String.valueOf(dstPort));
-        features.setService(service);
-
-        // Destination bytes
-        Packet payload = tcpPacket.getPayload();
-        if (payload != null) {
-            features.setDstBytes(payload.length());
+    public static NetworkFeatures extractFeatures(PacketHeader header) {
+        NetworkFeatures features = new NetworkFeatures();
+
+        // A SYN-ACK comes from the responder, as in FlowTable
+        boolean reversed = header.isTcp()
+                && header.hasFlag(PacketHeader.TCP_SYN) && header.hasFlag(PacketHeader.TCP_ACK);
+
+        features.setProtocolType(getProtocolType(header.getProtocol()));
+        features.setDuration(0);
+        features.setSrcBytes(reversed ? 0 : header.getPayloadLength());
+        features.setDstBytes(reversed ? header.getPayloadLength() : 0);
+        features.setUrgent(header.hasFlag(PacketHeader.TCP_URG) ? 1 : 0);
+        features.setLand(header.getSrcAddr() == header.getDstAddr()
+                && header.getSrcPort() == header.getDstPort() ? 1 : 0);
+
+        if (header.isTcp()) {
+            features.setService(getService(reversed ? header.getSrcPort() : header.getDstPort()));
+            features.setFlag(ConnState.fromHistory(singlePacketHistory(header, reversed)).name());
         } else {
-            features.setDstBytes(0);
+            features.setFlag(ConnState.SF.name());
+            if (header.isUdp()) {
+                features.setService(getService(header.getDstPort()));
+            } else if (header.isIcmp()) {
+                features.setService("icmp");
+            }
         }
 
-        // TCP Flags
-        String flags = extractTcpFlags(tcpHeader);
-        features.setFlag(flags);
-
-        // Duration (placeholder - thực tế cần tracking connection)
-        features.setDuration(1);
+        return features;
     }
 
     /**
-     * Extract UDP-specific features
+     * ConnState history bits of a TCP connection made of this packet only
      */
-    private static void extractUdpFeatures(NetworkFeatures features, UdpPacket udpPacket) {
-        UdpPacket.UdpHeader udpHeader = udpPacket.getHeader();
-
-        int dstPort = udpHeader.getDstPort().valueAsInt();
-        String service = PORT_TO_SERVICE.getOrDefault(dstPort, String.valueOf(dstPort));
-        features.setService(service);
-
-        // Payload size
-        Packet payload = udpPacket.getPayload();
-        if (payload != null) {
-            features.setDstBytes(payload.length());
-        } else {
-            features.setDstBytes(0);
+    private static int singlePacketHistory(PacketHeader header, boolean reversed) {
+        if (reversed) {
+            return ConnState.RESP_SYN_ACK
+                    | (header.hasFlag(PacketHeader.TCP_FIN) ? ConnState.RESP_FIN : 0)
+                    | (header.hasFlag(PacketHeader.TCP_RST) ? ConnState.RESP_RST : 0);
         }
-
-        features.setFlag("UDP");
-        features.setDuration(1);
+        return (header.hasFlag(PacketHeader.TCP_SYN) ? ConnState.ORIG_SYN : 0)
+                | (header.hasFlag(PacketHeader.TCP_FIN) ? ConnState.ORIG_FIN : 0)
+                | (header.hasFlag(PacketHeader.TCP_RST) ? ConnState.ORIG_RST : 0);
     }
 
     /**
-     * Extract TCP flag string từ TCP header
+     * Map IP protocol number to string
      */
-    private static String extractTcpFlags(TcpPacket.TcpHeader tcpHeader) {
-        StringBuilder flags = new StringBuilder();
-
-        if (tcpHeader.getSyn()) flags.append("S");
-        if (tcpHeader.getAck()) flags.append("A");
-        if (tcpHeader.getFin()) flags.append("F");
-        if (tcpHeader.getRst()) flags.append("R");
-        if (tcpHeader.getPsh()) flags.append("P");
-        if (tcpHeader.getUrg()) flags.append("U");
-
-        if (flags.length() == 0) {
-            return "0"; // No flags set
+    private static String getProtocolType(int protocol) {
+        switch (protocol) {
+            case PacketHeader.PROTO_TCP:
+                return "tcp";
+            case PacketHeader.PROTO_UDP:
+                return "udp";
+            case PacketHeader.PROTO_ICMP:
+                return "icmp";
+            default:
+                return getProtocolType(IpNumber.getInstance((byte) protocol).name());
         }
-
-        return flags.toString();
     }
 
     /**
@@ -0,0 +1,155 @@
+package com.ids.packet;
+
+import org.pcap4j.packet.IpV4Packet;
+import org.pcap4j.packet.Packet;
+import org.pcap4j.packet.TcpPacket;
+import org.pcap4j.packet.UdpPacket;
+
+import java.net.InetAddress;
+
+/**
+ * The handful of header fields feature extraction needs from one IPv4 packet.
+ *
+ * Mutable and reusable: filled either straight from the raw frame (RawPacketParser)
+ * or from a fully decoded pcap4j packet (fallback path).
+ */
+public class PacketHeader {
+    public static final int PROTO_ICMP = 1;
+    public static final int PROTO_TCP = 6;
+    public static final int PROTO_UDP = 17;
+
+    // TCP flag bits (byte 13 of the TCP header)
+    public static final int TCP_FIN = 0x01;
+    public static final int TCP_SYN = 0x02;
+    public static final int TCP_RST = 0x04;
+    public static final int TCP_PSH = 0x08;
+    public static final int TCP_ACK = 0x10;
+    public static final int TCP_URG = 0x20;
+
+    private int protocol;
+    private int srcAddr;
+    private int dstAddr;
+    private int srcPort;
+    private int dstPort;
+    private int tcpFlags;
+    private int ipTotalLength;   // IP header + payload
+    private int payloadLength;   // L4 payload (after TCP/UDP header)
+    private boolean fragment;    // non-first fragment or more-fragments set
+    private long timestampMicros;
+
+    public void reset() {
+        protocol = 0;
+        srcAddr = 0;
+        dstAddr = 0;
+        srcPort = 0;
+        dstPort = 0;
+        tcpFlags = 0;
+        ipTotalLength = 0;
+        payloadLength = 0;
+        fragment = false;
+        timestampMicros = 0;
+    }
+
+    /**
+     * Fill from a fully decoded packet (fallback when the raw parser can't handle the frame)
+     */
+    public void setFrom(IpV4Packet ipPacket) {
+        reset();
+        IpV4Packet.IpV4Header ipHeader = ipPacket.getHeader();
+        protocol = ipHeader.getProtocol().value() & 0xFF;
+        srcAddr = toInt(ipHeader.getSrcAddr());
+        dstAddr = toInt(ipHeader.getDstAddr());
+        ipTotalLength = ipPacket.length();
+        fragment = ipHeader.getMoreFragmentFlag() || ipHeader.getFragmentOffset() != 0;
+
+        Packet payload = ipPacket.getPayload();
+        if (fragment) {
+            // Keyed without ports like RawPacketParser does
+            payloadLength = payload != null ? payload.length() : 0;
+        } else if (payload instanceof TcpPacket) {
+            TcpPacket.TcpHeader tcpHeader = ((TcpPacket) payload).getHeader();
+            srcPort = tcpHeader.getSrcPort().valueAsInt();
+            dstPort = tcpHeader.getDstPort().valueAsInt();
+            tcpFlags = (tcpHeader.getFin() ? TCP_FIN : 0)
+                    | (tcpHeader.getSyn() ? TCP_SYN : 0)
+                    | (tcpHeader.getRst() ? TCP_RST : 0)
+                    | (tcpHeader.getPsh() ? TCP_PSH : 0)
+                    | (tcpHeader.getAck() ? TCP_ACK : 0)
+                    | (tcpHeader.getUrg() ? TCP_URG : 0);
+            Packet data = payload.getPayload();
+            payloadLength = data != null ? data.length() : 0;
+        } else if (payload instanceof UdpPacket) {
+            UdpPacket.UdpHeader udpHeader = ((UdpPacket) payload).getHeader();
+            srcPort = udpHeader.getSrcPort().valueAsInt();
+            dstPort = udpHeader.getDstPort().valueAsInt();
+            Packet data = payload.getPayload();
+            payloadLength = data != null ? data.length() : 0;
+        } else if (payload != null) {
+            payloadLength = payload.length();
+        }
+    }
+
+    private static int toInt(InetAddress address) {
+        byte[] b = address.getAddress();
+        return ((b[0] & 0xFF) << 24) | ((b[1] & 0xFF) << 16) | ((b[2] & 0xFF) << 8) | (b[3] & 0xFF);
+    }
+
+    /**
+     * Dotted-quad form of an address stored as int
+     */
+    public static String toIpString(int address) {
+        return ((address >>> 24) & 0xFF) + "." + ((address >>> 16) & 0xFF) + "."
+                + ((address >>> 8) & 0xFF) + "." + (address & 0xFF);
+    }
+
+    public boolean isTcp() { return protocol == PROTO_TCP; }
+    public boolean isUdp() { return protocol == PROTO_UDP; }
+    public boolean isIcmp() { return protocol == PROTO_ICMP; }
+    public boolean hasFlag(int flag) { return (tcpFlags & flag) != 0; }
+
+    public String getSrcIp() { return toIpString(srcAddr); }
+    public String getDstIp() { return toIpString(dstAddr); }
+
+    // Getters & Setters
+    public int getProtocol() { return protocol; }
+    public void setProtocol(int protocol) { this.protocol = protocol; }
+
+    public int getSrcAddr() { return srcAddr; }
+    public void setSrcAddr(int srcAddr) { this.srcAddr = srcAddr; }
+
+    public int getDstAddr() { return dstAddr; }
+    public void setDstAddr(int dstAddr) { this.dstAddr = dstAddr; }
+
+    public int getSrcPort() { return srcPort; }
+    public void setSrcPort(int srcPort) { this.srcPort = srcPort; }
+
+    public int getDstPort() { return dstPort; }
+    public void setDstPort(int dstPort) { this.dstPort = dstPort; }
+
+    public int getTcpFlags() { return tcpFlags; }
+    public void setTcpFlags(int tcpFlags) { this.tcpFlags = tcpFlags; }
+
+    public int getIpTotalLength() { return ipTotalLength; }
+    public void setIpTotalLength(int ipTotalLength) { this.ipTotalLength = ipTotalLength; }
+
+    public int getPayloadLength() { return payloadLength; }
+    public void setPayloadLength(int payloadLength) { this.payloadLength = payloadLength; }
+
+    public boolean isFragment() { return fragment; }
+    public void setFragment(boolean fragment) { this.fragment = fragment; }
+
+    public long getTimestampMicros() { return timestampMicros; }
+    public void setTimestampMicros(long timestampMicros) { this.timestampMicros = timestampMicros; }
+
+    @Override
+    public String toString() {
+        return "PacketHeader{" +
+                "protocol=" + protocol +
+                ", src=" + getSrcIp() + ":" + srcPort +
+                ", dst=" + getDstIp() + ":" + dstPort +
+                ", flags=0x" + Integer.toHexString(tcpFlags) +
+                ", ipLen=" + ipTotalLength +
+                ", payload=" + payloadLength +
+                '}';
+    }
+}
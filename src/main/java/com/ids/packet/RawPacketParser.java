@@ -0,0 +1,184 @@
+package com.ids.packet;
+
+/**
+ * Reads IPv4/TCP/UDP header fields straight from the captured frame at fixed offsets,
+ * without building pcap4j Packet objects.
+ *
+ * Returns false whenever the frame is something it doesn't understand (unknown
+ * link type, non-IPv4, truncated); the caller then falls back to full decoding.
+ *
+ * Fragments are not reassembled. Only the first fragment carries the ports, so every
+ * fragment (the first one included) is keyed on addresses and protocol alone: all pieces
+ * of a datagram go to the same shard and flow, which is scored apart from the connection
+ * the datagram belongs to.
+ */
+public final class RawPacketParser {
+    // libpcap DLT_* values
+    public static final int DLT_NULL = 0;
+    public static final int DLT_EN10MB = 1;
+    public static final int DLT_RAW = 12;
+    public static final int DLT_RAW_ALT = 101; // LINKTYPE_RAW in pcap files
+    public static final int DLT_LINUX_SLL = 113;
+
+    private static final int ETHERTYPE_IPV4 = 0x0800;
+    private static final int ETHERTYPE_VLAN = 0x8100;
+    private static final int ETHERTYPE_QINQ = 0x88A8;
+
+    private RawPacketParser() {}
+
+    /**
+     * @param frame The captured bytes (link-layer header included)
+     * @param dlt   Datalink type of the handle
+     * @param out   Header to fill (reset first)
+     * @return true if out now describes an IPv4 packet
+     */
+    public static boolean parse(byte[] frame, int dlt, PacketHeader out) {
+        out.reset();
+        int ipOffset = ipOffset(frame, dlt);
+        if (ipOffset < 0 || frame.length < ipOffset + 20) {
+            return false;
+        }
+
+        int versionIhl = frame[ipOffset] & 0xFF;
+        if ((versionIhl >>> 4) != 4) {
+            return false;
+        }
+        int ipHeaderLength = (versionIhl & 0x0F) * 4;
+        if (ipHeaderLength < 20 || frame.length < ipOffset + ipHeaderLength) {
+            return false;
+        }
+
+        int totalLength = readUnsignedShort(frame, ipOffset + 2);
+        int flagsFragment = readUnsignedShort(frame, ipOffset + 6);
+        int protocol = frame[ipOffset + 9] & 0xFF;
+        boolean moreFragments = (flagsFragment & 0x2000) != 0;
+        int fragmentOffset = flagsFragment & 0x1FFF;
+
+        out.setProtocol(protocol);
+        out.setIpTotalLength(totalLength);
+        out.setSrcAddr(readInt(frame, ipOffset + 12));
+        out.setDstAddr(readInt(frame, ipOffset + 16));
+        out.setFragment(moreFragments || fragmentOffset != 0);
+
+        // Bytes actually present for this packet (snaplen may truncate, Ethernet may pad)
+        int ipEnd = Math.min(frame.length, ipOffset + Math.max(totalLength, ipHeaderLength));
+        int l4Offset = ipOffset + ipHeaderLength;
+        int l4Length = Math.max(0, ipOffset + totalLength - l4Offset);
+
+        // Fragments are tracked without ports (only the first one has an L4 header)
+        if (moreFragments || fragmentOffset != 0) {
+            out.setPayloadLength(l4Length);
+            return true;
+        }
+
+        if (protocol == PacketHeader.PROTO_TCP) {
+            if (ipEnd < l4Offset + 20) {
+                return false;
+            }
+            out.setSrcPort(readUnsignedShort(frame, l4Offset));
+            out.setDstPort(readUnsignedShort(frame, l4Offset + 2));
+            int tcpHeaderLength = ((frame[l4Offset + 12] & 0xFF) >>> 4) * 4;
+            out.setTcpFlags(frame[l4Offset + 13] & 0x3F);
+            out.setPayloadLength(Math.max(0, l4Length - tcpHeaderLength));
+        } else if (protocol == PacketHeader.PROTO_UDP) {
+            if (ipEnd < l4Offset + 8) {
+                return false;
+            }
+            out.setSrcPort(readUnsignedShort(frame, l4Offset));
+            out.setDstPort(readUnsignedShort(frame, l4Offset + 2));
+            out.setPayloadLength(Math.max(0, l4Length - 8));
+        } else {
+            out.setPayloadLength(l4Length);
+        }
+        return true;
+    }
+
+    /**
+     * Direction-independent hash of the 5-tuple, so both directions of a connection
+     * land on the same worker shard. Fragments only hash the addresses and protocol.
+     *
+     * @return The hash, or 0 if the frame isn't IPv4 (all such frames go to the same shard)
+     */
+    public static int flowHash(byte[] frame, int dlt) {
+        int ipOffset = ipOffset(frame, dlt);
+        if (ipOffset < 0 || frame.length < ipOffset + 20 || ((frame[ipOffset] & 0xFF) >>> 4) != 4) {
+            return 0;
+        }
+        int ipHeaderLength = (frame[ipOffset] & 0x0F) * 4;
+        int protocol = frame[ipOffset + 9] & 0xFF;
+        int srcAddr = readInt(frame, ipOffset + 12);
+        int dstAddr = readInt(frame, ipOffset + 16);
+        int srcPort = 0;
+        int dstPort = 0;
+
+        int l4Offset = ipOffset + ipHeaderLength;
+        // MF flag or fragment offset set
+        boolean fragment = (readUnsignedShort(frame, ipOffset + 6) & 0x3FFF) != 0;
+        if (!fragment && (protocol == PacketHeader.PROTO_TCP || protocol == PacketHeader.PROTO_UDP)
+                && frame.length >= l4Offset + 4) {
+            srcPort = readUnsignedShort(frame, l4Offset);
+            dstPort = readUnsignedShort(frame, l4Offset + 2);
+        }
+        return flowHash(protocol, srcAddr, srcPort, dstAddr, dstPort);
+    }
+
+    /**
+     * Same hash computed from already parsed fields
+     */
+    public static int flowHash(int protocol, int srcAddr, int srcPort, int dstAddr, int dstPort) {
+        long a = ((srcAddr & 0xFFFFFFFFL) << 16) | srcPort;
+        long b = ((dstAddr & 0xFFFFFFFFL) << 16) | dstPort;
+        long lo = Math.min(a, b);
+        long hi = Math.max(a, b);
+        long h = lo * 0x9E3779B97F4A7C15L + hi;
+        h ^= protocol;
+        // murmur3 fmix64
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    /**
+     * Offset of the IPv4 header inside the frame, or -1 if the frame isn't IPv4
+     */
+    private static int ipOffset(byte[] frame, int dlt) {
+        switch (dlt) {
+            case DLT_EN10MB: {
+                int offset = 12;
+                if (frame.length < offset + 2) return -1;
+                int etherType = readUnsignedShort(frame, offset);
+                // Skip up to two VLAN tags (802.1Q / QinQ)
+                for (int tags = 0; tags < 2 && (etherType == ETHERTYPE_VLAN || etherType == ETHERTYPE_QINQ); tags++) {
+                    offset += 4;
+                    if (frame.length < offset + 2) return -1;
+                    etherType = readUnsignedShort(frame, offset);
+                }
+                return etherType == ETHERTYPE_IPV4 ? offset + 2 : -1;
+            }
+            case DLT_RAW:
+            case DLT_RAW_ALT:
+                return 0;
+            case DLT_LINUX_SLL:
+                if (frame.length < 16) return -1;
+                return readUnsignedShort(frame, 14) == ETHERTYPE_IPV4 ? 16 : -1;
+            case DLT_NULL:
+                if (frame.length < 4) return -1;
+                // Address family in host byte order; AF_INET == 2 everywhere
+                return (frame[0] == 2 || frame[3] == 2) ? 4 : -1;
+            default:
+                return -1;
+        }
+    }
+
+    private static int readUnsignedShort(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16)
+                | ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+    }
+}
@@ -0,0 +1,118 @@
+package com.ids.pipeline;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rejection handler for a bounded worker queue.
+ * Applies the configured OverflowPolicy and counts every packet that went unscored.
+ * Housekeeping tasks queued by ShardedExecutor are skipped when evicting.
+ */
+public class OverflowHandler implements RejectedExecutionHandler {
+    private static final long BLOCK_POLL_MILLIS = 100;
+
+    private final OverflowPolicy policy;
+    private final LongAdder droppedNewest = new LongAdder();
+    private final LongAdder droppedOldest = new LongAdder();
+    private final LongAdder droppedOnShutdown = new LongAdder();
+    private final LongAdder blockedCount = new LongAdder();
+    private final LongAdder blockedNanos = new LongAdder();
+
+    public OverflowHandler(OverflowPolicy policy) {
+        this.policy = policy;
+    }
+
+    @Override
+    public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            droppedOnShutdown.increment();
+            return;
+        }
+
+        BlockingQueue<Runnable> queue = executor.getQueue();
+        switch (policy) {
+            case DROP_NEWEST:
+                droppedNewest.increment();
+                break;
+
+            case DROP_OLDEST:
+                while (!queue.offer(task)) {
+                    Runnable oldest = oldestPacket(queue);
+                    if (oldest == null) {
+                        // Only housekeeping queued: keep it, drop the new packet
+                        droppedNewest.increment();
+                        return;
+                    }
+                    if (queue.remove(oldest)) {
+                        droppedOldest.increment();
+                    }
+                }
+                break;
+
+            case BLOCK:
+                blockedCount.increment();
+                long start = System.nanoTime();
+                try {
+                    while (!queue.offer(task, BLOCK_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                        if (executor.isShutdown()) {
+                            droppedOnShutdown.increment();
+                            return;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    droppedOnShutdown.increment();
+                } finally {
+                    blockedNanos.add(System.nanoTime() - start);
+                }
+                break;
+        }
+    }
+
+    /**
+     * @return The queued packet task closest to the head, or null if only housekeeping is queued
+     */
+    private static Runnable oldestPacket(BlockingQueue<Runnable> queue) {
+        for (Runnable queued : queue) {
+            if (!(queued instanceof ShardedExecutor.Housekeeping)) {
+                return queued;
+            }
+        }
+        return null;
+    }
+
+    public OverflowPolicy getPolicy() { return policy; }
+
+    /**
+     * @return Total packets that were never processed because of overflow or shutdown
+     */
+    public long getDroppedCount() {
+        return droppedNewest.sum() + droppedOldest.sum() + droppedOnShutdown.sum();
+    }
+
+    public long getDroppedNewest() { return droppedNewest.sum(); }
+    public long getDroppedOldest() { return droppedOldest.sum(); }
+    public long getDroppedOnShutdown() { return droppedOnShutdown.sum(); }
+
+    /**
+     * @return How many times the capture thread had to wait (BLOCK policy)
+     */
+    public long getBlockedCount() { return blockedCount.sum(); }
+    public long getBlockedMillis() { return TimeUnit.NANOSECONDS.toMillis(blockedNanos.sum()); }
+
+    @Override
+    public String toString() {
+        return "Overflow{" +
+                "policy=" + policy +
+                ", dropped=" + getDroppedCount() +
+                " (newest=" + getDroppedNewest() +
+                ", oldest=" + getDroppedOldest() +
+                ", shutdown=" + getDroppedOnShutdown() + ")" +
+                ", blocked=" + getBlockedCount() +
+                ", blockedMs=" + getBlockedMillis() +
+                '}';
+    }
+}
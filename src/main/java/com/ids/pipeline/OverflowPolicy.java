@@ -0,0 +1,20 @@
+package com.ids.pipeline;
+
+/**
+ * What the capture thread does when the packet hand-off queue is full
+ */
+public enum OverflowPolicy {
+    /** Discard the packet that just arrived */
+    DROP_NEWEST,
+    /** Evict the oldest queued packet to make room for the new one */
+    DROP_OLDEST,
+    /** Block the capture thread until a worker frees a slot (libpcap buffers/drops instead) */
+    BLOCK;
+
+    public static OverflowPolicy parse(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return DROP_NEWEST;
+        }
+        return valueOf(value.trim().toUpperCase().replace('-', '_'));
+    }
+}
@@ -0,0 +1,35 @@
+package com.ids.pipeline;
+
+import com.ids.flow.FlowTable;
+import com.ids.packet.PacketHeader;
+
+/**
+ * State owned by exactly one worker shard.
+ * Only the shard's single thread touches it, so nothing here needs locking.
+ */
+public class ShardContext {
+    private final int index;
+    private final PacketHeader header = new PacketHeader();
+    private final FlowTable flowTable;
+
+    /**
+     * @param index        Shard index
+     * @param flowCapacity Connection table slots for this shard
+     */
+    public ShardContext(int index, int flowCapacity) {
+        this.index = index;
+        this.flowTable = new FlowTable(flowCapacity);
+    }
+
+    public int getIndex() { return index; }
+
+    /**
+     * Reusable header for the packet currently being processed
+     */
+    public PacketHeader getHeader() { return header; }
+
+    /**
+     * Connections whose packets hash to this shard
+     */
+    public FlowTable getFlowTable() { return flowTable; }
+}
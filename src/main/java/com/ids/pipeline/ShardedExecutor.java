@@ -0,0 +1,175 @@
+package com.ids.pipeline;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * N single-consumer worker shards. Tasks are routed by flow hash, so every packet of
+ * a connection is processed by the same thread against the same ShardContext.
+ *
+ * Each shard has its own bounded queue; overflow goes through the shared OverflowHandler.
+ * Housekeeping tasks (flow expiry, flush) are never counted or evicted as packets.
+ */
+public class ShardedExecutor {
+    private final ThreadPoolExecutor[] executors;
+    private final ShardContext[] contexts;
+    // Periodic task per shard waiting to run, also run ahead of the shard's next packet
+    private final AtomicReferenceArray<Consumer<ShardContext>> pending;
+
+    /**
+     * A task queued by putToAll / offerToAll rather than a packet. OverflowHandler
+     * never evicts one under DROP_OLDEST.
+     */
+    static final class Housekeeping implements Runnable {
+        private final Runnable task;
+
+        Housekeeping(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+    }
+
+    /**
+     * @param shardCount            Number of worker shards (threads)
+     * @param queueCapacityPerShard Bounded queue size of each shard
+     * @param overflowHandler       Policy + drop counters shared by all shards
+     * @param threadNamePrefix      Worker thread name prefix
+     * @param contextFactory        Creates the state owned by shard i
+     */
+    public ShardedExecutor(int shardCount, int queueCapacityPerShard, OverflowHandler overflowHandler,
+                           String threadNamePrefix, IntFunction<ShardContext> contextFactory) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be >= 1: " + shardCount);
+        }
+        this.executors = new ThreadPoolExecutor[shardCount];
+        this.contexts = new ShardContext[shardCount];
+        this.pending = new AtomicReferenceArray<>(shardCount);
+
+        for (int i = 0; i < shardCount; i++) {
+            String name = threadNamePrefix + "-" + i;
+            contexts[i] = contextFactory.apply(i);
+            executors[i] = new ThreadPoolExecutor(
+                    1, 1,
+                    0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(Math.max(1, queueCapacityPerShard)),
+                    r -> {
+                        Thread t = new Thread(r, name);
+                        t.setDaemon(true);
+                        return t;
+                    },
+                    overflowHandler
+            );
+            executors[i].prestartAllCoreThreads();
+        }
+    }
+
+    /**
+     * Route a task to the shard owning this flow
+     */
+    public void execute(int flowHash, Consumer<ShardContext> task) {
+        int shard = shardIndex(flowHash);
+        ShardContext context = contexts[shard];
+        executors[shard].execute(() -> {
+            runPending(shard);
+            task.accept(context);
+        });
+    }
+
+    /**
+     * Run a task once on every shard, waiting for queue space if needed (never dropped).
+     * Used for end-of-input work such as flushing flow tables.
+     */
+    public void putToAll(Consumer<ShardContext> task) throws InterruptedException {
+        for (int i = 0; i < executors.length; i++) {
+            ShardContext context = contexts[i];
+            executors[i].getQueue().put(new Housekeeping(() -> task.accept(context)));
+        }
+    }
+
+    /**
+     * Run a task once on every shard without waiting. A shard whose queue is full runs it
+     * before its next packet instead, so an overloaded shard still gets it.
+     * Used for periodic housekeeping: a task offered again before it ran replaces it.
+     */
+    public void offerToAll(Consumer<ShardContext> task) {
+        for (int i = 0; i < executors.length; i++) {
+            int shard = i;
+            pending.set(shard, task);
+            executors[shard].getQueue().offer(new Housekeeping(() -> runPending(shard)));
+        }
+    }
+
+    private void runPending(int shard) {
+        if (pending.get(shard) != null) {
+            Consumer<ShardContext> task = pending.getAndSet(shard, null);
+            if (task != null) {
+                task.accept(contexts[shard]);
+            }
+        }
+    }
+
+    public int shardIndex(int flowHash) {
+        return Math.floorMod(flowHash, executors.length);
+    }
+
+    public ShardContext getContext(int shard) {
+        return contexts[shard];
+    }
+
+    public int getShardCount() {
+        return executors.length;
+    }
+
+    /**
+     * @return Tasks waiting in all shard queues
+     */
+    public int getQueuedCount() {
+        int queued = 0;
+        for (ThreadPoolExecutor executor : executors) {
+            queued += executor.getQueue().size();
+        }
+        return queued;
+    }
+
+    /**
+     * @return Queue depth per shard (for spotting hot flows / imbalance)
+     */
+    public int[] getQueueDepths() {
+        int[] depths = new int[executors.length];
+        for (int i = 0; i < executors.length; i++) {
+            depths[i] = executors[i].getQueue().size();
+        }
+        return depths;
+    }
+
+    public void shutdown() {
+        for (ThreadPoolExecutor executor : executors) {
+            executor.shutdown();
+        }
+    }
+
+    public void shutdownNow() {
+        for (ThreadPoolExecutor executor : executors) {
+            executor.shutdownNow();
+        }
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (ThreadPoolExecutor executor : executors) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || !executor.awaitTermination(remaining, TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,63 +1,128 @@
 package utils;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.function.Supplier;
+
+/**
+ * Named logger of the tool's classes, backed by SLF4J: levels, format and appenders come from logback.xml.
+ *
+ * Messages are SLF4J patterns, e.g. log.info("Parsed {} rows from {}", rows, file);
+ * the arguments are only formatted if the level is enabled, so a disabled level costs one check.
+ * Pass a Supplier when building the message itself is expensive.
+ * A Throwable as the last argument is logged with its stack trace.
+ */
 public class LogObj {
 
     public static final LogObj defaultLog = new LogObj();
 
-    private String _name;
+    private final Logger logger;
+
+    public LogObj() {
+        this(null);
+    }
+
+    /**
+     * @param name Logger name, usually the class name (null = "utils.LogObj")
+     */
+    public LogObj(String name) {
+        this.logger = LoggerFactory.getLogger(name != null ? name : LogObj.class.getName());
+    }
+
+    public boolean isDebugEnabled() {
+        return logger.isDebugEnabled();
+    }
+
+    public boolean isInfoEnabled() {
+        return logger.isInfoEnabled();
+    }
+
+    public void debug(String msg) {
+        logger.debug(msg);
+    }
+
+    public void debug(String format, Object arg) {
+        logger.debug(format, arg);
+    }
+
+    public void debug(String format, Object arg1, Object arg2) {
+        logger.debug(format, arg1, arg2);
+    }
+
+    public void debug(String format, Object... args) {
+        logger.debug(format, args);
+    }
+
+    public void debug(Supplier<?> msg) {
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.valueOf(msg.get()));
+        }
+    }
+
+    public void info(String msg) {
+        logger.info(msg);
+    }
+
+    public void info(String format, Object arg) {
+        logger.info(format, arg);
+    }
+
+    public void info(String format, Object arg1, Object arg2) {
+        logger.info(format, arg1, arg2);
+    }
+
+    public void info(String format, Object... args) {
+        logger.info(format, args);
+    }
 
-    public LogObj(){
-        this._name = null;
+    public void info(Supplier<?> msg) {
+        if (logger.isInfoEnabled()) {
+            logger.info(String.valueOf(msg.get()));
+        }
     }
 
-    public LogObj(String name){
-        this._name = name;
+    public void warn(String msg) {
+        logger.warn(msg);
     }
 
-    public void setName(String name) {
-        this._name = name;
+    public void warn(String format, Object arg) {
+        logger.warn(format, arg);
     }
 
-    public void info(Object msg){
-        Logging.log(getLog("INFO", "", msg));
+    public void warn(String format, Object arg1, Object arg2) {
+        logger.warn(format, arg1, arg2);
     }
 
-    public void info(String extraName, Object msg){
-        Logging.log(getLog("INFO", extraName, msg));
+    public void warn(String format, Object... args) {
+        logger.warn(format, args);
     }
 
-    public void warn(Object msg){
-        Logging.warn(getLog("WARN", "", msg));
+    public void warn(Supplier<?> msg) {
+        if (logger.isWarnEnabled()) {
+            logger.warn(String.valueOf(msg.get()));
+        }
     }
 
-    public void warn(String extraName, Object msg){
-        Logging.warn(getLog("WARN", extraName, msg));
+    public void error(String msg) {
+        logger.error(msg);
     }
 
-    public void error(Object msg){
-        Logging.error(getLog("ERROR", "", msg));
+    public void error(String format, Object arg) {
+        logger.error(format, arg);
     }
 
-    public void error(String extraName, Object msg){
-        Logging.error(getLog("ERROR", extraName, msg));
+    public void error(String format, Object arg1, Object arg2) {
+        logger.error(format, arg1, arg2);
     }
 
-    private String getLog(String pad, String extraName, Object msg){
-        var l = String.format("[%s] %s", pad, extraName);
-        return String.format(
-                "(GL)[%s]%s " + "%s" + "%s" + "%s"
-                , pad
-                , FormatDate(new Date())
-                , (_name != null ? "[" + _name + "]" : "")
-                , (!extraName.isEmpty() ? "[" + extraName + "]" : "")
-                , msg);
+    public void error(String format, Object... args) {
+        logger.error(format, args);
     }
 
-    private String FormatDate(Date date){
-        SimpleDateFormat formatter = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
-        return formatter.format(date);
+    public void error(Supplier<?> msg) {
+        if (logger.isErrorEnabled()) {
+            logger.error(String.valueOf(msg.get()));
+        }
     }
 }
@@ -0,0 +1,109 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompressedInputTest {
+    @TempDir
+    Path directory;
+
+    private File plain(String name, byte[] content) throws IOException {
+        Path file = directory.resolve(name);
+        Files.write(file, content);
+        return file.toFile();
+    }
+
+    private File gzip(String name, byte[] content) throws IOException {
+        Path file = directory.resolve(name);
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            out.write(content);
+        }
+        return file.toFile();
+    }
+
+    private static byte[] readAll(File file) throws IOException {
+        try (InputStream in = CompressedInput.open(file)) {
+            return in.readAllBytes();
+        }
+    }
+
+    @Test
+    void gzipRoundTripsAcrossChunks() throws IOException {
+        // A few decompression chunks, not a multiple of their size
+        byte[] content = new byte[(3 << 20) + 12345];
+        new Random(7).nextBytes(content);
+        File compressed = gzip("data.bin", content);
+
+        assertTrue(CompressedInput.isGzip(compressed));
+        assertArrayEquals(content, readAll(compressed));
+        assertEquals(content.length, CompressedInput.uncompressedSize(compressed));
+
+        try (InputStream in = CompressedInput.open(compressed)) {
+            assertEquals(content[0] & 0xff, in.read());
+            byte[] rest = new byte[content.length - 1];
+            assertEquals(rest.length, in.readNBytes(rest, 0, rest.length));
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    void plainFilesAreReadAsTheyAre() throws IOException {
+        byte[] content = "a,b\n1,2\n".getBytes(StandardCharsets.UTF_8);
+        File file = plain("data.csv.gz", content);
+        assertFalse(CompressedInput.isGzip(file));
+        assertArrayEquals(content, readAll(file));
+        assertEquals(content.length, CompressedInput.uncompressedSize(file));
+    }
+
+    @Test
+    void closingEarlyStopsTheDecompression() throws IOException {
+        File compressed = gzip("big.bin", new byte[16 << 20]);
+        try (InputStream in = CompressedInput.open(compressed)) {
+            assertEquals(0, in.read());
+        }
+    }
+
+    @Test
+    void corruptDataFailsTheRead() throws IOException {
+        byte[] content = new byte[1 << 20];
+        new Random(3).nextBytes(content);
+        File compressed = gzip("corrupt.bin", content);
+        byte[] bytes = Files.readAllBytes(compressed.toPath());
+        // Inside the deflate stream, past the 10-byte header
+        for (int i = 100; i < 200; i++) {
+            bytes[i] ^= 0x55;
+        }
+        Files.write(compressed.toPath(), bytes);
+        assertThrows(IOException.class, () -> readAll(compressed));
+    }
+
+    @Test
+    void gzipCsvParsesLikeThePlainFile() throws IOException {
+        StringBuilder text = new StringBuilder("id,name,rate\n");
+        for (int row = 0; row < 100_000; row++) {
+            text.append(row).append(",\"n ").append(row % 17).append("\",").append(row % 9).append(".5\n");
+        }
+        byte[] content = text.toString().getBytes(StandardCharsets.UTF_8);
+        File plainFile = plain("plain.csv", content);
+        File compressed = gzip("compressed.csv", content);
+
+        try (MappedCsvParser parser = MappedCsvParser.open(compressed)) {
+            assertTrue(parser.isStreamed());
+        }
+        assertEquals(FeatureMapper.parseCsvFile(plainFile), FeatureMapper.parseCsvFile(compressed));
+    }
+}
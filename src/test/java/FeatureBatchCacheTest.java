@@ -0,0 +1,138 @@
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs against the cache directory surefire sets with -Dids.gui.cache-dir
+ */
+class FeatureBatchCacheTest {
+    private static final String CSV = "count,rate,service,note\n"
+            + "1,0.5,http,\"a, b\"\n"
+            + "2,1,ftp,\n"
+            + "n/a,2.5,3,\"say \"\"hi\"\"\"\n"
+            + "4.5,x,smtp,plain\n";
+
+    private static ForkJoinPool pool;
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    static void startPool() {
+        pool = new ForkJoinPool(2);
+    }
+
+    @AfterAll
+    static void stopPool() {
+        pool.shutdown();
+    }
+
+    private File csv(String text) throws IOException {
+        Path file = directory.resolve("cached.csv");
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        return file.toFile();
+    }
+
+    /**
+     * Same naming as FeatureBatchCache: file name plus the hash of its normalized absolute path
+     */
+    private static File cacheFileOf(File csvFile) {
+        String path = csvFile.getAbsoluteFile().toPath().normalize().toString();
+        File cacheFile = new File(System.getProperty("ids.gui.cache-dir", "cache"),
+                csvFile.getName() + "-" + Integer.toHexString(path.hashCode()) + ".fbc");
+        assertTrue(cacheFile.isFile(), cacheFile + " not written");
+        return cacheFile;
+    }
+
+    private static void assertSameBatch(FeatureBatch expected, FeatureBatch actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int column = 0; column < expected.getSchema().size(); column++) {
+            assertEquals(expected.getSchema().getName(column), actual.getSchema().getName(column));
+            assertEquals(expected.getType(column), actual.getType(column));
+            for (int row = 0; row < expected.size(); row++) {
+                assertEquals(expected.getCellType(row, column), actual.getCellType(row, column));
+                assertEquals(expected.toMap(row), actual.toMap(row));
+            }
+        }
+    }
+
+    @Test
+    void snapshotRoundTripsTheParsedBatch() throws IOException {
+        File file = csv(CSV);
+        assertNull(FeatureBatchCache.open(file));
+        FeatureBatch parsed = FeatureBatchCache.load(file, pool);
+
+        FeatureBatchCache.Snapshot snapshot = FeatureBatchCache.open(file);
+        assertNotNull(snapshot);
+        assertEquals(4, snapshot.size());
+        assertEquals(List.of("count", "rate", "service", "note"), List.of(snapshot.getColumns()));
+        assertSameBatch(parsed, snapshot.toBatch());
+        assertSameBatch(parsed, FeatureBatchCache.load(file, pool));
+
+        // Rows read in place have the types the streamed parse gives them, numbers in text columns included
+        List<Map<String, Object>> streamed = FeatureMapper.parseCsvFile(file);
+        for (int row = 0; row < streamed.size(); row++) {
+            assertEquals(streamed.get(row), snapshot.toMap(row), "row " + row);
+        }
+    }
+
+    @Test
+    void emptyFilesRoundTrip() throws IOException {
+        File file = csv("a,b\n");
+        assertEquals(0, FeatureBatchCache.load(file, pool).size());
+        FeatureBatchCache.Snapshot snapshot = FeatureBatchCache.open(file);
+        assertNotNull(snapshot);
+        assertEquals(0, snapshot.toBatch().size());
+    }
+
+    @Test
+    void changedSourcesMakeTheSnapshotStale() throws IOException {
+        File file = csv(CSV);
+        FeatureBatchCache.load(file, pool);
+        assertNotNull(FeatureBatchCache.open(file));
+
+        // Same size, newer mtime
+        assertTrue(file.setLastModified(file.lastModified() + 2000));
+        assertNull(FeatureBatchCache.open(file));
+        FeatureBatchCache.load(file, pool);
+        assertNotNull(FeatureBatchCache.open(file));
+
+        // New content: the next load parses it and rewrites the snapshot
+        long modified = file.lastModified();
+        Files.write(file.toPath(), (CSV + "5,0.75,http,more\n").getBytes(StandardCharsets.UTF_8));
+        assertTrue(file.setLastModified(modified));
+        assertNull(FeatureBatchCache.open(file));
+        assertEquals(5, FeatureBatchCache.load(file, pool).size());
+        assertEquals(5, FeatureBatchCache.open(file).size());
+    }
+
+    @Test
+    void truncatedSnapshotsAreMisses() throws IOException {
+        File file = csv(CSV);
+        FeatureBatchCache.load(file, pool);
+        File cacheFile = cacheFileOf(file);
+        try (RandomAccessFile raf = new RandomAccessFile(cacheFile, "rw")) {
+            raf.setLength(raf.length() - 5);
+        }
+
+        assertNull(FeatureBatchCache.open(file));
+        assertEquals(4, FeatureBatchCache.load(file, pool).size());
+        assertNotNull(FeatureBatchCache.open(file));
+    }
+}
@@ -0,0 +1,134 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FeatureBatchTest {
+    private static final FeatureSchema SCHEMA = new FeatureSchema(new String[] {"count", "rate", "service"});
+
+    @TempDir
+    Path directory;
+
+    private File csv(String text) throws IOException {
+        Path file = directory.resolve("features.csv");
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        return file.toFile();
+    }
+
+    private static void assertSameRows(List<Map<String, Object>> expected, FeatureBatch batch) {
+        assertEquals(expected.size(), batch.size());
+        for (int row = 0; row < batch.size(); row++) {
+            assertEquals(expected.get(row), batch.toMap(row), "row " + row);
+        }
+    }
+
+    @Test
+    void widensColumnsInPlace() {
+        FeatureBatch batch = new FeatureBatch(SCHEMA, 1);
+        batch.setInt(batch.addRow(), 0, 3);
+        batch.setDouble(batch.addRow(), 0, 0.5);
+        assertEquals(FeatureSchema.DOUBLE, batch.getType(0));
+        assertEquals(FeatureSchema.INT, batch.getCellType(0, 0));
+        assertEquals("3", batch.getString(0, 0));
+        assertEquals("0.5", batch.getString(1, 0));
+
+        batch.setString(batch.addRow(), 0, "many");
+        assertEquals(FeatureSchema.STRING, batch.getType(0));
+        assertEquals(3, batch.size());
+        assertEquals("0", batch.getString(0, 2));
+        assertThrows(IllegalStateException.class, () -> batch.getInt(2, 0));
+    }
+
+    @Test
+    void numbersInAStringColumnKeepTheirCellType() {
+        FeatureBatch batch = new FeatureBatch(SCHEMA);
+        batch.setInt(batch.addRow(), 0, 7);
+        batch.setDouble(batch.addRow(), 0, 2.5);
+        batch.setString(batch.addRow(), 0, "7");
+        batch.setInt(batch.addRow(), 0, -1);
+
+        assertEquals(FeatureSchema.STRING, batch.getType(0));
+        assertEquals(FeatureSchema.INT, batch.getCellType(0, 0));
+        assertEquals(FeatureSchema.DOUBLE, batch.getCellType(1, 0));
+        assertEquals(FeatureSchema.STRING, batch.getCellType(2, 0));
+        assertEquals(FeatureSchema.INT, batch.getCellType(3, 0));
+        assertEquals(7, batch.getInt(0, 0));
+        assertEquals(2.5, batch.getDouble(1, 0));
+        assertEquals(-1, batch.getInt(3, 0));
+        assertEquals(7, batch.toMap(0).get("count"));
+        assertEquals("7", batch.toMap(2).get("count"));
+        // Equal text, one code
+        assertEquals(batch.getCode(0, 0), batch.getCode(2, 0));
+        assertThrows(IllegalStateException.class, () -> batch.getDouble(2, 0));
+
+        // Overwriting a numeric cell with text drops its mark
+        batch.setString(0, 0, "7");
+        assertEquals(FeatureSchema.STRING, batch.getCellType(0, 0));
+    }
+
+    @Test
+    void batchRowsMatchTheStreamedMaps() throws IOException {
+        File file = csv("count,rate,service\n"
+                + "1,0.5,http\n"
+                + "2,1,ftp\n"
+                + "n/a,2.5,3\n"
+                + "4.5,x,smtp\n");
+        List<Map<String, Object>> streamed = FeatureMapper.parseCsvFile(file);
+        FeatureBatch batch = FeatureMapper.parseCsvBatch(file);
+
+        assertEquals(FeatureSchema.STRING, batch.getType(0));
+        assertEquals(FeatureSchema.STRING, batch.getType(1));
+        assertEquals(FeatureSchema.DOUBLE, batch.getCellType(3, 0));
+        assertEquals(FeatureSchema.INT, batch.getCellType(1, 1));
+        assertEquals(FeatureSchema.INT, batch.getCellType(2, 2));
+        assertSameRows(streamed, batch);
+    }
+
+    @Test
+    void appendUnifiesTypesLikeSequentialWidening() {
+        FeatureBatch left = new FeatureBatch(SCHEMA);
+        int row = left.addRow();
+        left.setInt(row, 0, 1);
+        left.setInt(row, 1, 1);
+        left.setString(row, 2, "http");
+
+        FeatureBatch right = new FeatureBatch(SCHEMA);
+        row = right.addRow();
+        right.setString(row, 0, "n/a");
+        right.setDouble(row, 1, 0.25);
+        right.setString(row, 2, "ftp");
+        row = right.addRow();
+        right.setDouble(row, 0, 1.5);
+        right.setInt(row, 1, 2);
+        right.setString(row, 2, "http");
+
+        FeatureBatch sequential = new FeatureBatch(SCHEMA);
+        for (FeatureBatch part : new FeatureBatch[] {left, right}) {
+            for (int i = 0; i < part.size(); i++) {
+                sequential.addRow(part.toMap(i));
+            }
+        }
+        left.append(right);
+
+        assertEquals(3, left.size());
+        for (int column = 0; column < SCHEMA.size(); column++) {
+            assertEquals(sequential.getType(column), left.getType(column));
+            for (int i = 0; i < left.size(); i++) {
+                assertEquals(sequential.getCellType(i, column), left.getCellType(i, column));
+                assertEquals(sequential.getString(i, column), left.getString(i, column));
+            }
+        }
+        assertEquals(left.getCode(0, 2), left.getCode(2, 2));
+        assertThrows(IllegalArgumentException.class,
+                () -> left.append(new FeatureBatch(new FeatureSchema(new String[] {"other", "rate", "service"}))));
+    }
+}
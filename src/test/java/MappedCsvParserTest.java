@@ -0,0 +1,223 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedCsvParserTest {
+    // Heap window of a streamed file; records are refilled across it
+    private static final int STREAM_WINDOW = 1 << 20;
+
+    @TempDir
+    Path directory;
+
+    private File csv(String text) throws IOException {
+        return csv("data.csv", text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private File csv(String name, byte[] bytes) throws IOException {
+        Path file = directory.resolve(name);
+        Files.write(file, bytes);
+        return file.toFile();
+    }
+
+    /**
+     * Values of every record, as value() returns them
+     */
+    private static List<List<Object>> records(File file) throws IOException {
+        List<List<Object>> records = new ArrayList<>();
+        try (MappedCsvParser parser = MappedCsvParser.open(file)) {
+            while (parser.nextRecord()) {
+                List<Object> values = new ArrayList<>();
+                for (int column = 0; column < parser.getColumnCount(); column++) {
+                    values.add(parser.value(column));
+                }
+                records.add(values);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Value of the single field of a one-column file
+     */
+    private Object valueOf(String field) throws IOException {
+        try (MappedCsvParser parser = MappedCsvParser.open(csv("x\n" + field + "\n"))) {
+            assertTrue(parser.nextRecord());
+            return parser.value(0);
+        }
+    }
+
+    @Test
+    void unquotesAndUnescapesFields() throws IOException {
+        File file = csv(" name , note ,n\n"
+                + "\"a,b\",\"say \"\"hi\"\"\",1\n"
+                + "  plain  ,\" kept \",2\n"
+                + "\"two\nlines\",\"\",3\n");
+        try (MappedCsvParser parser = MappedCsvParser.open(file)) {
+            assertArrayEquals(new String[] {"name", "note", "n"}, parser.getColumns());
+
+            assertTrue(parser.nextRecord());
+            assertEquals("a,b", parser.stringValue(0));
+            assertEquals("say \"hi\"", parser.stringValue(1));
+            assertEquals(MappedCsvParser.TYPE_STRING, parser.type(1));
+
+            assertTrue(parser.nextRecord());
+            assertEquals("plain", parser.stringValue(0));
+            assertEquals(" kept ", parser.stringValue(1));
+
+            assertTrue(parser.nextRecord());
+            assertEquals("two\nlines", parser.stringValue(0));
+            assertEquals("", parser.stringValue(1));
+            assertEquals(3, parser.intValue(2));
+            assertFalse(parser.nextRecord());
+        }
+    }
+
+    @Test
+    void escapedNumbersStayStrings() throws IOException {
+        assertEquals("1\"2", valueOf("\"1\"\"2\""));
+    }
+
+    @Test
+    void handlesCrLfBomAndBlankLines() throws IOException {
+        byte[] text = "\uFEFFa,b\r\n1,x\r\n\r\n   \r\n2,y\r3,z".getBytes(StandardCharsets.UTF_8);
+        File file = csv("bom.csv", text);
+        try (MappedCsvParser parser = MappedCsvParser.open(file)) {
+            assertArrayEquals(new String[] {"a", "b"}, parser.getColumns());
+            assertEquals("a,b\r\n".length() + 3, parser.getDataStart());
+        }
+        assertEquals(List.of(List.of(1, "x"), List.of(2, "y"), List.of(3, "z")), records(file));
+        assertEquals(List.of(List.of("", 1)), records(csv("a,b\n \t ,1\n")));
+    }
+
+    @Test
+    void recordsWithTheWrongFieldCountAreSkippedAfterThrowing() throws IOException {
+        try (MappedCsvParser parser = MappedCsvParser.open(csv("a,b\n1,2\n1,2,3\n4,5\n"))) {
+            assertTrue(parser.nextRecord());
+            assertThrows(IllegalArgumentException.class, parser::nextRecord);
+            assertTrue(parser.nextRecord());
+            assertEquals(4, parser.intValue(0));
+            assertFalse(parser.nextRecord());
+        }
+        assertThrows(IllegalArgumentException.class, () -> MappedCsvParser.open(csv("\n\n")));
+        assertThrows(IllegalArgumentException.class,
+                () -> records(csv("a,b\n\"open,2\n")), "unterminated quote");
+    }
+
+    @Test
+    void classifiesIntegers() throws IOException {
+        assertEquals(42, valueOf("42"));
+        assertEquals(7, valueOf("  7 "));
+        assertEquals(5, valueOf("+5"));
+        assertEquals(0, valueOf("-0"));
+        assertEquals(0, valueOf("000"));
+        assertEquals(Integer.MAX_VALUE, valueOf("2147483647"));
+        assertEquals(Integer.MIN_VALUE, valueOf("-2147483648"));
+    }
+
+    @Test
+    void classifiesDoublesLikeDoubleParseDouble() throws IOException {
+        String[] texts = {
+                "1e5", "1E-3", "-2.50", ".5", "5.", "-0.0", "2147483648", "-2147483649",
+                // More significant digits than the fast path keeps
+                "12345678901234567890", "0.12345678901234567890123", "123456789012345678901234567890e-10",
+                "9007199254740993", "1e308", "4.9e-324", "1e-400", "1e400",
+                "NaN", "Infinity", "+Infinity", "-Infinity"
+        };
+        for (String text : texts) {
+            Object value = valueOf(text);
+            assertTrue(value instanceof Double, text + " -> " + value);
+            assertEquals(Double.parseDouble(text), (Double) value, text);
+        }
+        assertEquals(Double.doubleToLongBits(-0.0), Double.doubleToLongBits((Double) valueOf("-0.0")));
+    }
+
+    @Test
+    void rejectsMalformedNumbers() throws IOException {
+        for (String text : new String[] {"1e", "1e+", "1.2.3", "-", "+", ".", "0x10", "1,5", "nan", "inf", "12a"}) {
+            Object value = valueOf(text.equals("1,5") ? "\"1,5\"" : text);
+            assertTrue(value instanceof String, text + " -> " + value);
+        }
+        assertEquals("", valueOf("\"\""));
+    }
+
+    @Test
+    void intAndDoubleAccessorsConvert() throws IOException {
+        try (MappedCsvParser parser = MappedCsvParser.open(csv("i,d,s\n3,2.75,abc\n"))) {
+            assertTrue(parser.nextRecord());
+            assertEquals(3.0, parser.doubleValue(0));
+            assertEquals(2, parser.intValue(1));
+            assertEquals(0, parser.intValue(2));
+            assertTrue(Double.isNaN(parser.doubleValue(2)));
+        }
+    }
+
+    /**
+     * Filler rows that end exactly at the given offset
+     */
+    private static void pad(StringBuilder text, int end) {
+        while (text.length() < end) {
+            int length = Math.min(1000, end - text.length());
+            if (end - text.length() - length > 0 && end - text.length() - length < 6) {
+                length -= 6;
+            }
+            char[] filler = new char[Math.max(0, length - 5)];
+            Arrays.fill(filler, 'x');
+            text.append("0,").append(filler).append(",0\n");
+        }
+    }
+
+    @Test
+    void recordsAcrossTheWindowBoundaryAreParsedWhole() throws IOException {
+        String record = "7,\"a\"\"b\",1.5\r\n";
+        for (int before = 0; before <= record.length(); before++) {
+            StringBuilder text = new StringBuilder("id,text,value\n");
+            pad(text, STREAM_WINDOW - before);
+            assertEquals(STREAM_WINDOW - before, text.length());
+            int fillers = text.toString().split("\n", -1).length - 2;
+            text.append(record).append("8,end,2");
+
+            List<List<Object>> records = records(csv("boundary.csv", text.toString().getBytes(StandardCharsets.US_ASCII)));
+            assertEquals(fillers + 2, records.size(), "record starting " + before + " bytes before the boundary");
+            assertEquals(List.of(7, "a\"b", 1.5), records.get(fillers), "starting " + before + " bytes before");
+            assertEquals(List.of(8, "end", 2), records.get(fillers + 1));
+        }
+    }
+
+    @Test
+    void recordsLongerThanTheWindowGrowIt() throws IOException {
+        char[] longText = new char[STREAM_WINDOW + STREAM_WINDOW / 2];
+        Arrays.fill(longText, 'y');
+        String text = "id,text\n1,short\n2,\"" + new String(longText) + "\"\n3,after\n";
+        List<List<Object>> records = records(csv("long.csv", text.getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(3, records.size());
+        assertEquals(longText.length, ((String) records.get(1).get(1)).length());
+        assertEquals(List.of(3, "after"), records.get(2));
+    }
+
+    @Test
+    void openDataReadsHeaderlessRecordsFromAnOffset() throws IOException {
+        String preamble = "% comment\n@data\n";
+        File file = csv(preamble + "1,a\n2,b\n");
+        try (MappedCsvParser parser = MappedCsvParser.openData(file, new String[] {"n", "s"}, preamble.length())) {
+            assertTrue(parser.nextRecord());
+            assertEquals(1, parser.intValue(0));
+            assertTrue(parser.nextRecord());
+            assertEquals("b", parser.stringValue(1));
+            assertFalse(parser.nextRecord());
+        }
+    }
+}
@@ -0,0 +1,167 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NslKddReaderTest {
+    @TempDir
+    Path directory;
+
+    /**
+     * One KDDTrain+.txt line: 41 features, label, difficulty
+     */
+    private static String record(String service, String label) {
+        StringBuilder line = new StringBuilder("0,tcp,").append(service).append(",SF");
+        for (int column = 4; column < NslKddReader.FEATURES.length; column++) {
+            line.append(',').append(NslKddReader.FEATURES[column].endsWith("_rate") ? "0.50" : "1");
+        }
+        return line.append(',').append(label).append(",21\n").toString();
+    }
+
+    private File file(String name, String text) throws IOException {
+        Path file = directory.resolve(name);
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        return file.toFile();
+    }
+
+    private File gzip(String name, String text) throws IOException {
+        Path file = directory.resolve(name);
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return file.toFile();
+    }
+
+    /**
+     * ARFF preamble and rows: symbols quoted, class but no difficulty
+     */
+    private static String arff(String... lines) {
+        StringBuilder text = new StringBuilder("% NSL-KDD\n@relation 'KDDTest'\n\n");
+        for (String feature : NslKddReader.FEATURES) {
+            text.append("@attribute '").append(feature).append("' real\n");
+        }
+        text.append("@attribute 'class' {'normal', 'anomaly'}\n@data\n");
+        for (String line : lines) {
+            text.append(line.substring(0, line.lastIndexOf(',')).replace(",tcp,", ",'tcp',")).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static PredictionResult predicted(String label) {
+        return new PredictionResult(label.equals("attack") ? 1 : 0, label, 0.9, 0.5, 0.5);
+    }
+
+    @Test
+    void malformedRecordsKeepTheScoreAligned() throws IOException {
+        File file = file("KDDTest+.txt", record("http", "normal")
+                + "0,tcp,http,SF,neptune,21\n"
+                + record("private", "neptune")
+                + record("http", "normal"));
+
+        try (NslKddReader.Records records = NslKddReader.open(file)) {
+            assertTrue(records.isLabelled());
+            // The publisher reads ahead of the results and turns the exception into an error result
+            records.next();
+            assertThrows(IllegalArgumentException.class, records::next);
+            Map<String, Object> features = records.next();
+            assertEquals("private", features.get("service"));
+            records.next();
+            assertNull(records.next());
+
+            records.score(predicted("attack"));
+            records.score(new PredictionResult("Error: malformed record"));
+            records.score(predicted("attack"));
+            records.score(predicted("normal"));
+
+            assertEquals(String.format("Accuracy %.2f%% on 3 records (TP 1, FP 1, TN 1, FN 0, 1 errors)", 200.0 / 3),
+                    records.getScore());
+        }
+    }
+
+    @Test
+    void recordsReportWhereTheDataStarts() throws IOException {
+        String preamble = "@relation 'KDDTest'\n"
+                + "@attribute 'duration' real\n"
+                + "\n"
+                + "@data\n";
+        String line = record("http", "normal");
+        // ARFF rows carry the class but no difficulty
+        String arffLine = line.substring(0, line.lastIndexOf(',')) + "\n";
+        File arff = file("KDDTest+.arff", preamble + arffLine + arffLine);
+        try (NslKddReader.Records records = NslKddReader.open(arff)) {
+            assertEquals(preamble.length(), records.getDataStart());
+        }
+
+        File txt = file("KDDTest+.txt", line);
+        try (NslKddReader.Records records = NslKddReader.open(txt)) {
+            assertEquals(0, records.getDataStart());
+        }
+    }
+
+    @Test
+    void detectsHeaderlessAndArffLayouts() throws IOException {
+        String normal = record("http", "normal");
+        String anomaly = record("private", "anomaly");
+
+        File txt = file("KDDTrain+.txt", normal + "\n" + anomaly);
+        File bom = file("bom.txt", "\uFEFF" + normal);
+        File arff = file("KDDTest+.arff", arff(normal, anomaly));
+        File gzipArff = gzip("KDDTest+.arff.gz", arff(normal, anomaly));
+        File unlabelled = file("features.txt", normal.substring(0, normal.indexOf(",normal")) + "\n");
+        for (File dataset : new File[] {txt, bom, arff, gzipArff, unlabelled}) {
+            assertTrue(NslKddReader.isDataset(dataset), dataset.getName());
+        }
+
+        // A converted CSV has a header row; a short row is some other file
+        File csv = file("converted.csv", "duration,protocol_type\n" + normal);
+        File shortRows = file("short.txt", "0,tcp,http,SF,1,2\n");
+        File empty = file("empty.arff", "@relation 'x'\n@data\n");
+        for (File other : new File[] {csv, shortRows, empty}) {
+            assertFalse(NslKddReader.isDataset(other), other.getName());
+            assertThrows(IllegalArgumentException.class, () -> NslKddReader.read(other), other.getName());
+        }
+    }
+
+    @Test
+    void readsLabelsAndDifficultyApartFromTheFeatures() throws IOException {
+        NslKddReader.Dataset txt = NslKddReader.read(file("KDDTrain+.txt",
+                record("http", "normal") + "\r\n" + record("private", "neptune")));
+        assertEquals(2, txt.size());
+        assertTrue(txt.isLabelled());
+        assertEquals("normal", txt.getLabel(0));
+        assertFalse(txt.isAttack(0));
+        assertTrue(txt.isAttack(1));
+        assertEquals(21, txt.getDifficulty(1));
+
+        FeatureBatch features = txt.getFeatures();
+        assertEquals(NslKddReader.FEATURES.length, features.getSchema().size());
+        assertEquals(FeatureSchema.STRING, features.getType(features.getSchema().indexOf("service")));
+        assertEquals(FeatureSchema.DOUBLE, features.getType(features.getSchema().indexOf("serror_rate")));
+        assertEquals("private", features.getString(1, features.getSchema().indexOf("service")));
+
+        NslKddReader.Dataset arff = NslKddReader.read(gzip("KDDTest+.arff.gz",
+                arff(record("http", "normal"), record("private", "anomaly"))));
+        assertEquals(2, arff.size());
+        assertEquals("anomaly", arff.getLabel(1));
+        assertEquals(-1, arff.getDifficulty(0));
+        assertEquals("tcp", arff.getFeatures().getString(0, 1));
+
+        NslKddReader.Dataset unlabelled = NslKddReader.read(file("features.txt",
+                record("http", "normal").replace(",normal,21", "")));
+        assertFalse(unlabelled.isLabelled());
+        assertNull(unlabelled.getLabel(0));
+    }
+}
@@ -0,0 +1,108 @@
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelCsvReaderTest {
+    private static ForkJoinPool pool;
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    static void startPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterAll
+    static void stopPool() {
+        pool.shutdown();
+    }
+
+    /**
+     * Rows whose column types change along the file, so chunks widen differently and must be unified
+     */
+    private File mixedCsv(long minBytes) throws IOException {
+        Path file = directory.resolve("mixed.csv");
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("id,rate,service,flag,note\n");
+            long written = 0;
+            for (int row = 0; written < minBytes; row++) {
+                String line = row
+                        + "," + (row % 3 == 0 ? Integer.toString(row % 100) : (row % 100) + ".25")
+                        + "," + (row < 200_000 ? Integer.toString(row % 7) : "svc" + row % 7)
+                        + "," + (row % 50_000 == 7 ? "1e5" : row % 2 == 0 ? "SF" : "REJ")
+                        + "," + (row % 1000 == 0 ? "\"quoted, \"\"note\"\"\"" : "n" + row % 13)
+                        + "\n";
+                out.write(line);
+                written += line.length();
+            }
+        }
+        return file.toFile();
+    }
+
+    private static void assertSameBatch(FeatureBatch expected, FeatureBatch actual) {
+        assertEquals(expected.size(), actual.size());
+        FeatureSchema schema = expected.getSchema();
+        for (int column = 0; column < schema.size(); column++) {
+            assertEquals(expected.getType(column), actual.getType(column), schema.getName(column));
+            for (int row = 0; row < expected.size(); row++) {
+                assertEquals(expected.getCellType(row, column), actual.getCellType(row, column));
+                assertEquals(expected.getString(row, column), actual.getString(row, column));
+            }
+        }
+    }
+
+    @Test
+    void chunkedParseMatchesSequentialParse() throws IOException {
+        // At least two chunks of MIN_CHUNK_BYTES
+        File file = mixedCsv(2 * ParallelCsvReader.MIN_CHUNK_BYTES + (1 << 20));
+        FeatureBatch sequential = FeatureMapper.parseCsvBatch(file);
+        FeatureBatch chunked = ParallelCsvReader.parse(file, pool);
+
+        assertSameBatch(sequential, chunked);
+        assertEquals(FeatureSchema.STRING, chunked.getType(2));
+        assertEquals(FeatureSchema.INT, chunked.getCellType(0, 2));
+        assertEquals(FeatureSchema.DOUBLE, chunked.getCellType(7, 3));
+        assertEquals("quoted, \"note\"", chunked.getString(0, 4));
+    }
+
+    @Test
+    void smallFilesAreParsedSequentially() throws IOException {
+        File file = mixedCsv(64 << 10);
+        assertSameBatch(FeatureMapper.parseCsvBatch(file), ParallelCsvReader.parse(file, pool));
+    }
+
+    @Test
+    void chunksCutInsideAQuotedLineBreakFallBackToSequential() throws IOException {
+        Path path = directory.resolve("multiline.csv");
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write("id,note\n");
+            long written = 0;
+            for (int row = 0; written < 2 * ParallelCsvReader.MIN_CHUNK_BYTES + (1 << 20); row++) {
+                String line = row + ",\"first line\nsecond line, with a comma\"\n";
+                out.write(line);
+                written += line.length();
+            }
+        }
+        File file = path.toFile();
+
+        FeatureBatch batch = ParallelCsvReader.parse(file, pool);
+        assertSameBatch(FeatureMapper.parseCsvBatch(file), batch);
+        for (int row = 0; row < batch.size(); row++) {
+            assertEquals(row, batch.getInt(row, 0));
+        }
+        assertTrue(batch.size() > 0);
+    }
+}
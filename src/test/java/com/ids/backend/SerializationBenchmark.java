@@ -0,0 +1,94 @@
+package com.ids.backend;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ids.model.NetworkFeatures;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Đo bytes cấp phát mỗi request: JSON cũ (HashMap + String) so với streaming và binary.
+ *
+ * Only the client-side encode/decode is measured, no HTTP. Lives in the test sources so it is
+ * not packaged; run with {@code mvn test-compile} then
+ * {@code java -cp target/classes:target/test-classes:... com.ids.backend.SerializationBenchmark [iterations]}.
+ */
+public class SerializationBenchmark {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static final byte[] RESPONSE =
+            "{\"prediction\":1,\"prediction_label\":\"attack\",\"confidence\":0.97}".getBytes(StandardCharsets.UTF_8);
+
+    // Results of every run end up here, so the JIT cannot drop the work as dead code
+    private static volatile int sink;
+
+    private interface Path {
+        Object run() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        FeaturesJsonCodec codec = new FeaturesJsonCodec(objectMapper);
+        NetworkFeatures features = sample();
+
+        Path legacyJson = () -> {
+            Map<String, Object> requestBody = new HashMap<>();
+            requestBody.put("features", features);
+            String payload = objectMapper.writeValueAsString(requestBody);
+            byte[] sent = payload.getBytes(StandardCharsets.UTF_8); // what StringEntity writes
+            String body = new String(new ByteArrayInputStream(RESPONSE).readAllBytes());
+            return objectMapper.readValue(body, PredictionClient.PredictionResult.class).getConfidence() + sent.length;
+        };
+        Path streamingJson = () -> {
+            FeaturesJsonCodec.JsonBuffer sent = codec.write(features);
+            return codec.readResult(new ByteArrayInputStream(RESPONSE)).getConfidence() + sent.size();
+        };
+        Path binary = () -> BinaryFeatureCodec.encode(features).length
+                + BinaryFeatureCodec.decodeScores(new byte[8], 1).get(0).getConfidence();
+
+        report("legacy json", legacyJson, iterations);
+        report("streaming json", streamingJson, iterations);
+        report("binary", binary, iterations);
+        System.out.println("(sink " + sink + ")");
+    }
+
+    private static void report(String name, Path path, int iterations) throws Exception {
+        // Warm up: JIT, serializer caches, per-thread buffers
+        int consumed = 0;
+        for (int i = 0; i < iterations / 10; i++) {
+            consumed += path.run().hashCode();
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long startBytes = THREADS.getThreadAllocatedBytes(threadId);
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            consumed += path.run().hashCode();
+        }
+        long nanos = System.nanoTime() - startNanos;
+        long bytes = THREADS.getThreadAllocatedBytes(threadId) - startBytes;
+        sink += consumed;
+
+        System.out.printf("%-15s %8.0f B/request %8.0f ns/request%n",
+                name, (double) bytes / iterations, (double) nanos / iterations);
+    }
+
+    private static NetworkFeatures sample() {
+        NetworkFeatures features = new NetworkFeatures(12, "tcp", "http", "SF",
+                4_312, 91_544, 0, 0, 0, 0, 0, 1, 0, 0, 0, 0);
+        features.setCount(9);
+        features.setSrvCount(9);
+        features.setSameSrvRate(1.0);
+        features.setDstHostCount(255);
+        features.setDstHostSrvCount(255);
+        features.setDstHostSameSrvRate(1.0);
+        features.setDstHostSameSrcPortRate(0.04);
+        return features;
+    }
+}
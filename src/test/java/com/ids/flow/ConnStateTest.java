@@ -0,0 +1,64 @@
+package com.ids.flow;
+
+import org.junit.jupiter.api.Test;
+
+import static com.ids.flow.ConnState.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConnStateTest {
+
+    @Test
+    void attemptsWithoutSynAck() {
+        assertEquals(S0, fromHistory(ORIG_SYN));
+        assertEquals(REJ, fromHistory(ORIG_SYN | RESP_RST));
+        assertEquals(RSTOS0, fromHistory(ORIG_SYN | ORIG_RST));
+        assertEquals(SH, fromHistory(ORIG_SYN | ORIG_FIN));
+    }
+
+    @Test
+    void synAckWithoutSyn() {
+        assertEquals(OTH, fromHistory(RESP_SYN_ACK));
+        assertEquals(RSTRH, fromHistory(RESP_SYN_ACK | RESP_RST));
+        assertEquals(SHR, fromHistory(RESP_SYN_ACK | RESP_FIN));
+    }
+
+    @Test
+    void midstreamTraffic() {
+        assertEquals(OTH, fromHistory(0));
+        assertEquals(OTH, fromHistory(ORIG_DATA | RESP_DATA | ORIG_FIN));
+    }
+
+    @Test
+    void establishedConnections() {
+        int established = ORIG_SYN | RESP_SYN_ACK;
+        assertEquals(S1, fromHistory(established));
+        assertEquals(SF, fromHistory(established | ORIG_FIN | RESP_FIN));
+        assertEquals(S2, fromHistory(established | ORIG_FIN));
+        assertEquals(S3, fromHistory(established | RESP_FIN));
+        assertEquals(RSTO, fromHistory(established | ORIG_RST));
+        assertEquals(RSTR, fromHistory(established | RESP_RST));
+        // A reset wins over the FINs
+        assertEquals(RSTO, fromHistory(established | ORIG_FIN | RESP_FIN | ORIG_RST));
+    }
+
+    @Test
+    void terminatedOnBothFinsOrAnyReset() {
+        assertFalse(isTerminated(ORIG_SYN | RESP_SYN_ACK | ORIG_FIN));
+        assertTrue(isTerminated(ORIG_FIN | RESP_FIN));
+        assertTrue(isTerminated(ORIG_RST));
+        assertTrue(isTerminated(RESP_RST));
+    }
+
+    @Test
+    void errorClasses() {
+        assertTrue(S0.isSynError());
+        assertFalse(SF.isSynError());
+        assertTrue(REJ.isRejError());
+        assertFalse(S0.isRejError());
+        assertEquals(TrafficWindow.CLASS_SYN_ERROR, TrafficWindow.classOf(S0));
+        assertEquals(TrafficWindow.CLASS_REJ_ERROR, TrafficWindow.classOf(REJ));
+        assertEquals(TrafficWindow.CLASS_NORMAL, TrafficWindow.classOf(SF));
+    }
+}
@@ -0,0 +1,112 @@
+package com.ids.flow;
+
+import com.ids.model.NetworkFeatures;
+import com.ids.packet.PacketHeader;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DstHostWindowTest {
+    private static final int CLIENT = 0x0A000001;
+    private static final int HOST = 0x0A000002;
+
+    private final FlowTable flows = new FlowTable(256);
+
+    private int packet(DstHostWindow window, int src, int srcPort, int dst, int dstPort, int flags, long micros) {
+        PacketHeader header = new PacketHeader();
+        header.setProtocol(PacketHeader.PROTO_TCP);
+        header.setSrcAddr(src);
+        header.setSrcPort(srcPort);
+        header.setDstAddr(dst);
+        header.setDstPort(dstPort);
+        header.setTcpFlags(flags);
+        header.setTimestampMicros(micros);
+        int slot = flows.update(header);
+        window.track(flows, slot);
+        return slot;
+    }
+
+    private NetworkFeatures fill(DstHostWindow window, int slot) {
+        NetworkFeatures features = new NetworkFeatures();
+        window.fill(features, flows, slot);
+        return features;
+    }
+
+    private static int sameStripeAs(int host) {
+        int other = host + 1;
+        while ((TrafficWindow.spread(other) & 31) != (TrafficWindow.spread(host) & 31)) {
+            other++;
+        }
+        return other;
+    }
+
+    @Test
+    void keepsTheLastConnectionsPerHostAndService() {
+        DstHostWindow window = new DstHostWindow(3, 1000, 60_000_000L);
+        packet(window, CLIENT, 1, HOST, 80, PacketHeader.TCP_SYN, 0);
+        packet(window, CLIENT, 2, HOST, 80, PacketHeader.TCP_SYN, 0);
+        packet(window, CLIENT, 3, HOST, 22, PacketHeader.TCP_SYN, 0);
+        int slot = packet(window, CLIENT, 3, HOST, 23, PacketHeader.TCP_SYN, 0);
+
+        // The first port-80 connection left the host ring
+        NetworkFeatures features = fill(window, slot);
+        assertEquals(3, features.getDstHostCount());
+        assertEquals(1, features.getDstHostSrvCount());
+        assertEquals(0.33, features.getDstHostSameSrvRate());
+        assertEquals(0.67, features.getDstHostDiffSrvRate());
+        assertEquals(0.67, features.getDstHostSameSrcPortRate());
+        assertEquals(1.0, features.getDstHostSerrorRate());
+
+        int other = packet(window, CLIENT + 1, 4, HOST + 1, 80, PacketHeader.TCP_SYN, 0);
+        features = fill(window, other);
+        assertEquals(1, features.getDstHostCount());
+        assertEquals(3, features.getDstHostSrvCount());
+        assertEquals(0.67, features.getDstHostSrvDiffHostRate());
+    }
+
+    @Test
+    void stateChangesMoveTheConnectionBetweenErrorClasses() {
+        DstHostWindow window = new DstHostWindow();
+        int slot = packet(window, CLIENT, 1, HOST, 80, PacketHeader.TCP_SYN, 0);
+        packet(window, CLIENT, 2, HOST, 80, PacketHeader.TCP_SYN, 0);
+        assertEquals(1.0, fill(window, slot).getDstHostSerrorRate());
+
+        slot = packet(window, HOST, 80, CLIENT, 1, PacketHeader.TCP_RST, 1_000);
+        NetworkFeatures features = fill(window, slot);
+        assertEquals(2, features.getDstHostCount());
+        assertEquals(0.5, features.getDstHostSerrorRate());
+        assertEquals(0.5, features.getDstHostRerrorRate());
+        assertEquals(0.5, features.getDstHostSrvSerrorRate());
+        assertEquals(0.5, features.getDstHostSrvRerrorRate());
+
+        // A connection is only added once
+        assertEquals(TrafficWindow.CLASS_REJ_ERROR, flows.getHostClass(slot));
+        packet(window, CLIENT, 1, HOST, 80, PacketHeader.TCP_ACK, 2_000);
+        assertEquals(2, fill(window, slot).getDstHostCount());
+        assertEquals(0.5, fill(window, slot).getDstHostRerrorRate());
+    }
+
+    @Test
+    void fullStripeEvictsTheLeastRecentlyUsedHost() {
+        // One ring per stripe
+        DstHostWindow window = new DstHostWindow(100, 32, 60_000_000L);
+        int first = packet(window, CLIENT, 1, HOST, 80, PacketHeader.TCP_SYN, 0);
+        packet(window, CLIENT, 2, sameStripeAs(HOST), 80, PacketHeader.TCP_SYN, 0);
+
+        assertEquals(1, window.getEvictedCount());
+        assertEquals(0, fill(window, first).getDstHostCount());
+        assertEquals(2, fill(window, first).getDstHostSrvCount());
+    }
+
+    @Test
+    void idleHostsAreEvicted() {
+        DstHostWindow window = new DstHostWindow(100, 1000, 1_000_000L);
+        int first = packet(window, CLIENT, 1, HOST, 80, PacketHeader.TCP_SYN, 0);
+        assertEquals(1, window.getHostCount());
+
+        packet(window, CLIENT, 2, sameStripeAs(HOST), 80, PacketHeader.TCP_SYN, 2_000_000L);
+        assertEquals(1, window.getHostCount());
+        assertEquals(0, window.getEvictedCount());
+        assertEquals(0, fill(window, first).getDstHostCount());
+    }
+}
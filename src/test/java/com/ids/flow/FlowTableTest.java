@@ -0,0 +1,178 @@
+package com.ids.flow;
+
+import com.ids.packet.PacketHeader;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FlowTableTest {
+    private static final int CLIENT = 0x0A000001; // 10.0.0.1
+    private static final int SERVER = 0x0A000002; // 10.0.0.2
+
+    private static PacketHeader tcp(int src, int srcPort, int dst, int dstPort, int flags, int payload, long micros) {
+        PacketHeader header = new PacketHeader();
+        header.setProtocol(PacketHeader.PROTO_TCP);
+        header.setSrcAddr(src);
+        header.setSrcPort(srcPort);
+        header.setDstAddr(dst);
+        header.setDstPort(dstPort);
+        header.setTcpFlags(flags);
+        header.setPayloadLength(payload);
+        header.setTimestampMicros(micros);
+        return header;
+    }
+
+    private static PacketHeader udp(int src, int srcPort, int dst, int dstPort, long micros) {
+        PacketHeader header = tcp(src, srcPort, dst, dstPort, 0, 0, micros);
+        header.setProtocol(PacketHeader.PROTO_UDP);
+        return header;
+    }
+
+    @Test
+    void tracksBothDirectionsOfOneConnection() {
+        FlowTable table = new FlowTable(64);
+        int slot = table.update(tcp(CLIENT, 40000, SERVER, 80, PacketHeader.TCP_SYN, 0, 0));
+        assertEquals(slot, table.update(tcp(SERVER, 80, CLIENT, 40000,
+                PacketHeader.TCP_SYN | PacketHeader.TCP_ACK, 0, 1_000)));
+        assertEquals(slot, table.update(tcp(CLIENT, 40000, SERVER, 80, PacketHeader.TCP_ACK, 120, 2_000)));
+        assertEquals(slot, table.update(tcp(SERVER, 80, CLIENT, 40000, PacketHeader.TCP_ACK, 3000, 1_500_000)));
+        assertEquals(ConnState.S1, table.getState(slot));
+        assertFalse(table.isTerminated(slot));
+
+        table.update(tcp(CLIENT, 40000, SERVER, 80, PacketHeader.TCP_FIN | PacketHeader.TCP_ACK, 0, 2_100_000));
+        table.update(tcp(SERVER, 80, CLIENT, 40000, PacketHeader.TCP_FIN | PacketHeader.TCP_ACK, 0, 2_200_000));
+
+        assertEquals(1, table.size());
+        assertEquals(ConnState.SF, table.getState(slot));
+        assertTrue(table.isTerminated(slot));
+        assertEquals(CLIENT, table.getOrigAddr(slot));
+        assertEquals(80, table.getRespPort(slot));
+        assertEquals(120, table.getOrigBytes(slot));
+        assertEquals(3000, table.getRespBytes(slot));
+        assertEquals(3, table.getOrigPackets(slot));
+        assertEquals(3, table.getRespPackets(slot));
+        assertEquals(2, table.getDurationSeconds(slot));
+    }
+
+    @Test
+    void synAckFirstMakesTheReceiverTheOriginator() {
+        FlowTable table = new FlowTable(64);
+        int slot = table.update(tcp(SERVER, 80, CLIENT, 40000, PacketHeader.TCP_SYN | PacketHeader.TCP_ACK, 0, 0));
+        assertEquals(CLIENT, table.getOrigAddr(slot));
+        assertEquals(40000, table.getOrigPort(slot));
+        assertEquals(SERVER, table.getRespAddr(slot));
+        assertEquals(ConnState.OTH, table.getState(slot));
+    }
+
+    @Test
+    void connectionlessProtocolsAreSf() {
+        FlowTable table = new FlowTable(64);
+        int slot = table.update(udp(CLIENT, 5353, SERVER, 53, 0));
+        assertEquals(ConnState.SF, table.getState(slot));
+        assertFalse(table.isTerminated(slot));
+    }
+
+    @Test
+    void idleTimeoutsDependOnState() {
+        FlowTable table = new FlowTable(64);
+        List<Integer> expiredPorts = new ArrayList<>();
+        table.setExpiryListener((flows, slot) -> expiredPorts.add(flows.getOrigPort(slot)));
+
+        // Half-open handshake
+        table.update(tcp(CLIENT, 1, SERVER, 80, PacketHeader.TCP_SYN, 0, 0));
+        // Established
+        table.update(tcp(CLIENT, 2, SERVER, 80, PacketHeader.TCP_SYN, 0, 0));
+        table.update(tcp(SERVER, 80, CLIENT, 2, PacketHeader.TCP_SYN | PacketHeader.TCP_ACK, 0, 0));
+        // Closed by a reset
+        table.update(tcp(CLIENT, 3, SERVER, 80, PacketHeader.TCP_SYN, 0, 0));
+        table.update(tcp(SERVER, 80, CLIENT, 3, PacketHeader.TCP_RST, 0, 0));
+        // UDP
+        table.update(udp(CLIENT, 4, SERVER, 53, 0));
+        assertEquals(4, table.size());
+
+        table.expire(FlowTable.TCP_CLOSED_TIMEOUT);
+        assertEquals(4, table.size());
+        table.expire(FlowTable.TCP_CLOSED_TIMEOUT + 1);
+        assertEquals(Collections.singletonList(3), expiredPorts);
+
+        table.expire(FlowTable.TCP_HANDSHAKE_TIMEOUT + 1);
+        assertEquals(List.of(3, 1), expiredPorts);
+
+        table.expire(FlowTable.UDP_TIMEOUT + 1);
+        assertEquals(List.of(3, 1, 4), expiredPorts);
+
+        table.expire(FlowTable.TCP_ESTABLISHED_TIMEOUT);
+        assertEquals(1, table.size());
+        table.expire(FlowTable.TCP_ESTABLISHED_TIMEOUT + 1);
+        assertEquals(List.of(3, 1, 4, 2), expiredPorts);
+        assertEquals(0, table.size());
+        assertEquals(4, table.getExpiredCount());
+    }
+
+    @Test
+    void flushHandsEveryConnectionToTheListener() {
+        FlowTable table = new FlowTable(64);
+        int[] expired = new int[1];
+        table.setExpiryListener((flows, slot) -> expired[0]++);
+        for (int port = 1; port <= 20; port++) {
+            table.update(tcp(CLIENT, port, SERVER, 80, PacketHeader.TCP_SYN, 0, 0));
+        }
+        table.flush();
+        assertEquals(20, expired[0]);
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    void backwardShiftDeleteKeepsProbeChainsIntact() {
+        Random random = new Random(42);
+        for (int round = 0; round < 50; round++) {
+            FlowTable table = new FlowTable(64);
+            int flows = table.capacity() * 3 / 4;
+            List<Integer> live = new ArrayList<>();
+            for (int port = 1; port <= flows; port++) {
+                table.update(tcp(CLIENT, port, SERVER, 80, PacketHeader.TCP_ACK, 0, 0));
+                live.add(port);
+            }
+            Collections.shuffle(live, random);
+
+            while (!live.isEmpty()) {
+                int removed = live.remove(live.size() - 1);
+                int slot = table.update(tcp(CLIENT, removed, SERVER, 80, PacketHeader.TCP_ACK, 0, 0));
+                assertEquals(removed, table.getOrigPort(slot));
+                table.remove(slot);
+                assertEquals(live.size(), table.size());
+
+                // Every remaining connection must still be found, not inserted again
+                for (int port : live) {
+                    int found = table.update(tcp(SERVER, 80, CLIENT, port, PacketHeader.TCP_ACK, 0, 0));
+                    assertEquals(port, table.getOrigPort(found));
+                    assertEquals(live.size(), table.size());
+                }
+            }
+        }
+    }
+
+    @Test
+    void fullTableRejectsNewConnections() {
+        FlowTable table = new FlowTable(16);
+        int port = 1;
+        while (table.update(tcp(CLIENT, port, SERVER, 80, PacketHeader.TCP_SYN, 0, 0)) >= 0) {
+            port++;
+        }
+        assertEquals(table.capacity() * 3 / 4, table.size());
+        assertEquals(1, table.getOverflowCount());
+
+        // Once the old connections time out, the sweep makes room again
+        assertTrue(table.update(tcp(CLIENT, port, SERVER, 80, PacketHeader.TCP_SYN, 0,
+                FlowTable.TCP_HANDSHAKE_TIMEOUT + 1)) >= 0);
+        assertEquals(1, table.getOverflowCount());
+        assertTrue(table.size() < table.capacity() * 3 / 4);
+    }
+}
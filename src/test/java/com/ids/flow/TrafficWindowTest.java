@@ -0,0 +1,123 @@
+package com.ids.flow;
+
+import com.ids.model.NetworkFeatures;
+import com.ids.packet.PacketHeader;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TrafficWindowTest {
+    private static final int HOST = 0x0A000002;
+    private static final int HTTP = TrafficWindow.serviceKey(PacketHeader.PROTO_TCP, 80);
+    private static final int SSH = TrafficWindow.serviceKey(PacketHeader.PROTO_TCP, 22);
+
+    private static NetworkFeatures fill(TrafficWindow window, int host, int service, long micros) {
+        NetworkFeatures features = new NetworkFeatures();
+        window.fill(features, host, service, micros);
+        return features;
+    }
+
+    @Test
+    void countsConnectionsByHostAndService() {
+        TrafficWindow window = new TrafficWindow();
+        window.record(HOST, HTTP, 0, TrafficWindow.CLASS_NORMAL);
+        window.record(HOST, HTTP, 100_000, TrafficWindow.CLASS_SYN_ERROR);
+        window.record(HOST, SSH, 200_000, TrafficWindow.CLASS_REJ_ERROR);
+        window.record(HOST + 1, HTTP, 300_000, TrafficWindow.CLASS_NORMAL);
+
+        NetworkFeatures features = fill(window, HOST, HTTP, 500_000);
+        assertEquals(3, features.getCount());
+        assertEquals(3, features.getSrvCount());
+        assertEquals(0.67, features.getSameSrvRate());
+        assertEquals(0.33, features.getDiffSrvRate());
+        assertEquals(0.33, features.getSerrorRate());
+        assertEquals(0.33, features.getRerrorRate());
+        assertEquals(0.33, features.getSrvSerrorRate());
+        assertEquals(0.0, features.getSrvRerrorRate());
+        assertEquals(0.33, features.getSrvDiffHostRate());
+    }
+
+    @Test
+    void connectionsLeaveTheWindowAfterTwoSeconds() {
+        TrafficWindow window = new TrafficWindow();
+        window.record(HOST, HTTP, 0, TrafficWindow.CLASS_NORMAL);
+        window.record(HOST, HTTP, 1_500_000, TrafficWindow.CLASS_NORMAL);
+
+        assertEquals(2, fill(window, HOST, HTTP, 1_900_000).getCount());
+        assertEquals(1, fill(window, HOST, HTTP, 2_100_000).getCount());
+        assertEquals(0, fill(window, HOST, HTTP, 3_600_000).getCount());
+        assertEquals(0, fill(window, HOST, HTTP, 3_600_000).getSrvCount());
+    }
+
+    @Test
+    void staleKeysAreEvicted() {
+        TrafficWindow window = new TrafficWindow();
+        int other = HOST + 1;
+        while ((TrafficWindow.spread(other) & 31) != (TrafficWindow.spread(HOST) & 31)) {
+            other++;
+        }
+        window.record(HOST, HTTP, 0, TrafficWindow.CLASS_NORMAL);
+        assertEquals(3, window.size());
+
+        // Same host stripe, a whole window later: HOST and its pair are dropped
+        window.record(other, HTTP, 5_000_000, TrafficWindow.CLASS_NORMAL);
+        assertEquals(3, window.size());
+        assertEquals(0, fill(window, HOST, HTTP, 5_000_000).getCount());
+        assertEquals(1, fill(window, other, HTTP, 5_000_000).getCount());
+    }
+
+    @Test
+    void reclassifyMovesAConnectionBetweenErrorClasses() {
+        TrafficWindow window = new TrafficWindow();
+        window.record(HOST, HTTP, 0, TrafficWindow.CLASS_SYN_ERROR);
+        window.record(HOST, HTTP, 0, TrafficWindow.CLASS_SYN_ERROR);
+        assertEquals(1.0, fill(window, HOST, HTTP, 0).getSerrorRate());
+
+        window.reclassify(HOST, HTTP, 0, TrafficWindow.CLASS_SYN_ERROR, TrafficWindow.CLASS_NORMAL);
+        NetworkFeatures features = fill(window, HOST, HTTP, 0);
+        assertEquals(2, features.getCount());
+        assertEquals(0.5, features.getSerrorRate());
+        assertEquals(0.5, features.getSrvSerrorRate());
+
+        // Out of the window: nothing left to move, the current bucket is untouched
+        window.record(HOST, HTTP, 2_500_000, TrafficWindow.CLASS_NORMAL);
+        window.reclassify(HOST, HTTP, 0, TrafficWindow.CLASS_SYN_ERROR, TrafficWindow.CLASS_REJ_ERROR);
+        features = fill(window, HOST, HTTP, 2_500_000);
+        assertEquals(1, features.getCount());
+        assertEquals(0.0, features.getSerrorRate());
+        assertEquals(0.0, features.getRerrorRate());
+    }
+
+    @Test
+    void trackFollowsTheFlowState() {
+        TrafficWindow window = new TrafficWindow();
+        FlowTable flows = new FlowTable(64);
+        PacketHeader header = new PacketHeader();
+        header.setProtocol(PacketHeader.PROTO_TCP);
+        header.setSrcAddr(0x0A000001);
+        header.setSrcPort(40000);
+        header.setDstAddr(HOST);
+        header.setDstPort(80);
+        header.setTcpFlags(PacketHeader.TCP_SYN);
+        int slot = flows.update(header);
+        window.track(flows, slot);
+        assertEquals(TrafficWindow.CLASS_SYN_ERROR, flows.getTrafficClass(slot));
+        assertEquals(1.0, fill(window, HOST, HTTP, 0).getSerrorRate());
+
+        // Same state again: counted once
+        window.track(flows, flows.update(header));
+        assertEquals(1, fill(window, HOST, HTTP, 0).getCount());
+
+        header.setSrcAddr(HOST);
+        header.setSrcPort(80);
+        header.setDstAddr(0x0A000001);
+        header.setDstPort(40000);
+        header.setTcpFlags(PacketHeader.TCP_RST);
+        slot = flows.update(header);
+        window.track(flows, slot);
+        NetworkFeatures features = fill(window, HOST, HTTP, 0);
+        assertEquals(1, features.getCount());
+        assertEquals(0.0, features.getSerrorRate());
+        assertEquals(1.0, features.getRerrorRate());
+    }
+}
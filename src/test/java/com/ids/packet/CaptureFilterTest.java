@@ -0,0 +1,36 @@
+package com.ids.packet;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CaptureFilterTest {
+
+    @Test
+    void excludesTheBackendByAddressAndPort() {
+        CaptureFilter filter = CaptureFilter.forBackend("http://127.0.0.1:5000/predict");
+        assertEquals("(ip or (vlan and ip)) and not ((host 127.0.0.1) and tcp port 5000)", filter.toExpression());
+    }
+
+    @Test
+    void defaultsThePortFromTheScheme() {
+        assertEquals("not ((host 10.1.2.3) and tcp port 443)",
+                CaptureFilter.forBackend("https://10.1.2.3/").selfExclusionClause());
+        assertEquals("not ((host 10.1.2.3) and tcp port 80)",
+                CaptureFilter.forBackend("http://10.1.2.3").selfExclusionClause());
+    }
+
+    @Test
+    void andsUserExpressions() {
+        CaptureFilter filter = CaptureFilter.forBackend("http://127.0.0.1:5000", "tcp", " ", null, "not port 22");
+        assertEquals("(ip or (vlan and ip)) and (tcp) and (not port 22) and not ((host 127.0.0.1) and tcp port 5000)",
+                filter.toExpression());
+    }
+
+    @Test
+    void splitsSemicolonSeparatedExpressions() {
+        assertArrayEquals(new String[] {"tcp", "not port 22"}, CaptureFilter.splitExpressions(" tcp ;; not port 22 "));
+        assertArrayEquals(new String[0], CaptureFilter.splitExpressions(null));
+    }
+}
@@ -0,0 +1,136 @@
+package com.ids.packet;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RawPacketParserTest {
+    private static final int CLIENT = 0xC0A80001; // 192.168.0.1
+    private static final int SERVER = 0x0A000002; // 10.0.0.2
+
+    /**
+     * IPv4 header (20 bytes) + TCP header (20 bytes) + payload
+     */
+    private static byte[] tcpPacket(int src, int srcPort, int dst, int dstPort, int flags, int payload, int fragment) {
+        ByteBuffer ip = ByteBuffer.allocate(40 + payload);
+        ip.put((byte) 0x45).put((byte) 0).putShort((short) (40 + payload));
+        ip.putShort((short) 1).putShort((short) fragment);
+        ip.put((byte) 64).put((byte) PacketHeader.PROTO_TCP).putShort((short) 0);
+        ip.putInt(src).putInt(dst);
+        ip.putShort((short) srcPort).putShort((short) dstPort).putInt(0).putInt(0);
+        ip.put((byte) 0x50).put((byte) flags).putShort((short) 0).putInt(0);
+        return ip.array();
+    }
+
+    private static byte[] ethernet(byte[] ip, int... vlanTypes) {
+        ByteBuffer frame = ByteBuffer.allocate(14 + 4 * vlanTypes.length + ip.length);
+        frame.put(new byte[12]);
+        for (int vlanType : vlanTypes) {
+            frame.putShort((short) vlanType).putShort((short) 42);
+        }
+        frame.putShort((short) 0x0800).put(ip);
+        return frame.array();
+    }
+
+    private static byte[] linuxSll(byte[] ip, int protocol) {
+        ByteBuffer frame = ByteBuffer.allocate(16 + ip.length);
+        frame.put(new byte[14]).putShort((short) protocol).put(ip);
+        return frame.array();
+    }
+
+    private static PacketHeader parse(byte[] frame, int dlt) {
+        PacketHeader header = new PacketHeader();
+        assertTrue(RawPacketParser.parse(frame, dlt, header));
+        return header;
+    }
+
+    @Test
+    void parsesEthernetTcp() {
+        byte[] ip = tcpPacket(CLIENT, 40000, SERVER, 80, PacketHeader.TCP_SYN | PacketHeader.TCP_ACK, 100, 0);
+        PacketHeader header = parse(ethernet(ip), RawPacketParser.DLT_EN10MB);
+
+        assertEquals(PacketHeader.PROTO_TCP, header.getProtocol());
+        assertEquals(CLIENT, header.getSrcAddr());
+        assertEquals(SERVER, header.getDstAddr());
+        assertEquals(40000, header.getSrcPort());
+        assertEquals(80, header.getDstPort());
+        assertTrue(header.hasFlag(PacketHeader.TCP_SYN));
+        assertTrue(header.hasFlag(PacketHeader.TCP_ACK));
+        assertFalse(header.hasFlag(PacketHeader.TCP_FIN));
+        assertEquals(140, header.getIpTotalLength());
+        assertEquals(100, header.getPayloadLength());
+        assertFalse(header.isFragment());
+    }
+
+    @Test
+    void skipsVlanTags() {
+        byte[] ip = tcpPacket(CLIENT, 40000, SERVER, 443, PacketHeader.TCP_ACK, 10, 0);
+        PacketHeader plain = parse(ethernet(ip), RawPacketParser.DLT_EN10MB);
+        PacketHeader tagged = parse(ethernet(ip, 0x8100), RawPacketParser.DLT_EN10MB);
+        PacketHeader qinq = parse(ethernet(ip, 0x88A8, 0x8100), RawPacketParser.DLT_EN10MB);
+
+        for (PacketHeader header : new PacketHeader[] {tagged, qinq}) {
+            assertEquals(plain.getSrcAddr(), header.getSrcAddr());
+            assertEquals(plain.getDstPort(), header.getDstPort());
+            assertEquals(plain.getPayloadLength(), header.getPayloadLength());
+        }
+        assertEquals(RawPacketParser.flowHash(ethernet(ip), RawPacketParser.DLT_EN10MB),
+                RawPacketParser.flowHash(ethernet(ip, 0x8100), RawPacketParser.DLT_EN10MB));
+    }
+
+    @Test
+    void parsesLinuxCookedCapture() {
+        byte[] ip = tcpPacket(CLIENT, 5000, SERVER, 22, PacketHeader.TCP_ACK, 0, 0);
+        PacketHeader header = parse(linuxSll(ip, 0x0800), RawPacketParser.DLT_LINUX_SLL);
+        assertEquals(SERVER, header.getDstAddr());
+        assertEquals(22, header.getDstPort());
+
+        // IPv6 and ARP are left to the full decoder
+        assertFalse(RawPacketParser.parse(linuxSll(ip, 0x86DD), RawPacketParser.DLT_LINUX_SLL, new PacketHeader()));
+        assertFalse(RawPacketParser.parse(ethernet(ip, 0x0806), RawPacketParser.DLT_EN10MB, new PacketHeader()));
+    }
+
+    @Test
+    void rejectsTruncatedFrames() {
+        byte[] frame = ethernet(tcpPacket(CLIENT, 1, SERVER, 80, 0, 0, 0));
+        byte[] truncated = new byte[14 + 30];
+        System.arraycopy(frame, 0, truncated, 0, truncated.length);
+        assertFalse(RawPacketParser.parse(truncated, RawPacketParser.DLT_EN10MB, new PacketHeader()));
+        assertEquals(0, RawPacketParser.flowHash(new byte[10], RawPacketParser.DLT_EN10MB));
+    }
+
+    @Test
+    void flowHashIsDirectionIndependent() {
+        byte[] request = ethernet(tcpPacket(CLIENT, 40000, SERVER, 80, PacketHeader.TCP_SYN, 0, 0));
+        byte[] reply = ethernet(tcpPacket(SERVER, 80, CLIENT, 40000, PacketHeader.TCP_SYN | PacketHeader.TCP_ACK, 0, 0));
+        byte[] otherPort = ethernet(tcpPacket(CLIENT, 40001, SERVER, 80, PacketHeader.TCP_SYN, 0, 0));
+
+        int hash = RawPacketParser.flowHash(request, RawPacketParser.DLT_EN10MB);
+        assertEquals(hash, RawPacketParser.flowHash(reply, RawPacketParser.DLT_EN10MB));
+        assertEquals(hash, RawPacketParser.flowHash(PacketHeader.PROTO_TCP, SERVER, 80, CLIENT, 40000));
+        assertNotEquals(hash, RawPacketParser.flowHash(otherPort, RawPacketParser.DLT_EN10MB));
+    }
+
+    @Test
+    void fragmentsOfADatagramShareTheirFlow() {
+        // More fragments set, then offset 185 (1480 bytes) without MF
+        byte[] first = ethernet(tcpPacket(CLIENT, 40000, SERVER, 80, PacketHeader.TCP_ACK, 100, 0x2000));
+        byte[] last = ethernet(tcpPacket(CLIENT, 40000, SERVER, 80, PacketHeader.TCP_ACK, 100, 185));
+
+        PacketHeader firstHeader = parse(first, RawPacketParser.DLT_EN10MB);
+        PacketHeader lastHeader = parse(last, RawPacketParser.DLT_EN10MB);
+        assertTrue(firstHeader.isFragment());
+        assertTrue(lastHeader.isFragment());
+        assertEquals(0, firstHeader.getSrcPort());
+        assertEquals(0, lastHeader.getDstPort());
+
+        int hash = RawPacketParser.flowHash(first, RawPacketParser.DLT_EN10MB);
+        assertEquals(hash, RawPacketParser.flowHash(last, RawPacketParser.DLT_EN10MB));
+        assertEquals(hash, RawPacketParser.flowHash(PacketHeader.PROTO_TCP, CLIENT, 0, SERVER, 0));
+    }
+}